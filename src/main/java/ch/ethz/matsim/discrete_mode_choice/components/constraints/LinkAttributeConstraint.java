@@ -1,7 +1,12 @@
 package ch.ethz.matsim.discrete_mode_choice.components.constraints;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -9,6 +14,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraint;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
@@ -16,92 +22,201 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
 /**
  * This constraint forbids or allows a certain mode depending on whether a
  * certain link attribute is available for the origin and/or destination.
- * 
+ *
+ * Multiple rules (attribute, value, modes and requirement) can be checked by
+ * one constraint. The factory scans the network once and stores for every link
+ * which rules it matches, so checking a rule is a single bit test. It also
+ * stores for every mode identifier from the ModeRegistry which rules constrain
+ * the mode, so only those rules are checked.
+ *
  * @author sebhoerl
  */
 public class LinkAttributeConstraint implements TripConstraint {
-	private final Network network;
-	private final Collection<String> restrictedModes;
+	private final static BitSet NO_RULES = new BitSet();
 
-	private final String linkAttributeName;
-	private final String linkAttributeValue;
+	private final ModeRegistry modeRegistry;
+	private final Rule[] rules;
+	private final BitSet[] modeRules;
+	private final Map<Id<Link>, BitSet> matchingRules;
 
 	public enum Requirement {
 		ORIGIN, DESTINATION, BOTH, ANY, NONE;
 	}
 
-	private final Requirement requirement;
+	static public class Rule {
+		private final Collection<String> restrictedModes;
+		private final String linkAttributeName;
+		private final String linkAttributeValue;
+		private final Requirement requirement;
+
+		public Rule(Collection<String> restrictedModes, String linkAttributeName, String linkAttributeValue,
+				Requirement requirement) {
+			this.restrictedModes = restrictedModes;
+			this.linkAttributeName = linkAttributeName;
+			this.linkAttributeValue = linkAttributeValue;
+			this.requirement = requirement;
+		}
+
+		private boolean matches(Link link) {
+			if (linkAttributeName == null) {
+				return false;
+			}
+
+			Object attribute = link.getAttributes().getAttribute(linkAttributeName);
+
+			if (attribute == null) {
+				return false;
+			} else {
+				return attribute.toString().equals(linkAttributeValue);
+			}
+		}
+	}
+
+	public LinkAttributeConstraint(ModeRegistry modeRegistry, Rule[] rules, BitSet[] modeRules,
+			Map<Id<Link>, BitSet> matchingRules) {
+		this.modeRegistry = modeRegistry;
+		this.rules = rules;
+		this.modeRules = modeRules;
+		this.matchingRules = matchingRules;
+	}
 
+	/**
+	 * Creates a constraint with a single rule. The network is scanned every time,
+	 * so the Factory should be used when many constraints are created.
+	 */
 	public LinkAttributeConstraint(Network network, Collection<String> restrictedModes, String linkAttributeName,
 			String linkAttributeValue, Requirement requirement) {
-		this.network = network;
-		this.restrictedModes = restrictedModes;
-		this.linkAttributeName = linkAttributeName;
-		this.linkAttributeValue = linkAttributeValue;
-		this.requirement = requirement;
+		this(new ModeRegistry(restrictedModes),
+				new Rule[] { new Rule(restrictedModes, linkAttributeName, linkAttributeValue, requirement) }, network);
 	}
 
-	private boolean checkAttribute(Id<Link> linkId) {
-		Link link = network.getLinks().get(linkId);
-		Object attribute = link.getAttributes().getAttribute(linkAttributeName);
-
-		if (attribute == null) {
-			return false;
-		} else {
-			return attribute.toString().equals(linkAttributeValue);
-		}
+	private LinkAttributeConstraint(ModeRegistry modeRegistry, Rule[] rules, Network network) {
+		this(modeRegistry, rules, findModeRules(modeRegistry, rules), findMatchingRules(network, rules));
 	}
 
 	@Override
 	public boolean validateBeforeEstimation(DiscreteModeChoiceTrip trip, String mode, List<String> previousModes) {
-		if (restrictedModes.contains(mode)) {
-			boolean originValid = checkAttribute(trip.getOriginActivity().getLinkId());
-			boolean destinationValid = checkAttribute(trip.getDestinationActivity().getLinkId());
-
-			switch (requirement) {
-			case ANY:
-				return originValid || destinationValid;
-			case BOTH:
-				return originValid && destinationValid;
-			case DESTINATION:
-				return destinationValid;
-			case ORIGIN:
-				return originValid;
-			case NONE:
-				return !(originValid || destinationValid);
+		int modeId = modeRegistry.getModeId(mode);
+
+		if (modeId >= modeRules.length || modeRules[modeId] == null) {
+			return true;
+		}
+
+		BitSet constrainingRules = modeRules[modeId];
+		BitSet originRules = matchingRules.getOrDefault(trip.getOriginActivity().getLinkId(), NO_RULES);
+		BitSet destinationRules = matchingRules.getOrDefault(trip.getDestinationActivity().getLinkId(), NO_RULES);
+
+		for (int ruleIndex = constrainingRules.nextSetBit(0); ruleIndex >= 0; ruleIndex = constrainingRules
+				.nextSetBit(ruleIndex + 1)) {
+			if (!validate(rules[ruleIndex].requirement, originRules.get(ruleIndex),
+					destinationRules.get(ruleIndex))) {
+				return false;
 			}
 		}
 
 		return true;
 	}
 
+	static private boolean validate(Requirement requirement, boolean originValid, boolean destinationValid) {
+		switch (requirement) {
+		case ANY:
+			return originValid || destinationValid;
+		case BOTH:
+			return originValid && destinationValid;
+		case DESTINATION:
+			return destinationValid;
+		case ORIGIN:
+			return originValid;
+		case NONE:
+			return !(originValid || destinationValid);
+		}
+
+		return true;
+	}
+
 	@Override
 	public boolean validateAfterEstimation(DiscreteModeChoiceTrip trip, TripCandidate candidate,
 			List<TripCandidate> previousCandidates) {
 		return true;
 	}
 
+	/**
+	 * Finds for every link of the network the rules whose attribute condition it
+	 * fulfills. Links that do not match any rule are not contained in the map.
+	 */
+	static public Map<Id<Link>, BitSet> findMatchingRules(Network network, Rule[] rules) {
+		Map<Id<Link>, BitSet> matchingRules = new HashMap<>();
+
+		for (Link link : network.getLinks().values()) {
+			BitSet linkRules = new BitSet(rules.length);
+
+			for (int ruleIndex = 0; ruleIndex < rules.length; ruleIndex++) {
+				if (rules[ruleIndex].matches(link)) {
+					linkRules.set(ruleIndex);
+				}
+			}
+
+			if (!linkRules.isEmpty()) {
+				matchingRules.put(link.getId(), linkRules);
+			}
+		}
+
+		return matchingRules;
+	}
+
+	/**
+	 * Finds for every mode identifier the rules that constrain the mode. Modes
+	 * that are not constrained by any rule have no entry.
+	 */
+	static public BitSet[] findModeRules(ModeRegistry modeRegistry, Rule[] rules) {
+		BitSet[] modeRules = new BitSet[0];
+
+		for (int ruleIndex = 0; ruleIndex < rules.length; ruleIndex++) {
+			for (String mode : rules[ruleIndex].restrictedModes) {
+				int modeId = modeRegistry.getModeId(mode);
+
+				if (modeId >= modeRules.length) {
+					modeRules = Arrays.copyOf(modeRules, modeId + 1);
+				}
+
+				if (modeRules[modeId] == null) {
+					modeRules[modeId] = new BitSet(rules.length);
+				}
+
+				modeRules[modeId].set(ruleIndex);
+			}
+		}
+
+		return modeRules;
+	}
+
 	static public class Factory implements TripConstraintFactory {
-		private final Network network;
-		private final Collection<String> restrictedModes;
-		private final String linkAttributeName;
-		private final String linkAttributeValue;
-		private final Requirement requirement;
+		private final ModeRegistry modeRegistry;
+		private final Rule[] rules;
+		private final BitSet[] modeRules;
+		private final Map<Id<Link>, BitSet> matchingRules;
+
+		public Factory(Network network, List<Rule> rules, ModeRegistry modeRegistry) {
+			this.modeRegistry = modeRegistry;
+			this.rules = rules.toArray(new Rule[rules.size()]);
+			this.modeRules = findModeRules(modeRegistry, this.rules);
+			this.matchingRules = findMatchingRules(network, this.rules);
+		}
+
+		public Factory(Network network, List<Rule> rules) {
+			this(network, rules, new ModeRegistry());
+		}
 
 		public Factory(Network network, Collection<String> restrictedModes, String linkAttributeName,
 				String linkAttributeValue, Requirement requirement) {
-			this.network = network;
-			this.restrictedModes = restrictedModes;
-			this.linkAttributeName = linkAttributeName;
-			this.linkAttributeValue = linkAttributeValue;
-			this.requirement = requirement;
+			this(network, Collections
+					.singletonList(new Rule(restrictedModes, linkAttributeName, linkAttributeValue, requirement)));
 		}
 
 		@Override
 		public TripConstraint createConstraint(Person person, List<DiscreteModeChoiceTrip> trips,
 				Collection<String> availableModes) {
-			return new LinkAttributeConstraint(network, restrictedModes, linkAttributeName, linkAttributeValue,
-					requirement);
+			return new LinkAttributeConstraint(modeRegistry, rules, modeRules, matchingRules);
 		}
 	}
 }
@@ -2,6 +2,7 @@ package ch.ethz.matsim.discrete_mode_choice.components.constraints;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -17,6 +18,9 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
@@ -25,6 +29,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.opengis.feature.simple.SimpleFeature;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraint;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
@@ -34,14 +39,18 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
  * checking whether the origin and/or destination location are within a feature
  * of a given shape file.
  * 
+ * Since link coordinates do not change, the factory checks once for all links
+ * of the network whether they are covered by one of the features. The
+ * constraint then only needs to look up the origin and destination links.
+ * 
  * @author sebhoerl
  */
 public class ShapeFileConstraint implements TripConstraint {
 	private final static GeometryFactory geometryFactory = new GeometryFactory();
 
-	private final Network network;
-	private final Collection<String> restrictedModes;
-	private final Set<Geometry> shapes;
+	private final ModeRegistry modeRegistry;
+	private final BitSet restrictedModeMask;
+	private final Set<Id<Link>> containedLinkIds;
 
 	public enum Requirement {
 		ORIGIN, DESTINATION, BOTH, ANY, NONE;
@@ -49,32 +58,73 @@ public class ShapeFileConstraint implements TripConstraint {
 
 	private final Requirement requirement;
 
+	public ShapeFileConstraint(ModeRegistry modeRegistry, BitSet restrictedModeMask, Requirement requirement,
+			Set<Id<Link>> containedLinkIds) {
+		this.modeRegistry = modeRegistry;
+		this.restrictedModeMask = restrictedModeMask;
+		this.containedLinkIds = containedLinkIds;
+		this.requirement = requirement;
+	}
+
+	public ShapeFileConstraint(Collection<String> restrictedModes, Requirement requirement,
+			Set<Id<Link>> containedLinkIds) {
+		this(new ModeRegistry(restrictedModes), restrictedModes, requirement, containedLinkIds);
+	}
+
+	/**
+	 * Creates a constraint directly from the shapes. The links of the network that
+	 * are covered by the shapes are searched every time, so the Factory should be
+	 * used when many constraints are created.
+	 */
 	public ShapeFileConstraint(Network network, Collection<String> restrictedModes, Requirement requirement,
 			Set<Geometry> shapes) {
-		this.network = network;
-		this.restrictedModes = restrictedModes;
-		this.shapes = shapes;
-		this.requirement = requirement;
+		this(restrictedModes, requirement, findContainedLinkIds(network, shapes));
+	}
+
+	private ShapeFileConstraint(ModeRegistry modeRegistry, Collection<String> restrictedModes,
+			Requirement requirement, Set<Id<Link>> containedLinkIds) {
+		this(modeRegistry, modeRegistry.getModeMask(restrictedModes), requirement, containedLinkIds);
 	}
 
 	private boolean checkLinkId(Id<Link> linkId) {
-		Link link = network.getLinks().get(linkId);
-		Coord coord = link.getCoord();
-		Coordinate coordinate = new Coordinate(coord.getX(), coord.getY());
-		Point point = geometryFactory.createPoint(coordinate);
+		return containedLinkIds.contains(linkId);
+	}
+
+	/**
+	 * Finds all links of the network whose coordinate lies within one of the
+	 * shapes. The shapes are indexed in an STRtree, so for every link only the
+	 * shapes whose bounding box contains the coordinate are tested.
+	 */
+	static public Set<Id<Link>> findContainedLinkIds(Network network, Collection<Geometry> shapes) {
+		STRtree index = new STRtree();
 
 		for (Geometry shape : shapes) {
-			if (shape.contains(point)) {
-				return true;
+			index.insert(shape.getEnvelopeInternal(), PreparedGeometryFactory.prepare(shape));
+		}
+
+		index.build();
+
+		Set<Id<Link>> containedLinkIds = new HashSet<>();
+
+		for (Link link : network.getLinks().values()) {
+			Coord coord = link.getCoord();
+			Coordinate coordinate = new Coordinate(coord.getX(), coord.getY());
+			Point point = geometryFactory.createPoint(coordinate);
+
+			for (Object candidate : index.query(point.getEnvelopeInternal())) {
+				if (((PreparedGeometry) candidate).contains(point)) {
+					containedLinkIds.add(link.getId());
+					break;
+				}
 			}
 		}
 
-		return false;
+		return containedLinkIds;
 	}
 
 	@Override
 	public boolean validateBeforeEstimation(DiscreteModeChoiceTrip trip, String mode, List<String> previousModes) {
-		if (restrictedModes.contains(mode)) {
+		if (restrictedModeMask.get(modeRegistry.getModeId(mode))) {
 			boolean originValid = checkLinkId(trip.getOriginActivity().getLinkId());
 			boolean destinationValid = checkLinkId(trip.getDestinationActivity().getLinkId());
 
@@ -102,16 +152,19 @@ public class ShapeFileConstraint implements TripConstraint {
 	}
 
 	static public class Factory implements TripConstraintFactory {
-		private final Network network;
-		private final Collection<String> restrictedModes;
-		private final Set<Geometry> shapes = new HashSet<>();
+		private final ModeRegistry modeRegistry;
+		private final BitSet restrictedModeMask;
+		private final Set<Id<Link>> containedLinkIds;
 		private final Requirement requirement;
 
-		public Factory(Network network, Collection<String> restrictedModes, Requirement requirement, URL url) {
-			this.network = network;
-			this.restrictedModes = restrictedModes;
+		public Factory(Network network, Collection<String> restrictedModes, Requirement requirement, URL url,
+				ModeRegistry modeRegistry) {
+			this.modeRegistry = modeRegistry;
+			this.restrictedModeMask = modeRegistry.getModeMask(restrictedModes);
 			this.requirement = requirement;
 
+			Set<Geometry> shapes = new HashSet<>();
+
 			try {
 				DataStore dataStore = DataStoreFinder.getDataStore(Collections.singletonMap("url", url));
 
@@ -129,12 +182,18 @@ public class ShapeFileConstraint implements TripConstraint {
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
+
+			this.containedLinkIds = findContainedLinkIds(network, shapes);
+		}
+
+		public Factory(Network network, Collection<String> restrictedModes, Requirement requirement, URL url) {
+			this(network, restrictedModes, requirement, url, new ModeRegistry(restrictedModes));
 		}
 
 		@Override
 		public TripConstraint createConstraint(Person person, List<DiscreteModeChoiceTrip> trips,
 				Collection<String> availableModes) {
-			return new ShapeFileConstraint(network, restrictedModes, requirement, shapes);
+			return new ShapeFileConstraint(modeRegistry, restrictedModeMask, requirement, containedLinkIds);
 		}
 	}
 }
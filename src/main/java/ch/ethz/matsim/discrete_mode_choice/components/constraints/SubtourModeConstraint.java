@@ -1,6 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.constraints;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -9,9 +9,10 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 
 import ch.ethz.matsim.discrete_mode_choice.components.utils.IndexUtils;
-import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.PlanLocations;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
 import ch.ethz.matsim.discrete_mode_choice.model.constraints.AbstractTourConstraint;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraint;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactory;
 
@@ -25,75 +26,111 @@ import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactor
  * only the "chain based" modes should be set as constrained modes. In that case
  * only those tours cannot be interrupted by other modes.
  * 
+ * The subtours are found once per agent and tour (see
+ * PlanLocations.getSubtourStarts), so checking a chain is a single pass that
+ * compares every mode with the first mode of its subtour. Modes are compared
+ * by their identifiers from the ModeRegistry.
+ * 
  * @author sebhoerl
  *
  */
 public class SubtourModeConstraint extends AbstractTourConstraint {
-	private final Collection<String> constrainedModes;
-	private final List<Id<? extends BasicLocation>> originLocations;
-	private final List<Id<? extends BasicLocation>> destinationLocations;
+	private final ModeRegistry modeRegistry;
+	private final BitSet constrainedModeMask;
+	private final PlanLocations locations;
+
+	private int cachedFirstTripIndex = -1;
+	private int cachedNumberOfTrips = -1;
+	private int[] subtourStarts = null;
+
+	private int[] modeIds = null;
+
+	public SubtourModeConstraint(ModeRegistry modeRegistry, BitSet constrainedModeMask, PlanLocations locations) {
+		this.modeRegistry = modeRegistry;
+		this.constrainedModeMask = constrainedModeMask;
+		this.locations = locations;
+	}
+
+	public SubtourModeConstraint(Collection<String> constrainedModes, PlanLocations locations) {
+		this(new ModeRegistry(constrainedModes), constrainedModes, locations);
+	}
+
+	private SubtourModeConstraint(ModeRegistry modeRegistry, Collection<String> constrainedModes,
+			PlanLocations locations) {
+		this(modeRegistry, modeRegistry.getModeMask(constrainedModes), locations);
+	}
 
 	public SubtourModeConstraint(Collection<String> constrainedModes, List<Id<? extends BasicLocation>> originLocations,
 			List<Id<? extends BasicLocation>> destinationLocations) {
-		this.constrainedModes = constrainedModes;
-		this.originLocations = originLocations;
-		this.destinationLocations = destinationLocations;
+		this(constrainedModes, PlanLocations.create(originLocations, destinationLocations, null));
+	}
+
+	private int[] getSubtourStarts(int firstTripIndex, int numberOfTrips) {
+		if (firstTripIndex != cachedFirstTripIndex || numberOfTrips != cachedNumberOfTrips) {
+			subtourStarts = locations.getSubtourStarts(firstTripIndex, numberOfTrips);
+			cachedFirstTripIndex = firstTripIndex;
+			cachedNumberOfTrips = numberOfTrips;
+		}
+
+		return subtourStarts;
+	}
+
+	private boolean isCompatible(int modeId, int testModeId) {
+		return modeId == testModeId
+				|| !(constrainedModeMask.get(testModeId) || constrainedModeMask.get(modeId));
 	}
 
 	@Override
 	public boolean validateBeforeEstimation(List<DiscreteModeChoiceTrip> tour, List<String> modes,
 			List<List<String>> previousModes) {
-		int tourLocationOffset = IndexUtils.getFirstTripIndex(previousModes);
+		int[] subtourStarts = getSubtourStarts(IndexUtils.getFirstTripIndex(previousModes), modes.size());
+		modeIds = modeRegistry.getModeIds(modes, modeIds);
 
 		for (int index = 0; index < modes.size(); index++) {
-			// We loop over all trips
-			Id<? extends BasicLocation> startLocationId = originLocations.get(index + tourLocationOffset);
+			int startIndex = subtourStarts[index];
 
-			for (int offset = 0; offset + index < modes.size(); offset++) {
-				// We loop over all following destinations
+			if (startIndex != index && !isCompatible(modeIds[startIndex], modeIds[index])) {
+				return false;
+			}
+		}
 
-				if (destinationLocations.get(offset + index + tourLocationOffset).equals(startLocationId)) {
-					// We found a destination that has the origin location. Now we need to check
-					// that all modes in between are of the same type.
-					String mode = modes.get(index + tourLocationOffset);
+		return true;
+	}
 
-					for (int testIndex = index + 1; testIndex <= index + offset; testIndex++) {
-						String testMode = modes.get(testIndex);
+	@Override
+	public PrefixValidity validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes,
+			List<List<String>> previousModes) {
+		int[] subtourStarts = getSubtourStarts(IndexUtils.getFirstTripIndex(previousModes), tour.size());
 
-						if (!mode.equals(testMode)
-								&& (constrainedModes.contains(testMode) || constrainedModes.contains(mode))) {
-							return false;
-						}
-					}
+		// All trips but the last one have been validated for the shorter prefix
+		int prefixIndex = prefixModes.size() - 1;
+		int startIndex = subtourStarts[prefixIndex];
 
-					index += offset;
-					break;
-				}
-			}
+		if (!isCompatible(modeRegistry.getModeId(prefixModes.get(startIndex)),
+				modeRegistry.getModeId(prefixModes.get(prefixIndex)))) {
+			return PrefixValidity.INVALID;
 		}
 
-		return true;
+		return PrefixValidity.VALID;
 	}
 
 	static public class Factory implements TourConstraintFactory {
-		private final Collection<String> constrainedModes;
+		private final ModeRegistry modeRegistry;
+		private final BitSet constrainedModeMask;
+
+		public Factory(Collection<String> constrainedModes, ModeRegistry modeRegistry) {
+			this.modeRegistry = modeRegistry;
+			this.constrainedModeMask = modeRegistry.getModeMask(constrainedModes);
+		}
 
 		public Factory(Collection<String> constrainedModes) {
-			this.constrainedModes = constrainedModes;
+			this(constrainedModes, new ModeRegistry(constrainedModes));
 		}
 
 		@Override
 		public TourConstraint createConstraint(Person person, List<DiscreteModeChoiceTrip> trips,
 				Collection<String> availableModes) {
-			List<Id<? extends BasicLocation>> originLocations = new ArrayList<>(trips.size());
-			List<Id<? extends BasicLocation>> destinationLocations = new ArrayList<>(trips.size());
-
-			for (int index = 0; index < trips.size(); index++) {
-				originLocations.add(LocationUtils.getLocationId(trips.get(index).getOriginActivity()));
-				destinationLocations.add(LocationUtils.getLocationId(trips.get(index).getDestinationActivity()));
-			}
-
-			return new SubtourModeConstraint(constrainedModes, originLocations, destinationLocations);
+			return new SubtourModeConstraint(modeRegistry, constrainedModeMask, PlanLocations.create(trips, null));
 		}
 	}
 }
@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.constraints;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -7,9 +8,11 @@ import org.matsim.api.core.v01.BasicLocation;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 
-import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.IndexUtils;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.PlanLocations;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourCandidate;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraint;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactory;
@@ -32,20 +35,57 @@ import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactor
  * If a home location cannot be found in the tour, a mode must start and end at
  * the first and last location in the tour.
  * 
+ * Internally, modes are compared by their identifiers from the ModeRegistry
+ * and locations by their indices in the PlanLocations of the agent, which are
+ * compiled once by the factory.
+ * 
  * @author sebhoerl
  */
 public class VehicleTourConstraint implements TourConstraint {
-	private final Collection<String> restrictedModes;
+	private final ModeRegistry modeRegistry;
+	private final int[] restrictedModeIds;
+	private final BitSet restrictedModeMask;
 	private final Id<? extends BasicLocation> homeLocationId;
+	private final PlanLocations planLocations;
 
-	public VehicleTourConstraint(Collection<String> restrictedModes, Id<? extends BasicLocation> homeLocationId) {
-		this.restrictedModes = restrictedModes;
+	private int[] modeIds = null;
+
+	private List<DiscreteModeChoiceTrip> cachedTour = null;
+	private PlanLocations cachedTourLocations = null;
+
+	public VehicleTourConstraint(ModeRegistry modeRegistry, BitSet restrictedModeMask, PlanLocations planLocations) {
+		this.modeRegistry = modeRegistry;
+		this.restrictedModeMask = restrictedModeMask;
+		this.restrictedModeIds = restrictedModeMask.stream().toArray();
+		this.homeLocationId = null;
+		this.planLocations = planLocations;
+	}
+
+	/**
+	 * Creates a constraint without the locations of the whole plan. In that case,
+	 * the locations of each tour are compiled when the tour is checked first.
+	 */
+	public VehicleTourConstraint(ModeRegistry modeRegistry, BitSet restrictedModeMask,
+			Id<? extends BasicLocation> homeLocationId) {
+		this.modeRegistry = modeRegistry;
+		this.restrictedModeMask = restrictedModeMask;
+		this.restrictedModeIds = restrictedModeMask.stream().toArray();
 		this.homeLocationId = homeLocationId;
+		this.planLocations = null;
 	}
 
-	private int getFirstIndex(String mode, List<String> modes) {
-		for (int i = 0; i < modes.size(); i++) {
-			if (modes.get(i).equals(mode)) {
+	public VehicleTourConstraint(Collection<String> restrictedModes, Id<? extends BasicLocation> homeLocationId) {
+		this(new ModeRegistry(restrictedModes), restrictedModes, homeLocationId);
+	}
+
+	private VehicleTourConstraint(ModeRegistry modeRegistry, Collection<String> restrictedModes,
+			Id<? extends BasicLocation> homeLocationId) {
+		this(modeRegistry, modeRegistry.getModeMask(restrictedModes), homeLocationId);
+	}
+
+	private int getFirstIndex(int modeId, int[] modeIds, int endIndex) {
+		for (int i = 0; i < endIndex; i++) {
+			if (modeIds[i] == modeId) {
 				return i;
 			}
 		}
@@ -53,8 +93,18 @@ public class VehicleTourConstraint implements TourConstraint {
 		return -1;
 	}
 
-	private int getLastIndex(String mode, List<String> modes) {
-		for (int i = modes.size() - 1; i >= 0; i--) {
+	private int getLastIndex(int modeId, int[] modeIds, int endIndex) {
+		for (int i = endIndex - 1; i >= 0; i--) {
+			if (modeIds[i] == modeId) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private int getLastIndex(String mode, List<String> modes, int endIndex) {
+		for (int i = endIndex - 1; i >= 0; i--) {
 			if (modes.get(i).equals(mode)) {
 				return i;
 			}
@@ -63,45 +113,61 @@ public class VehicleTourConstraint implements TourConstraint {
 		return -1;
 	}
 
+	private PlanLocations getLocations(List<DiscreteModeChoiceTrip> tour) {
+		if (planLocations != null) {
+			return planLocations;
+		}
+
+		if (tour != cachedTour) {
+			cachedTourLocations = PlanLocations.create(tour, homeLocationId);
+			cachedTour = tour;
+		}
+
+		return cachedTourLocations;
+	}
+
+	private int getTourOffset(List<List<String>> previousModes) {
+		return planLocations == null ? 0 : IndexUtils.getFirstTripIndex(previousModes);
+	}
+
 	@Override
 	public boolean validateBeforeEstimation(List<DiscreteModeChoiceTrip> tour, List<String> modes,
 			List<List<String>> previousModes) {
-		for (String restrictedMode : restrictedModes) {
-			if (modes.contains(restrictedMode)) {
-				int firstIndex = getFirstIndex(restrictedMode, modes);
-				int lastIndex = getLastIndex(restrictedMode, modes);
-
-				if (homeLocationId != null) {
-					Id<? extends BasicLocation> startLocationId = LocationUtils
-							.getLocationId(tour.get(firstIndex).getOriginActivity());
-					Id<? extends BasicLocation> endLocationId = LocationUtils
-							.getLocationId(tour.get(lastIndex).getDestinationActivity());
-
-					if (!startLocationId.equals(homeLocationId)) {
+		int numberOfTrips = modes.size();
+		modeIds = modeRegistry.getModeIds(modes, modeIds);
+
+		PlanLocations locations = getLocations(tour);
+		int offset = getTourOffset(previousModes);
+
+		for (int restrictedModeId : restrictedModeIds) {
+			int firstIndex = getFirstIndex(restrictedModeId, modeIds, numberOfTrips);
+
+			if (firstIndex > -1) {
+				int lastIndex = getLastIndex(restrictedModeId, modeIds, numberOfTrips);
+
+				if (locations.hasHome()) {
+					if (locations.getOriginIndex(offset + firstIndex) != locations.getHomeIndex()) {
 						return false;
 					}
 
-					if (!endLocationId.equals(homeLocationId)) {
+					if (!locations.isHomeDestination(offset + lastIndex)) {
 						return false;
 					}
 				} else {
-					if (firstIndex > 0 || lastIndex < modes.size() - 1) {
+					if (firstIndex > 0 || lastIndex < numberOfTrips - 1) {
 						return false;
 					}
 				}
 
-				Id<? extends BasicLocation> currentLocationId = LocationUtils
-						.getLocationId(tour.get(firstIndex).getDestinationActivity());
+				int currentLocationIndex = locations.getDestinationIndex(offset + firstIndex);
 
 				for (int index = firstIndex + 1; index <= lastIndex; index++) {
-					if (modes.get(index).equals(restrictedMode)) {
-						DiscreteModeChoiceTrip trip = tour.get(index);
-
-						if (!currentLocationId.equals(LocationUtils.getLocationId(trip.getOriginActivity()))) {
+					if (modeIds[index] == restrictedModeId) {
+						if (currentLocationIndex != locations.getOriginIndex(offset + index)) {
 							return false;
 						}
 
-						currentLocationId = LocationUtils.getLocationId(trip.getDestinationActivity());
+						currentLocationIndex = locations.getDestinationIndex(offset + index);
 					}
 				}
 			}
@@ -110,6 +176,45 @@ public class VehicleTourConstraint implements TourConstraint {
 		return true;
 	}
 
+	@Override
+	public PrefixValidity validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes,
+			List<List<String>> previousModes) {
+		// Only the last mode is new, everything before has been checked already
+		int index = prefixModes.size() - 1;
+		String mode = prefixModes.get(index);
+
+		if (restrictedModeMask.get(modeRegistry.getModeId(mode))) {
+			PlanLocations locations = getLocations(tour);
+			int offset = getTourOffset(previousModes);
+
+			int previousIndex = getLastIndex(mode, prefixModes, index);
+			int departureLocationIndex = locations.getOriginIndex(offset + index);
+
+			if (previousIndex == -1) {
+				// First use of the vehicle in this tour
+				if (locations.hasHome()) {
+					if (departureLocationIndex != locations.getHomeIndex()) {
+						return PrefixValidity.INVALID;
+					}
+				} else if (index > 0) {
+					return PrefixValidity.INVALID;
+				}
+			} else {
+				if (departureLocationIndex != locations.getDestinationIndex(offset + previousIndex)) {
+					return PrefixValidity.INVALID;
+				}
+			}
+		}
+
+		if (prefixModes.size() == tour.size()) {
+			// Finally, the vehicles need to be brought back
+			return validateBeforeEstimation(tour, prefixModes, previousModes) ? PrefixValidity.VALID
+					: PrefixValidity.INVALID;
+		}
+
+		return PrefixValidity.VALID;
+	}
+
 	@Override
 	public boolean validateAfterEstimation(List<DiscreteModeChoiceTrip> tour, TourCandidate candidate,
 			List<TourCandidate> previousCandidates) {
@@ -117,18 +222,25 @@ public class VehicleTourConstraint implements TourConstraint {
 	}
 
 	public static class Factory implements TourConstraintFactory {
-		private final Collection<String> restrictedModes;
+		private final ModeRegistry modeRegistry;
+		private final BitSet restrictedModeMask;
 		private final HomeFinder homeFinder;
 
-		public Factory(Collection<String> restrictedModes, HomeFinder homeFinder) {
-			this.restrictedModes = restrictedModes;
+		public Factory(Collection<String> restrictedModes, HomeFinder homeFinder, ModeRegistry modeRegistry) {
+			this.modeRegistry = modeRegistry;
+			this.restrictedModeMask = modeRegistry.getModeMask(restrictedModes);
 			this.homeFinder = homeFinder;
 		}
 
+		public Factory(Collection<String> restrictedModes, HomeFinder homeFinder) {
+			this(restrictedModes, homeFinder, new ModeRegistry(restrictedModes));
+		}
+
 		@Override
 		public TourConstraint createConstraint(Person person, List<DiscreteModeChoiceTrip> planTrips,
 				Collection<String> availableModes) {
-			return new VehicleTourConstraint(restrictedModes, homeFinder.getHomeLocationId(planTrips));
+			PlanLocations locations = PlanLocations.create(planTrips, homeFinder.getHomeLocationId(planTrips));
+			return new VehicleTourConstraint(modeRegistry, restrictedModeMask, locations);
 		}
 	}
 }
@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.constraints;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -8,9 +9,11 @@ import org.matsim.api.core.v01.BasicLocation;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 
-import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.IndexUtils;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.PlanLocations;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraint;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
@@ -41,75 +44,69 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
 public class VehicleTripConstraint implements TripConstraint {
 	private final static Logger logger = Logger.getLogger(VehicleTripConstraint.class);
 
-	private final List<DiscreteModeChoiceTrip> plan;
-	private final Collection<String> restrictedModes;
-	private final Id<? extends BasicLocation> homeLocationId;
+	private final PlanLocations locations;
+	private final ModeRegistry modeRegistry;
+	private final int[] restrictedModeIds;
+	private final BitSet restrictedModeMask;
 	private final boolean isAdvanced;
 
-	public VehicleTripConstraint(List<DiscreteModeChoiceTrip> plan, Collection<String> restrictedModes,
-			Id<? extends BasicLocation> homeLocationId, boolean isAdvanced) {
-		this.homeLocationId = homeLocationId;
-		this.restrictedModes = restrictedModes;
+	public VehicleTripConstraint(PlanLocations locations, ModeRegistry modeRegistry, BitSet restrictedModeMask,
+			boolean isAdvanced) {
+		this.locations = locations;
+		this.modeRegistry = modeRegistry;
+		this.restrictedModeMask = restrictedModeMask;
+		this.restrictedModeIds = restrictedModeMask.stream().toArray();
 		this.isAdvanced = isAdvanced;
-		this.plan = plan;
 	}
 
-	private Id<? extends BasicLocation> getCurrentVehicleLocationId(String mode, List<String> previousModes) {
-		int currentVehicleIndex = previousModes.lastIndexOf(mode);
-		Id<? extends BasicLocation> currentVehicleLocationId = homeLocationId;
-
-		if (currentVehicleIndex > -1) {
-			currentVehicleLocationId = LocationUtils
-					.getLocationId(plan.get(currentVehicleIndex).getDestinationActivity());
-		}
-
-		return currentVehicleLocationId;
+	public VehicleTripConstraint(List<DiscreteModeChoiceTrip> plan, ModeRegistry modeRegistry,
+			BitSet restrictedModeMask, Id<? extends BasicLocation> homeLocationId, boolean isAdvanced) {
+		this(PlanLocations.create(plan, homeLocationId), modeRegistry, restrictedModeMask, isAdvanced);
 	}
 
-	/**
-	 * Checks if the agent will return to this location before going home
-	 */
-	private boolean willReturnBeforeHome(Id<? extends BasicLocation> currentLocationId, DiscreteModeChoiceTrip trip) {
-		int currentIndex = plan.indexOf(trip);
+	public VehicleTripConstraint(List<DiscreteModeChoiceTrip> plan, Collection<String> restrictedModes,
+			Id<? extends BasicLocation> homeLocationId, boolean isAdvanced) {
+		this(plan, new ModeRegistry(restrictedModes), restrictedModes, homeLocationId, isAdvanced);
+	}
 
-		for (DiscreteModeChoiceTrip futureTrip : plan.subList(currentIndex, plan.size())) {
-			Id<? extends BasicLocation> futureLinkId = LocationUtils.getLocationId(futureTrip.getDestinationActivity());
+	private VehicleTripConstraint(List<DiscreteModeChoiceTrip> plan, ModeRegistry modeRegistry,
+			Collection<String> restrictedModes, Id<? extends BasicLocation> homeLocationId, boolean isAdvanced) {
+		this(plan, modeRegistry, modeRegistry.getModeMask(restrictedModes), homeLocationId, isAdvanced);
+	}
 
-			if (futureLinkId.equals(currentLocationId)) {
-				return true;
-			}
+	private int getCurrentVehicleLocationIndex(String mode, List<String> previousModes) {
+		int currentVehicleIndex = previousModes.lastIndexOf(mode);
 
-			if (futureLinkId.equals(homeLocationId)) {
-				return false;
-			}
+		if (currentVehicleIndex > -1) {
+			return locations.getDestinationIndex(currentVehicleIndex);
 		}
 
-		return false;
+		return locations.getHomeIndex();
 	}
 
 	@Override
 	public boolean validateBeforeEstimation(DiscreteModeChoiceTrip trip, String mode, List<String> previousModes) {
-		if (restrictedModes.contains(mode)) {
-			Id<? extends BasicLocation> currentVehicleLocationId = getCurrentVehicleLocationId(mode, previousModes);
-			Id<? extends BasicLocation> currentDepartureLocationId = LocationUtils
-					.getLocationId(trip.getOriginActivity());
+		int modeId = modeRegistry.getModeId(mode);
 
-			return currentDepartureLocationId.equals(currentVehicleLocationId);
+		// Trips are checked in the order of the plan
+		int tripIndex = IndexUtils.getTripIndex(previousModes);
+		int currentDepartureLocationIndex = locations.getOriginIndex(tripIndex);
+
+		if (restrictedModeMask.get(modeId)) {
+			return currentDepartureLocationIndex == getCurrentVehicleLocationIndex(mode, previousModes);
 		}
 
 		if (isAdvanced) {
-			for (String testMode : restrictedModes) {
-				Id<? extends BasicLocation> currentVehicleLocationId = getCurrentVehicleLocationId(testMode,
+			for (int testModeId : restrictedModeIds) {
+				int currentVehicleLocationIndex = getCurrentVehicleLocationIndex(modeRegistry.getMode(testModeId),
 						previousModes);
-				Id<? extends BasicLocation> currentDepartureLocationId = LocationUtils
-						.getLocationId(trip.getOriginActivity());
-				boolean isVehiclePresent = currentDepartureLocationId.equals(currentVehicleLocationId);
+				boolean isVehiclePresent = currentDepartureLocationIndex == currentVehicleLocationIndex;
 
-				if (isVehiclePresent && !currentDepartureLocationId.equals(homeLocationId)
-						&& !willReturnBeforeHome(currentDepartureLocationId, trip)) {
+				if (isVehiclePresent && currentDepartureLocationIndex != locations.getHomeIndex()
+						&& !locations.willReturnBeforeHome(tripIndex)) {
 					// We enforce the constrained mode, because otherwise the vehicle cannot return
 					// home
-					return mode.equals(testMode);
+					return modeId == testModeId;
 				}
 			}
 
@@ -127,23 +124,30 @@ public class VehicleTripConstraint implements TripConstraint {
 	}
 
 	static public class Factory implements TripConstraintFactory {
-		private Collection<String> restrictedModes;
+		private final ModeRegistry modeRegistry;
+		private final BitSet restrictedModeMask;
 		private boolean isAdvanced;
 		private final HomeFinder homeFinder;
 
-		public Factory(Collection<String> restrictedModes, boolean isAdvanced, HomeFinder homeFinder) {
-			this.restrictedModes = restrictedModes;
+		public Factory(Collection<String> restrictedModes, boolean isAdvanced, HomeFinder homeFinder,
+				ModeRegistry modeRegistry) {
+			this.modeRegistry = modeRegistry;
+			this.restrictedModeMask = modeRegistry.getModeMask(restrictedModes);
 			this.isAdvanced = isAdvanced;
 			this.homeFinder = homeFinder;
 		}
 
+		public Factory(Collection<String> restrictedModes, boolean isAdvanced, HomeFinder homeFinder) {
+			this(restrictedModes, isAdvanced, homeFinder, new ModeRegistry(restrictedModes));
+		}
+
 		@Override
 		public TripConstraint createConstraint(Person person, List<DiscreteModeChoiceTrip> planTrips,
 				Collection<String> availableModes) {
 			logger.warn("VehicleTripConstraint is not tested. Use at own risk!");
 
-			return new VehicleTripConstraint(planTrips, restrictedModes, homeFinder.getHomeLocationId(planTrips),
-					isAdvanced);
+			PlanLocations locations = PlanLocations.create(planTrips, homeFinder.getHomeLocationId(planTrips));
+			return new VehicleTripConstraint(locations, modeRegistry, restrictedModeMask, isAdvanced);
 		}
 	}
 }
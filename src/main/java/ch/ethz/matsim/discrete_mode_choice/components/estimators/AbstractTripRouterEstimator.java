@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.estimators;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -30,13 +31,26 @@ public abstract class AbstractTripRouterEstimator implements TripEstimator {
 	private final ActivityFacilities facilities;
 	private final TimeInterpreter.Factory timeInterpreterFactory;
 	private final Collection<String> preroutedModes;
+	private final RouteCache routeCache;
 
 	public AbstractTripRouterEstimator(TripRouter tripRouter, ActivityFacilities facilities,
 			TimeInterpreter.Factory timeInterpreterFactory, Collection<String> preroutedModes) {
+		this(tripRouter, facilities, timeInterpreterFactory, preroutedModes, null);
+	}
+
+	/**
+	 * Creates an estimator that looks up routes in a RouteCache, which may be
+	 * shared with other estimators, before calling the router. The cache may be
+	 * null.
+	 */
+	public AbstractTripRouterEstimator(TripRouter tripRouter, ActivityFacilities facilities,
+			TimeInterpreter.Factory timeInterpreterFactory, Collection<String> preroutedModes,
+			RouteCache routeCache) {
 		this.tripRouter = tripRouter;
 		this.facilities = facilities;
 		this.timeInterpreterFactory = timeInterpreterFactory;
 		this.preroutedModes = preroutedModes;
+		this.routeCache = routeCache;
 	}
 
 	private boolean isPrerouted(String mode, DiscreteModeChoiceTrip trip) {
@@ -57,17 +71,11 @@ public abstract class AbstractTripRouterEstimator implements TripEstimator {
 	@Override
 	public final TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
 			List<TripCandidate> previousTrips) {
-		// I) Find the correct origin and destination facilities
-
-		Facility originFacility = FacilitiesUtils.toFacility(trip.getOriginActivity(), facilities);
-		Facility destinationFacility = FacilitiesUtils.toFacility(trip.getDestinationActivity(), facilities);
-
 		if (!isPrerouted(mode, trip)) {
-			// II) Perform the routing
-			List<? extends PlanElement> elements = tripRouter.calcRoute(mode, originFacility, destinationFacility,
-					trip.getDepartureTime(), person);
+			// I) Perform the routing
+			List<? extends PlanElement> elements = routeTrip(person, mode, trip);
 
-			// III) Perform utility estimation
+			// II) Perform utility estimation
 			return estimateTripCandidate(person, mode, trip, previousTrips, elements);
 		} else {
 			// If we already have the route of interest, just pass it on
@@ -75,6 +83,81 @@ public abstract class AbstractTripRouterEstimator implements TripEstimator {
 		}
 	}
 
+	/**
+	 * Estimates all modes of one trip. The origin and destination facilities are
+	 * only looked up once for all modes that need to be routed.
+	 */
+	@Override
+	public final List<TripCandidate> estimateTrips(Person person, List<String> modes, DiscreteModeChoiceTrip trip,
+			List<TripCandidate> previousTrips) {
+		List<TripCandidate> candidates = new ArrayList<>(modes.size());
+		TripFacilities tripFacilities = new TripFacilities(trip);
+
+		for (String mode : modes) {
+			if (!isPrerouted(mode, trip)) {
+				List<? extends PlanElement> elements = routeTrip(person, mode, trip, tripFacilities);
+				candidates.add(estimateTripCandidate(person, mode, trip, previousTrips, elements));
+			} else {
+				candidates.add(estimateTripCandidate(person, mode, trip, previousTrips, trip.getInitialElements()));
+			}
+		}
+
+		return candidates;
+	}
+
+	private List<? extends PlanElement> routeTrip(Person person, String mode, DiscreteModeChoiceTrip trip) {
+		return routeTrip(person, mode, trip, new TripFacilities(trip));
+	}
+
+	private List<? extends PlanElement> routeTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
+			TripFacilities tripFacilities) {
+		boolean isCacheable = routeCache != null
+				&& routeCache.isCacheable(mode, trip.getOriginActivity(), trip.getDestinationActivity());
+
+		if (isCacheable) {
+			List<? extends PlanElement> elements = routeCache.getRoute(mode, trip.getOriginActivity(),
+					trip.getDestinationActivity(), trip.getDepartureTime());
+
+			if (elements != null) {
+				return elements;
+			}
+		}
+
+		tripFacilities.resolve();
+
+		List<? extends PlanElement> elements = tripRouter.calcRoute(mode, tripFacilities.originFacility,
+				tripFacilities.destinationFacility, trip.getDepartureTime(), person);
+
+		if (isCacheable) {
+			routeCache.putRoute(mode, trip.getOriginActivity(), trip.getDestinationActivity(),
+					trip.getDepartureTime(), elements);
+		}
+
+		return elements;
+	}
+
+	/**
+	 * Looks up the facilities of a trip when they are needed for the first time,
+	 * so they are not resolved for trips that are found in the route cache.
+	 */
+	private class TripFacilities {
+		final DiscreteModeChoiceTrip trip;
+
+		Facility originFacility = null;
+		Facility destinationFacility = null;
+
+		TripFacilities(DiscreteModeChoiceTrip trip) {
+			this.trip = trip;
+		}
+
+		void resolve() {
+			if (originFacility == null) {
+				originFacility = FacilitiesUtils.toFacility(trip.getOriginActivity(), facilities);
+				destinationFacility = FacilitiesUtils.toFacility(trip.getDestinationActivity(), facilities);
+			}
+		}
+	}
+
 	/**
 	 * Implement this if you just want to calculate a utility, but don't want to
 	 * return a custom TripCandidate object.
@@ -1,7 +1,9 @@
 package ch.ethz.matsim.discrete_mode_choice.components.estimators;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.matsim.api.core.v01.population.Person;
 
@@ -18,20 +20,61 @@ import ch.ethz.matsim.discrete_mode_choice.replanning.time_interpreter.TimeInter
  * in the tour is estimated by the underlying TripEstimator and utilities are
  * summed up to arrive at a total utility for the whole tour.
  * 
+ * Optionally, estimates can be memoized in a prefix tree while the chains of
+ * one tour are estimated. Chains that start with the same modes also have the
+ * same departure times for these trips, so the trip candidates and the time
+ * after each trip are reused instead of calling the TripEstimator again. The
+ * tree is reset as soon as another person or tour is estimated, or the tour
+ * departs at a different time. This assumes that the TripEstimator returns the
+ * same candidate when it is called with the same inputs.
+ * 
+ * Every node of the tree holds a trip candidate, a copy of the time
+ * interpreter and a small map, which amounts to a few hundred bytes plus the
+ * size of the candidate (for instance, routed plan elements). Since a tour
+ * with N trips and M modes has up to M + M^2 + ... + M^N prefixes, the number
+ * of nodes is limited. Once the limit is reached, prefixes that are not yet in
+ * the tree are estimated without memoization.
+ * 
  * @author sebhoerl
  */
 public class CumulativeTourEstimator implements TourEstimator {
+	public static final int DEFAULT_MAXIMUM_NUMBER_OF_MEMO_NODES = 100000;
+
 	private final TimeInterpreter.Factory timeInterpreterFactory;
 	private final TripEstimator delegate;
+	private final boolean usePrefixMemo;
+	private final int maximumNumberOfMemoNodes;
+
+	private PrefixNode memoRoot = null;
+	private int numberOfMemoNodes = 0;
+	private Person memoPerson = null;
+	private List<DiscreteModeChoiceTrip> memoTrips = null;
+	private double memoDepartureTime = Double.NaN;
 
 	public CumulativeTourEstimator(TripEstimator delegate, TimeInterpreter.Factory timeInterpreterFactory) {
+		this(delegate, timeInterpreterFactory, false);
+	}
+
+	public CumulativeTourEstimator(TripEstimator delegate, TimeInterpreter.Factory timeInterpreterFactory,
+			boolean usePrefixMemo) {
+		this(delegate, timeInterpreterFactory, usePrefixMemo, DEFAULT_MAXIMUM_NUMBER_OF_MEMO_NODES);
+	}
+
+	public CumulativeTourEstimator(TripEstimator delegate, TimeInterpreter.Factory timeInterpreterFactory,
+			boolean usePrefixMemo, int maximumNumberOfMemoNodes) {
 		this.delegate = delegate;
 		this.timeInterpreterFactory = timeInterpreterFactory;
+		this.usePrefixMemo = usePrefixMemo;
+		this.maximumNumberOfMemoNodes = maximumNumberOfMemoNodes;
 	}
 
 	@Override
 	public TourCandidate estimateTour(Person person, List<String> modes, List<DiscreteModeChoiceTrip> trips,
 			List<TourCandidate> preceedingTours) {
+		if (usePrefixMemo) {
+			return estimateTourWithMemo(person, modes, trips);
+		}
+
 		List<TripCandidate> tripCandidates = new LinkedList<>();
 		double utility = 0.0;
 
@@ -56,4 +99,89 @@ public class CumulativeTourEstimator implements TourEstimator {
 
 		return new DefaultTourCandidate(utility, tripCandidates);
 	}
+
+	private TourCandidate estimateTourWithMemo(Person person, List<String> modes,
+			List<DiscreteModeChoiceTrip> trips) {
+		double departureTime = trips.get(0).getDepartureTime();
+
+		if (memoRoot == null || person != memoPerson || trips != memoTrips
+				|| Double.compare(departureTime, memoDepartureTime) != 0) {
+			TimeInterpreter time = timeInterpreterFactory.createTimeInterpreter();
+			time.setTime(departureTime);
+
+			memoRoot = new PrefixNode(null, departureTime, time, 0.0);
+			numberOfMemoNodes = 0;
+			memoPerson = person;
+			memoTrips = trips;
+			memoDepartureTime = departureTime;
+		}
+
+		List<TripCandidate> tripCandidates = new LinkedList<>();
+		PrefixNode node = memoRoot;
+
+		// Once the chain has left the tree, we continue without memoization
+		TimeInterpreter time = null;
+		double utility = 0.0;
+
+		for (int i = 0; i < modes.size(); i++) {
+			String mode = modes.get(i);
+			DiscreteModeChoiceTrip trip = trips.get(i);
+
+			if (node != null) {
+				PrefixNode child = node.children.get(mode);
+
+				if (child != null) {
+					if (i > 0) {
+						// Departure times are observed on the trips, so we keep them consistent
+						trip.setDepartureTime(child.departureTime);
+					}
+
+					tripCandidates.add(child.tripCandidate);
+					node = child;
+					continue;
+				}
+
+				time = node.time.fork();
+				utility = node.utility;
+			}
+
+			if (i > 0) { // We're already at the end of the first origin activity
+				time.addActivity(trip.getOriginActivity());
+				trip.setDepartureTime(time.getCurrentTime());
+			}
+
+			TripCandidate tripCandidate = delegate.estimateTrip(person, mode, trip, tripCandidates);
+			double tripDepartureTime = time.getCurrentTime();
+			time.addTime(tripCandidate.getDuration());
+			utility += tripCandidate.getUtility();
+
+			tripCandidates.add(tripCandidate);
+
+			if (node != null && numberOfMemoNodes < maximumNumberOfMemoNodes) {
+				PrefixNode child = new PrefixNode(tripCandidate, tripDepartureTime, time, utility);
+				node.children.put(mode, child);
+				numberOfMemoNodes++;
+				node = child;
+			} else {
+				node = null;
+			}
+		}
+
+		return new DefaultTourCandidate(node != null ? node.utility : utility, tripCandidates);
+	}
+
+	static private class PrefixNode {
+		final TripCandidate tripCandidate;
+		final double departureTime;
+		final TimeInterpreter time;
+		final double utility;
+		final Map<String, PrefixNode> children = new HashMap<>();
+
+		PrefixNode(TripCandidate tripCandidate, double departureTime, TimeInterpreter time, double utility) {
+			this.tripCandidate = tripCandidate;
+			this.departureTime = departureTime;
+			this.time = time;
+			this.utility = utility;
+		}
+	}
 }
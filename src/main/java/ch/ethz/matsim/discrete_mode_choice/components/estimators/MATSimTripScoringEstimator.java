@@ -36,7 +36,14 @@ public class MATSimTripScoringEstimator extends AbstractTripRouterEstimator {
 	public MATSimTripScoringEstimator(ActivityFacilities facilities, TripRouter tripRouter,
 			PTWaitingTimeEstimator waitingTimeEstimator, ScoringParametersForPerson scoringParametersForPerson,
 			TimeInterpreter.Factory timeInterpreterFactory, Collection<String> ptModes) {
-		super(tripRouter, facilities, timeInterpreterFactory, Collections.emptySet());
+		this(facilities, tripRouter, waitingTimeEstimator, scoringParametersForPerson, timeInterpreterFactory, ptModes,
+				null);
+	}
+
+	public MATSimTripScoringEstimator(ActivityFacilities facilities, TripRouter tripRouter,
+			PTWaitingTimeEstimator waitingTimeEstimator, ScoringParametersForPerson scoringParametersForPerson,
+			TimeInterpreter.Factory timeInterpreterFactory, Collection<String> ptModes, RouteCache routeCache) {
+		super(tripRouter, facilities, timeInterpreterFactory, Collections.emptySet(), routeCache);
 		this.waitingTimeEstimator = waitingTimeEstimator;
 		this.scoringParametersForPerson = scoringParametersForPerson;
 		this.ptLegModes = ptModes;
@@ -0,0 +1,266 @@
+package ch.ethz.matsim.discrete_mode_choice.components.estimators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Route cache that is shared by all estimators which are based on
+ * AbstractTripRouterEstimator. Many agents travel between the same locations
+ * at similar times, so their routes can be reused instead of calling the
+ * router again.
+ *
+ * Routes are identified by the mode, the origin and destination location
+ * (facility, or link if no facility is given) and the departure time, which is
+ * aggregated into bins of a fixed size. Only the modes that are explicitly
+ * listed are cached, because routes may depend on the person (for instance, on
+ * person-specific travel disutilities) or on the exact coordinates of the
+ * activities. For those modes the routes of the first agent are used for all
+ * others in the same bin, so the cache should only be enabled for modes where
+ * this is an acceptable approximation.
+ *
+ * The cache holds deep copies of the routed plan elements and returns new
+ * copies on every hit, with all times shifted to the requested departure time.
+ * Hence, the returned elements can safely be inserted into plans. The cache is
+ * bounded and evicts the least recently used routes. It is split into a number
+ * of independently locked segments, so that replanning threads do not block
+ * each other. Since travel times change from one iteration to the next, the
+ * cache is cleared whenever an iteration starts.
+ *
+ * @author sebhoerl
+ */
+public class RouteCache implements IterationStartsListener {
+	private final static Logger logger = Logger.getLogger(RouteCache.class);
+
+	private final static int MAXIMUM_NUMBER_OF_SEGMENTS = 16;
+
+	final private Collection<String> modes;
+	final private double timeBinSize;
+	final private Segment[] segments;
+
+	final private AtomicLong hits = new AtomicLong();
+	final private AtomicLong misses = new AtomicLong();
+
+	public RouteCache(Collection<String> modes, int maximumSize, double timeBinSize) {
+		if (maximumSize < 1) {
+			throw new IllegalStateException("Maximum size of the route cache must be positive");
+		}
+
+		if (timeBinSize <= 0.0) {
+			throw new IllegalStateException("Time bin size of the route cache must be positive");
+		}
+
+		this.modes = new HashSet<>(modes);
+		this.timeBinSize = timeBinSize;
+
+		int numberOfSegments = Math.min(MAXIMUM_NUMBER_OF_SEGMENTS, maximumSize);
+		this.segments = new Segment[numberOfSegments];
+
+		for (int i = 0; i < numberOfSegments; i++) {
+			int segmentSize = maximumSize / numberOfSegments + (i < maximumSize % numberOfSegments ? 1 : 0);
+			segments[i] = new Segment(segmentSize);
+		}
+	}
+
+	/**
+	 * Returns whether routes of the given mode between the given activities can be
+	 * cached.
+	 */
+	public boolean isCacheable(String mode, Activity originActivity, Activity destinationActivity) {
+		return modes.contains(mode) && hasLocation(originActivity) && hasLocation(destinationActivity);
+	}
+
+	/**
+	 * Returns a copy of the cached route or null if no route is known.
+	 */
+	public List<? extends PlanElement> getRoute(String mode, Activity originActivity, Activity destinationActivity,
+			double departureTime) {
+		RouteKey key = createKey(mode, originActivity, destinationActivity, departureTime);
+		CachedRoute route = getSegment(key).get(key);
+
+		if (route == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return copyElements(route.elements, departureTime - route.departureTime);
+	}
+
+	/**
+	 * Adds a route to the cache. The elements are copied, so the caller may modify
+	 * them afterwards.
+	 */
+	public void putRoute(String mode, Activity originActivity, Activity destinationActivity, double departureTime,
+			List<? extends PlanElement> elements) {
+		for (PlanElement element : elements) {
+			if (!(element instanceof Leg || element instanceof Activity)) {
+				return;
+			}
+		}
+
+		RouteKey key = createKey(mode, originActivity, destinationActivity, departureTime);
+		getSegment(key).put(key, new CachedRoute(departureTime, copyElements(elements, 0.0)));
+	}
+
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+
+		hits.set(0);
+		misses.set(0);
+	}
+
+	public long getNumberOfHits() {
+		return hits.get();
+	}
+
+	public long getNumberOfMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+		long requests = hits.get() + misses.get();
+
+		if (requests > 0) {
+			logger.info(String.format("Route cache: %d hits, %d misses (%.2f%%)", hits.get(), misses.get(),
+					100.0 * hits.get() / requests));
+		}
+
+		clear();
+	}
+
+	private RouteKey createKey(String mode, Activity originActivity, Activity destinationActivity,
+			double departureTime) {
+		return new RouteKey(mode, getLocationId(originActivity), getLocationId(destinationActivity),
+				(long) Math.floor(departureTime / timeBinSize));
+	}
+
+	private Segment getSegment(RouteKey key) {
+		return segments[Math.floorMod(key.hashCode(), segments.length)];
+	}
+
+	static private boolean hasLocation(Activity activity) {
+		return activity.getFacilityId() != null || activity.getLinkId() != null;
+	}
+
+	static private Id<? extends BasicLocation> getLocationId(Activity activity) {
+		if (activity.getFacilityId() != null) {
+			return activity.getFacilityId();
+		}
+
+		return activity.getLinkId();
+	}
+
+	static private List<PlanElement> copyElements(List<? extends PlanElement> elements, double offset) {
+		List<PlanElement> copy = new ArrayList<>(elements.size());
+
+		for (PlanElement element : elements) {
+			if (element instanceof Leg) {
+				Leg leg = PopulationUtils.createLeg((Leg) element);
+				leg.setDepartureTime(shift(leg.getDepartureTime(), offset));
+				copy.add(leg);
+			} else {
+				Activity activity = PopulationUtils.createActivity((Activity) element);
+				activity.setStartTime(shift(activity.getStartTime(), offset));
+				activity.setEndTime(shift(activity.getEndTime(), offset));
+				copy.add(activity);
+			}
+		}
+
+		return copy;
+	}
+
+	static private double shift(double time, double offset) {
+		return Time.isUndefinedTime(time) ? time : time + offset;
+	}
+
+	static private class CachedRoute {
+		final double departureTime;
+		final List<PlanElement> elements;
+
+		CachedRoute(double departureTime, List<PlanElement> elements) {
+			this.departureTime = departureTime;
+			this.elements = elements;
+		}
+	}
+
+	static private class Segment {
+		final private Map<RouteKey, CachedRoute> routes;
+
+		Segment(int maximumSize) {
+			this.routes = new LinkedHashMap<RouteKey, CachedRoute>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<RouteKey, CachedRoute> eldest) {
+					return size() > maximumSize;
+				}
+			};
+		}
+
+		synchronized CachedRoute get(RouteKey key) {
+			return routes.get(key);
+		}
+
+		synchronized void put(RouteKey key, CachedRoute route) {
+			routes.put(key, route);
+		}
+
+		synchronized void clear() {
+			routes.clear();
+		}
+	}
+
+	static private class RouteKey {
+		final private String mode;
+		final private Id<? extends BasicLocation> originId;
+		final private Id<? extends BasicLocation> destinationId;
+		final private long timeBin;
+		final private int hashCode;
+
+		RouteKey(String mode, Id<? extends BasicLocation> originId, Id<? extends BasicLocation> destinationId,
+				long timeBin) {
+			this.mode = mode;
+			this.originId = originId;
+			this.destinationId = destinationId;
+			this.timeBin = timeBin;
+			this.hashCode = Objects.hash(mode, originId, destinationId, timeBin);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof RouteKey) {
+				RouteKey otherKey = (RouteKey) other;
+
+				return timeBin == otherKey.timeBin && mode.equals(otherKey.mode)
+						&& originId.equals(otherKey.originId) && destinationId.equals(otherKey.destinationId);
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package ch.ethz.matsim.discrete_mode_choice.components.tour_finder;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -9,24 +10,55 @@ import java.util.Set;
 import org.matsim.api.core.v01.population.Activity;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
 
 public abstract class AbstractTourFinder implements TourFinder {
 	abstract protected Set<Activity> findActivities(List<DiscreteModeChoiceTrip> trips);
 
+	/**
+	 * Returns the trips of the plan view (which belongs to the given trips) after
+	 * which a tour ends. Implementations can override this to work on the activity
+	 * types and locations of the view directly. If null is returned,
+	 * findActivities is used instead.
+	 */
+	protected BitSet findTourEnds(List<DiscreteModeChoiceTrip> trips, PlanView planView) {
+		return null;
+	}
+
 	@Override
 	public List<List<DiscreteModeChoiceTrip>> findTours(List<DiscreteModeChoiceTrip> trips) {
-		Set<Activity> relevantActivities = findActivities(trips);
+		PlanView planView = PlanView.find(trips);
+		BitSet tourEnds = planView == null ? null : findTourEnds(trips, planView);
+
+		if (tourEnds == null) {
+			Set<Activity> relevantActivities = findActivities(trips);
+			tourEnds = new BitSet(trips.size());
+
+			int index = 0;
+
+			for (DiscreteModeChoiceTrip trip : trips) {
+				if (relevantActivities.contains(trip.getDestinationActivity())) {
+					tourEnds.set(index);
+				}
+
+				index++;
+			}
+		}
 
 		List<List<DiscreteModeChoiceTrip>> tours = new LinkedList<>();
 		List<DiscreteModeChoiceTrip> currentTour = new LinkedList<>();
 
+		int index = 0;
+
 		for (DiscreteModeChoiceTrip trip : trips) {
 			currentTour.add(trip);
 
-			if (relevantActivities.contains(trip.getDestinationActivity())) {
+			if (tourEnds.get(index)) {
 				tours.add(new ArrayList<>(currentTour));
 				currentTour.clear();
 			}
+
+			index++;
 		}
 
 		if (currentTour.size() > 0) {
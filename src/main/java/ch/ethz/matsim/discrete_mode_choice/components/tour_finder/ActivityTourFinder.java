@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.tour_finder;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -8,6 +9,8 @@ import java.util.Set;
 import org.matsim.api.core.v01.population.Activity;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 
 /**
  * This TourFinder creates tours between activities of a certain type. For
@@ -18,13 +21,45 @@ import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
 public class ActivityTourFinder extends AbstractTourFinder {
 	private final Collection<String> activityTypes;
 	private final String singleActivityType;
+	private final ActivityTypeRegistry activityTypeRegistry;
+	private final BitSet activityTypeMask;
 
 	/**
-	 * Defines which activity type is used to establish tours.
+	 * Defines which activity type is used to establish tours. The activity type
+	 * mask is only used for plan views that have been created with the given
+	 * registry.
 	 */
-	public ActivityTourFinder(Collection<String> activityTypes) {
+	public ActivityTourFinder(Collection<String> activityTypes, ActivityTypeRegistry activityTypeRegistry) {
 		this.activityTypes = activityTypes;
 		this.singleActivityType = activityTypes.size() == 1 ? activityTypes.iterator().next() : null;
+		this.activityTypeRegistry = activityTypeRegistry;
+		this.activityTypeMask = activityTypeRegistry.getActivityTypeMask(activityTypes);
+	}
+
+	/**
+	 * Defines which activity type is used to establish tours.
+	 */
+	public ActivityTourFinder(Collection<String> activityTypes) {
+		this(activityTypes, new ActivityTypeRegistry());
+	}
+
+	@Override
+	protected BitSet findTourEnds(List<DiscreteModeChoiceTrip> trips, PlanView planView) {
+		if (planView.getActivityTypeRegistry() != activityTypeRegistry) {
+			return null;
+		}
+
+		BitSet tourEnds = new BitSet(planView.getNumberOfTrips());
+
+		for (int index = 0; index < planView.getNumberOfTrips(); index++) {
+			int activityIndex = planView.getDestinationActivityIndex(index);
+
+			if (activityTypeMask.get(planView.getActivityTypeIndex(activityIndex))) {
+				tourEnds.set(index);
+			}
+		}
+
+		return tourEnds;
 	}
 
 	@Override
@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.tour_finder;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -11,6 +12,7 @@ import org.matsim.api.core.v01.population.Activity;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
 
 /**
  * This TourFinder makes use of the HomeFinder that is defined in configuration.
@@ -25,6 +27,24 @@ public class HomeTourFinder extends AbstractTourFinder {
 		this.homeFinder = homeFinder;
 	}
 
+	@Override
+	protected BitSet findTourEnds(List<DiscreteModeChoiceTrip> trips, PlanView planView) {
+		BitSet tourEnds = new BitSet(planView.getNumberOfTrips());
+
+		Id<? extends BasicLocation> homeLocationId = homeFinder.getHomeLocationId(trips);
+		int homeIndex = planView.findLocationIndex(homeLocationId);
+
+		if (homeIndex >= 0) {
+			for (int index = 0; index < planView.getNumberOfTrips(); index++) {
+				if (planView.getLocationIndex(planView.getDestinationActivityIndex(index)) == homeIndex) {
+					tourEnds.set(index);
+				}
+			}
+		}
+
+		return tourEnds;
+	}
+
 	@Override
 	protected Set<Activity> findActivities(List<DiscreteModeChoiceTrip> trips) {
 		Set<Activity> relevantActivities = new HashSet<>();
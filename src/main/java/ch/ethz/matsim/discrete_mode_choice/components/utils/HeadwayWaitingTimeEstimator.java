@@ -0,0 +1,171 @@
+package ch.ethz.matsim.discrete_mode_choice.components.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+
+/**
+ * Waiting time estimator for networks with many high-frequency lines. For every
+ * stop of every route, the mean headway is calculated for bins of the day. If
+ * an agent departs in a bin in which the headway is not larger than the
+ * maximum headway, the expected waiting time of half the headway is returned
+ * directly from this table. For less frequent services, the exact next
+ * departure is searched as in the ScheduleWaitingTimeEstimator.
+ *
+ * For every route and stop, only the bins between the first and the last
+ * departure are stored, as single precision values. The table therefore needs
+ * roughly 4 bytes per bin of the service span of each route and stop, e.g.
+ * about 80 bytes per route and stop for a service of 20 hours and bins of one
+ * hour. Small bin sizes increase the memory consumption accordingly.
+ *
+ * @author sebhoerl
+ */
+public class HeadwayWaitingTimeEstimator implements PTWaitingTimeEstimator {
+	private final TransitScheduleSnapshot snapshot;
+	private final ScheduleWaitingTimeEstimator exactEstimator;
+
+	private final double binSize;
+	private final double maximumHeadway;
+
+	private final Map<Long, Integer> rowIndices = new HashMap<>();
+	private final int[] rowFirstBins;
+	private final int[] rowStarts;
+	private final float[] headways;
+	private final double[] lastDepartureTimes;
+
+	public HeadwayWaitingTimeEstimator(TransitScheduleSnapshot snapshot, double binSize, double maximumHeadway) {
+		if (!(binSize > 0.0)) {
+			throw new IllegalArgumentException("The headway bin size must be positive, but is " + binSize);
+		}
+
+		this.snapshot = snapshot;
+		this.exactEstimator = new ScheduleWaitingTimeEstimator(snapshot);
+		this.binSize = binSize;
+		this.maximumHeadway = maximumHeadway;
+
+		int numberOfRows = 0;
+
+		for (int routeIndex = 0; routeIndex < snapshot.getNumberOfRoutes(); routeIndex++) {
+			for (int k = 0; k < snapshot.getNumberOfRouteStops(routeIndex); k++) {
+				long key = getKey(routeIndex, snapshot.getRouteStopIndex(routeIndex, k));
+
+				if (!rowIndices.containsKey(key)) {
+					rowIndices.put(key, numberOfRows++);
+				}
+			}
+		}
+
+		this.rowFirstBins = new int[numberOfRows];
+		this.lastDepartureTimes = new double[numberOfRows];
+
+		float[][] rowHeadways = new float[numberOfRows][];
+
+		for (int routeIndex = 0; routeIndex < snapshot.getNumberOfRoutes(); routeIndex++) {
+			calculateHeadways(routeIndex, rowHeadways);
+		}
+
+		this.rowStarts = new int[numberOfRows + 1];
+
+		for (int row = 0; row < numberOfRows; row++) {
+			rowStarts[row + 1] = rowStarts[row] + rowHeadways[row].length;
+		}
+
+		this.headways = new float[rowStarts[numberOfRows]];
+
+		for (int row = 0; row < numberOfRows; row++) {
+			System.arraycopy(rowHeadways[row], 0, headways, rowStarts[row], rowHeadways[row].length);
+		}
+	}
+
+	private long getKey(int routeIndex, int stopIndex) {
+		return (long) routeIndex * snapshot.getNumberOfStops() + stopIndex;
+	}
+
+	/**
+	 * Calculates the headways at all stops of a route. If the route serves a stop
+	 * multiple times, the departures of all visits are merged.
+	 */
+	private void calculateHeadways(int routeIndex, float[][] rowHeadways) {
+		int numberOfDepartures = snapshot.getNumberOfDepartures(routeIndex);
+		Map<Integer, List<Double>> stopOffsets = new HashMap<>();
+
+		for (int k = 0; k < snapshot.getNumberOfRouteStops(routeIndex); k++) {
+			stopOffsets.computeIfAbsent(snapshot.getRouteStopIndex(routeIndex, k), index -> new ArrayList<>())
+					.add(snapshot.getRouteStopOffset(routeIndex, k));
+		}
+
+		for (Map.Entry<Integer, List<Double>> entry : stopOffsets.entrySet()) {
+			int row = rowIndices.get(getKey(routeIndex, entry.getKey()));
+
+			double[] times = new double[numberOfDepartures * entry.getValue().size()];
+			int index = 0;
+
+			for (double offset : entry.getValue()) {
+				for (int k = 0; k < numberOfDepartures; k++) {
+					times[index++] = snapshot.getDepartureTime(routeIndex, k) + offset;
+				}
+			}
+
+			Arrays.sort(times);
+
+			lastDepartureTimes[row] = times.length > 0 ? times[times.length - 1] : Double.NEGATIVE_INFINITY;
+
+			if (times.length < 2 || times[times.length - 2] < 0.0) {
+				rowHeadways[row] = new float[0];
+				continue;
+			}
+
+			// Only the bins between the first and the last headway are stored
+			int firstBin = Math.max(0, (int) Math.floor(times[0] / binSize));
+			int lastBin = (int) Math.floor(times[times.length - 2] / binSize);
+
+			double[] sums = new double[lastBin - firstBin + 1];
+			int[] counts = new int[lastBin - firstBin + 1];
+
+			for (int k = 0; k < times.length - 1; k++) {
+				int bin = (int) Math.floor(times[k] / binSize) - firstBin;
+
+				if (bin >= 0) {
+					sums[bin] += times[k + 1] - times[k];
+					counts[bin]++;
+				}
+			}
+
+			float[] binHeadways = new float[sums.length];
+
+			for (int bin = 0; bin < sums.length; bin++) {
+				binHeadways[bin] = counts[bin] > 0 ? (float) (sums[bin] / counts[bin]) : Float.NaN;
+			}
+
+			rowFirstBins[row] = firstBin;
+			rowHeadways[row] = binHeadways;
+		}
+	}
+
+	@Override
+	public double estimateWaitingTime(double agentDepartureTime, ExperimentalTransitRoute route) {
+		int routeIndex = snapshot.getRouteIndex(route.getLineId(), route.getRouteId());
+		int stopIndex = snapshot.getStopIndex(route.getAccessStopId());
+
+		if (routeIndex >= 0 && stopIndex >= 0) {
+			Integer row = rowIndices.get(getKey(routeIndex, stopIndex));
+			if (row != null && agentDepartureTime <= lastDepartureTimes[row]) {
+				int bin = (int) Math.floor(agentDepartureTime / binSize) - rowFirstBins[row];
+
+				if (bin >= 0 && bin < rowStarts[row + 1] - rowStarts[row]) {
+					double headway = headways[rowStarts[row] + bin];
+
+					if (headway <= maximumHeadway) { // false for NaN
+						return 0.5 * headway;
+					}
+				}
+			}
+		}
+
+		return exactEstimator.estimateWaitingTime(agentDepartureTime, route);
+	}
+}
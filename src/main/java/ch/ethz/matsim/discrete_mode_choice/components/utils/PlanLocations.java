@@ -0,0 +1,224 @@
+package ch.ethz.matsim.discrete_mode_choice.components.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
+
+/**
+ * The locations of a sequence of trips (usually the whole plan of an agent),
+ * compiled once so that constraints do not need to look up and compare location
+ * ids while they check mode chains. Every distinct location gets an integer
+ * index. Additionally, the following information is precomputed:
+ *
+ * <ul>
+ * <li>Which trips end at the home location.</li>
+ * <li>For every trip, the first trip (itself included) that ends at its origin
+ * location again, and the first trip that ends at home.</li>
+ * </ul>
+ *
+ * @author sebhoerl
+ */
+public final class PlanLocations {
+	private final int[] originIndices;
+	private final int[] destinationIndices;
+
+	private final int homeIndex;
+	private final BitSet homeDestinations;
+
+	private final int[] nextReturnIndices;
+	private final int[] nextHomeIndices;
+
+	private PlanLocations(int[] originIndices, int[] destinationIndices, int homeIndex, int numberOfLocations) {
+		this.originIndices = originIndices;
+		this.destinationIndices = destinationIndices;
+		this.homeIndex = homeIndex;
+
+		int numberOfTrips = originIndices.length;
+
+		this.homeDestinations = new BitSet(numberOfTrips);
+		this.nextReturnIndices = new int[numberOfTrips];
+		this.nextHomeIndices = new int[numberOfTrips];
+
+		int[] nextArrivalIndices = new int[numberOfLocations];
+		Arrays.fill(nextArrivalIndices, numberOfTrips);
+
+		int nextHomeIndex = numberOfTrips;
+
+		for (int i = numberOfTrips - 1; i >= 0; i--) {
+			nextArrivalIndices[destinationIndices[i]] = i;
+
+			if (destinationIndices[i] == homeIndex) {
+				homeDestinations.set(i);
+				nextHomeIndex = i;
+			}
+
+			nextReturnIndices[i] = nextArrivalIndices[originIndices[i]];
+			nextHomeIndices[i] = nextHomeIndex;
+		}
+	}
+
+	/**
+	 * Compiles the locations of the given trips. The home location may be null. If
+	 * the trips are the trips of a PlanView, its location indices are reused.
+	 */
+	static public PlanLocations create(List<DiscreteModeChoiceTrip> trips,
+			Id<? extends BasicLocation> homeLocationId) {
+		PlanView planView = PlanView.find(trips);
+
+		if (planView != null) {
+			return create(planView, homeLocationId);
+		}
+
+		List<Id<? extends BasicLocation>> originLocationIds = new ArrayList<>(trips.size());
+		List<Id<? extends BasicLocation>> destinationLocationIds = new ArrayList<>(trips.size());
+
+		for (DiscreteModeChoiceTrip trip : trips) {
+			originLocationIds.add(LocationUtils.getLocationId(trip.getOriginActivity()));
+			destinationLocationIds.add(LocationUtils.getLocationId(trip.getDestinationActivity()));
+		}
+
+		return create(originLocationIds, destinationLocationIds, homeLocationId);
+	}
+
+	/**
+	 * Compiles the given origin and destination locations of a sequence of trips.
+	 * The home location may be null.
+	 */
+	static public PlanLocations create(List<Id<? extends BasicLocation>> originLocationIds,
+			List<Id<? extends BasicLocation>> destinationLocationIds, Id<? extends BasicLocation> homeLocationId) {
+		Map<Id<? extends BasicLocation>, Integer> locationIndices = new HashMap<>();
+
+		int[] originIndices = new int[originLocationIds.size()];
+		int[] destinationIndices = new int[destinationLocationIds.size()];
+
+		for (int i = 0; i < originIndices.length; i++) {
+			originIndices[i] = locationIndices.computeIfAbsent(originLocationIds.get(i), id -> locationIndices.size());
+			destinationIndices[i] = locationIndices.computeIfAbsent(destinationLocationIds.get(i),
+					id -> locationIndices.size());
+		}
+
+		int homeIndex = -1;
+
+		if (homeLocationId != null) {
+			homeIndex = locationIndices.computeIfAbsent(homeLocationId, id -> locationIndices.size());
+		}
+
+		return new PlanLocations(originIndices, destinationIndices, homeIndex, locationIndices.size());
+	}
+
+	/**
+	 * Compiles the locations of the trips of a plan view. The home location may be
+	 * null.
+	 */
+	static public PlanLocations create(PlanView planView, Id<? extends BasicLocation> homeLocationId) {
+		int numberOfTrips = planView.getNumberOfTrips();
+		int numberOfLocations = planView.getNumberOfLocations();
+
+		int[] originIndices = new int[numberOfTrips];
+		int[] destinationIndices = new int[numberOfTrips];
+
+		for (int i = 0; i < numberOfTrips; i++) {
+			originIndices[i] = planView.getLocationIndex(planView.getOriginActivityIndex(i));
+			destinationIndices[i] = planView.getLocationIndex(planView.getDestinationActivityIndex(i));
+		}
+
+		int homeIndex = -1;
+
+		if (homeLocationId != null) {
+			homeIndex = planView.findLocationIndex(homeLocationId);
+
+			if (homeIndex == -1) {
+				homeIndex = numberOfLocations++;
+			}
+		}
+
+		return new PlanLocations(originIndices, destinationIndices, homeIndex, numberOfLocations);
+	}
+
+	public int getNumberOfTrips() {
+		return originIndices.length;
+	}
+
+	public int getOriginIndex(int tripIndex) {
+		return originIndices[tripIndex];
+	}
+
+	public int getDestinationIndex(int tripIndex) {
+		return destinationIndices[tripIndex];
+	}
+
+	/**
+	 * Returns the index of the home location or -1 if there is none. Since all
+	 * location indices are non-negative, comparing a location index with this
+	 * value is false if there is no home.
+	 */
+	public int getHomeIndex() {
+		return homeIndex;
+	}
+
+	public boolean hasHome() {
+		return homeIndex >= 0;
+	}
+
+	public boolean isHomeDestination(int tripIndex) {
+		return homeDestinations.get(tripIndex);
+	}
+
+	/**
+	 * Returns whether the agent arrives at the origin location of the given trip
+	 * again (with this trip or a later one) before arriving at home.
+	 */
+	public boolean willReturnBeforeHome(int tripIndex) {
+		int nextReturnIndex = nextReturnIndices[tripIndex];
+		return nextReturnIndex < originIndices.length && nextReturnIndex <= nextHomeIndices[tripIndex];
+	}
+
+	/**
+	 * Returns the index of the first trip (the given one included) that ends at
+	 * the origin location of the given trip, or the number of trips if there is
+	 * none.
+	 */
+	public int getNextReturnIndex(int tripIndex) {
+		return nextReturnIndices[tripIndex];
+	}
+
+	/**
+	 * Decomposes the trips of a tour into top-level subtours: Starting from the
+	 * first trip, a subtour lasts until the agent returns to its origin for the
+	 * first time. The next subtour starts with the following trip. A trip after
+	 * which the agent never returns to its origin (within the tour) forms a
+	 * subtour on its own.
+	 *
+	 * The result contains for every trip of the tour (relative to the first trip)
+	 * the index of the first trip of its subtour.
+	 */
+	public int[] getSubtourStarts(int firstTripIndex, int numberOfTrips) {
+		int[] subtourStarts = new int[numberOfTrips];
+		int index = 0;
+
+		while (index < numberOfTrips) {
+			int endIndex = nextReturnIndices[firstTripIndex + index] - firstTripIndex;
+
+			if (endIndex >= numberOfTrips) {
+				endIndex = index;
+			}
+
+			for (int k = index; k <= endIndex; k++) {
+				subtourStarts[k] = index;
+			}
+
+			index = endIndex + 1;
+		}
+
+		return subtourStarts;
+	}
+}
@@ -0,0 +1,648 @@
+package ch.ethz.matsim.discrete_mode_choice.components.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import ch.ethz.matsim.discrete_mode_choice.model.utilities.RandomUtils;
+
+/**
+ * A compact and immutable copy of the departures in a TransitSchedule, which is
+ * used to estimate waiting times. Routes and stops are identified by integer
+ * indices and all data is kept in a few flat arrays:
+ *
+ * <ul>
+ * <li>The sorted departure times of all routes, one after another. The
+ * departures of route r are found between routeDepartureStart[r] and
+ * routeDepartureStart[r + 1].</li>
+ * <li>The stops of all routes with their departure offsets, indexed in the
+ * same way by routeStopStart.</li>
+ * <li>An open addressing hash table from (route, stop) to the position of the
+ * first visit of the stop in the stops of the route. If a route serves a stop
+ * multiple times, the further visits are chained by nextVisits.</li>
+ * </ul>
+ *
+ * Finding the next departure of a route at a stop is therefore one lookup in
+ * the hash table and one binary search over the departures of the route (one
+ * per visit if the route serves the stop multiple times).
+ *
+ * The snapshot can be written to a file. When it is loaded again, the file is
+ * memory-mapped, so the arrays are not copied to the heap and multiple JVMs on
+ * the same machine share the same pages.
+ *
+ * @author sebhoerl
+ */
+public class TransitScheduleSnapshot {
+	private static final Logger logger = Logger.getLogger(TransitScheduleSnapshot.class);
+
+	private static final int MAGIC = 0x444d4353;
+	private static final int VERSION = 3;
+
+	private static final long EMPTY_KEY = -1;
+
+	private final Map<Id<TransitLine>, Map<Id<TransitRoute>, Integer>> routeIndices;
+	private final Map<Id<TransitStopFacility>, Integer> stopIndices;
+
+	private final DoubleBuffer departureTimes;
+	private final DoubleBuffer routeStopOffsets;
+	private final IntBuffer routeDepartureStart;
+	private final IntBuffer routeStopStart;
+	private final IntBuffer routeStopIndices;
+
+	private final LongBuffer visitKeys;
+	private final IntBuffer firstVisits;
+	private final IntBuffer nextVisits;
+
+	private final long fingerprint;
+
+	private TransitScheduleSnapshot(Map<Id<TransitLine>, Map<Id<TransitRoute>, Integer>> routeIndices,
+			Map<Id<TransitStopFacility>, Integer> stopIndices, DoubleBuffer departureTimes,
+			DoubleBuffer routeStopOffsets, IntBuffer routeDepartureStart, IntBuffer routeStopStart,
+			IntBuffer routeStopIndices, LongBuffer visitKeys, IntBuffer firstVisits, IntBuffer nextVisits,
+			long fingerprint) {
+		this.routeIndices = routeIndices;
+		this.stopIndices = stopIndices;
+		this.departureTimes = departureTimes;
+		this.routeStopOffsets = routeStopOffsets;
+		this.routeDepartureStart = routeDepartureStart;
+		this.routeStopStart = routeStopStart;
+		this.routeStopIndices = routeStopIndices;
+		this.visitKeys = visitKeys;
+		this.firstVisits = firstVisits;
+		this.nextVisits = nextVisits;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Returns the index of a route or -1 if it is not part of the schedule.
+	 */
+	public int getRouteIndex(Id<TransitLine> lineId, Id<TransitRoute> routeId) {
+		Map<Id<TransitRoute>, Integer> lineRouteIndices = routeIndices.get(lineId);
+
+		if (lineRouteIndices != null) {
+			Integer index = lineRouteIndices.get(routeId);
+
+			if (index != null) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the index of a stop or -1 if it is not served by any route.
+	 */
+	public int getStopIndex(Id<TransitStopFacility> stopId) {
+		Integer index = stopIndices.get(stopId);
+		return index == null ? -1 : index;
+	}
+
+	public int getNumberOfRoutes() {
+		return routeDepartureStart.limit() - 1;
+	}
+
+	public int getNumberOfStops() {
+		return stopIndices.size();
+	}
+
+	public int getNumberOfDepartures(int routeIndex) {
+		return routeDepartureStart.get(routeIndex + 1) - routeDepartureStart.get(routeIndex);
+	}
+
+	/**
+	 * Returns the k-th departure time of a route at its first stop, departures are
+	 * sorted by time.
+	 */
+	public double getDepartureTime(int routeIndex, int k) {
+		return departureTimes.get(routeDepartureStart.get(routeIndex) + k);
+	}
+
+	public int getNumberOfRouteStops(int routeIndex) {
+		return routeStopStart.get(routeIndex + 1) - routeStopStart.get(routeIndex);
+	}
+
+	/**
+	 * Returns the stop index of the k-th stop of a route.
+	 */
+	public int getRouteStopIndex(int routeIndex, int k) {
+		return routeStopIndices.get(routeStopStart.get(routeIndex) + k);
+	}
+
+	/**
+	 * Returns the departure offset of the k-th stop of a route.
+	 */
+	public double getRouteStopOffset(int routeIndex, int k) {
+		return routeStopOffsets.get(routeStopStart.get(routeIndex) + k);
+	}
+
+	/**
+	 * Returns the first time at which the given route departs from the given stop
+	 * not earlier than the given time, or infinity if there is no such departure.
+	 * If the route serves the stop multiple times, the earliest departure of all
+	 * of them is returned.
+	 */
+	public double getNextDepartureTime(int routeIndex, int stopIndex, double time) {
+		int departureStart = routeDepartureStart.get(routeIndex);
+		int departureEnd = routeDepartureStart.get(routeIndex + 1);
+
+		double nextDepartureTime = Double.POSITIVE_INFINITY;
+
+		for (int k = findFirstVisit(routeIndex, stopIndex); k >= 0; k = nextVisits.get(k)) {
+			double offset = routeStopOffsets.get(k);
+			int index = findFirstNotBefore(departureStart, departureEnd, time - offset);
+
+			if (index < departureEnd) {
+				nextDepartureTime = Math.min(nextDepartureTime, departureTimes.get(index) + offset);
+			}
+		}
+
+		return nextDepartureTime;
+	}
+
+	static private long getVisitKey(int routeIndex, int stopIndex) {
+		return ((long) routeIndex << 32) | stopIndex;
+	}
+
+	static private int getSlot(long key, int capacity) {
+		return (int) RandomUtils.mix(key) & (capacity - 1);
+	}
+
+	/**
+	 * Returns the position of the first visit of the stop in the stops of the
+	 * route, or -1 if the route does not serve the stop.
+	 */
+	private int findFirstVisit(int routeIndex, int stopIndex) {
+		long key = getVisitKey(routeIndex, stopIndex);
+		int capacity = visitKeys.limit();
+		int slot = getSlot(key, capacity);
+
+		while (true) {
+			long slotKey = visitKeys.get(slot);
+
+			if (slotKey == key) {
+				return firstVisits.get(slot);
+			} else if (slotKey == EMPTY_KEY) {
+				return -1;
+			}
+
+			slot = (slot + 1) & (capacity - 1);
+		}
+	}
+
+	private int findFirstNotBefore(int lower, int upper, double time) {
+		while (lower < upper) {
+			int middle = (lower + upper) >>> 1;
+
+			if (departureTimes.get(middle) < time) {
+				lower = middle + 1;
+			} else {
+				upper = middle;
+			}
+		}
+
+		return lower;
+	}
+
+	/**
+	 * Returns whether the snapshot has been created from a schedule with the same
+	 * lines, routes, stops and departures. The fingerprint covers the stop
+	 * sequence and departure offsets of every route as well as all departure
+	 * times, so a shifted departure is detected as well.
+	 */
+	public boolean matches(TransitSchedule schedule) {
+		return fingerprint == calculateFingerprint(schedule);
+	}
+
+	static private long calculateFingerprint(TransitSchedule schedule) {
+		long fingerprint = 17;
+
+		for (TransitLine transitLine : schedule.getTransitLines().values()) {
+			fingerprint = 31 * fingerprint + transitLine.getId().toString().hashCode();
+
+			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				fingerprint = 31 * fingerprint + transitRoute.getId().toString().hashCode();
+				fingerprint = 31 * fingerprint + transitRoute.getStops().size();
+
+				for (TransitRouteStop stop : transitRoute.getStops()) {
+					fingerprint = 31 * fingerprint + stop.getStopFacility().getId().toString().hashCode();
+					fingerprint = 31 * fingerprint + Double.doubleToLongBits(stop.getDepartureOffset());
+				}
+
+				// Departures are sorted in the snapshot, so their order does not matter
+				double[] departureTimes = new double[transitRoute.getDepartures().size()];
+				int departureIndex = 0;
+
+				for (Departure departure : transitRoute.getDepartures().values()) {
+					departureTimes[departureIndex++] = departure.getDepartureTime();
+				}
+
+				Arrays.sort(departureTimes);
+				fingerprint = 31 * fingerprint + departureTimes.length;
+
+				for (double departureTime : departureTimes) {
+					fingerprint = 31 * fingerprint + Double.doubleToLongBits(departureTime);
+				}
+			}
+		}
+
+		return fingerprint;
+	}
+
+	/**
+	 * Creates a snapshot of the given schedule on the heap.
+	 */
+	static public TransitScheduleSnapshot create(TransitSchedule schedule) {
+		Map<Id<TransitLine>, Map<Id<TransitRoute>, Integer>> routeIndices = new HashMap<>();
+		Map<Id<TransitStopFacility>, Integer> stopIndices = new HashMap<>();
+
+		int numberOfRoutes = 0;
+		int numberOfDepartures = 0;
+		int numberOfRouteStops = 0;
+
+		for (TransitLine transitLine : schedule.getTransitLines().values()) {
+			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				numberOfRoutes++;
+				numberOfDepartures += transitRoute.getDepartures().size();
+				numberOfRouteStops += transitRoute.getStops().size();
+			}
+		}
+
+		double[] departureTimes = new double[numberOfDepartures];
+		double[] routeStopOffsets = new double[numberOfRouteStops];
+		int[] routeDepartureStart = new int[numberOfRoutes + 1];
+		int[] routeStopStart = new int[numberOfRoutes + 1];
+		int[] routeStopIndices = new int[numberOfRouteStops];
+
+		int routeIndex = 0;
+		int departureIndex = 0;
+		int routeStopIndex = 0;
+
+		for (TransitLine transitLine : schedule.getTransitLines().values()) {
+			Map<Id<TransitRoute>, Integer> lineRouteIndices = new HashMap<>();
+			routeIndices.put(transitLine.getId(), lineRouteIndices);
+
+			for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
+				lineRouteIndices.put(transitRoute.getId(), routeIndex);
+
+				routeDepartureStart[routeIndex] = departureIndex;
+
+				for (Departure departure : transitRoute.getDepartures().values()) {
+					departureTimes[departureIndex++] = departure.getDepartureTime();
+				}
+
+				Arrays.sort(departureTimes, routeDepartureStart[routeIndex], departureIndex);
+
+				routeStopStart[routeIndex] = routeStopIndex;
+
+				for (TransitRouteStop stop : transitRoute.getStops()) {
+					Id<TransitStopFacility> stopId = stop.getStopFacility().getId();
+					Integer stopIndex = stopIndices.get(stopId);
+
+					if (stopIndex == null) {
+						stopIndex = stopIndices.size();
+						stopIndices.put(stopId, stopIndex);
+					}
+
+					routeStopIndices[routeStopIndex] = stopIndex;
+					routeStopOffsets[routeStopIndex] = stop.getDepartureOffset();
+					routeStopIndex++;
+				}
+
+				routeIndex++;
+			}
+		}
+
+		routeDepartureStart[numberOfRoutes] = departureIndex;
+		routeStopStart[numberOfRoutes] = routeStopIndex;
+
+		// Chain the visits of the same stop by a route and remember the first ones
+		int[] nextVisits = new int[numberOfRouteStops];
+		List<Integer> firstVisitList = new ArrayList<>();
+
+		for (routeIndex = 0; routeIndex < numberOfRoutes; routeIndex++) {
+			Map<Integer, Integer> lastVisits = new HashMap<>();
+
+			for (int k = routeStopStart[routeIndex]; k < routeStopStart[routeIndex + 1]; k++) {
+				Integer lastVisit = lastVisits.put(routeStopIndices[k], k);
+				nextVisits[k] = -1;
+
+				if (lastVisit == null) {
+					firstVisitList.add(k);
+				} else {
+					nextVisits[lastVisit] = k;
+				}
+			}
+		}
+
+		int capacity = 2;
+
+		while (capacity < 2 * firstVisitList.size()) {
+			capacity <<= 1;
+		}
+
+		long[] visitKeys = new long[capacity];
+		int[] firstVisits = new int[capacity];
+		Arrays.fill(visitKeys, EMPTY_KEY);
+
+		routeIndex = 0;
+
+		for (int k : firstVisitList) {
+			while (k >= routeStopStart[routeIndex + 1]) {
+				routeIndex++;
+			}
+
+			long key = getVisitKey(routeIndex, routeStopIndices[k]);
+			int slot = getSlot(key, capacity);
+
+			while (visitKeys[slot] != EMPTY_KEY) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			visitKeys[slot] = key;
+			firstVisits[slot] = k;
+		}
+
+		return new TransitScheduleSnapshot(routeIndices, stopIndices, DoubleBuffer.wrap(departureTimes),
+				DoubleBuffer.wrap(routeStopOffsets), IntBuffer.wrap(routeDepartureStart),
+				IntBuffer.wrap(routeStopStart), IntBuffer.wrap(routeStopIndices), LongBuffer.wrap(visitKeys),
+				IntBuffer.wrap(firstVisits), IntBuffer.wrap(nextVisits), calculateFingerprint(schedule));
+	}
+
+	/**
+	 * Writes the snapshot to a file. The file is written under a temporary name
+	 * first and then moved, so other processes never see an incomplete file.
+	 */
+	public void write(File file) throws IOException {
+		byte[] header = createHeader();
+
+		int numberOfRoutes = routeDepartureStart.limit() - 1;
+		int numberOfDepartures = departureTimes.limit();
+		int numberOfRouteStops = routeStopOffsets.limit();
+		int capacity = visitKeys.limit();
+
+		int headerSize = align(12 + header.length);
+		long totalSize = (long) headerSize + 8L * (numberOfDepartures + numberOfRouteStops + capacity)
+				+ 4L * (2 * (numberOfRoutes + 1) + 2 * numberOfRouteStops + capacity);
+
+		if (totalSize > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Transit schedule snapshot is too large to be written");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) totalSize);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(header.length);
+		buffer.put(header);
+		buffer.position(headerSize);
+
+		for (int i = 0; i < numberOfDepartures; i++) {
+			buffer.putDouble(departureTimes.get(i));
+		}
+
+		for (int i = 0; i < numberOfRouteStops; i++) {
+			buffer.putDouble(routeStopOffsets.get(i));
+		}
+
+		for (int i = 0; i < capacity; i++) {
+			buffer.putLong(visitKeys.get(i));
+		}
+
+		for (int i = 0; i <= numberOfRoutes; i++) {
+			buffer.putInt(routeDepartureStart.get(i));
+		}
+
+		for (int i = 0; i <= numberOfRoutes; i++) {
+			buffer.putInt(routeStopStart.get(i));
+		}
+
+		for (int i = 0; i < numberOfRouteStops; i++) {
+			buffer.putInt(routeStopIndices.get(i));
+		}
+
+		for (int i = 0; i < capacity; i++) {
+			buffer.putInt(firstVisits.get(i));
+		}
+
+		for (int i = 0; i < numberOfRouteStops; i++) {
+			buffer.putInt(nextVisits.get(i));
+		}
+
+		// Every process writes its own temporary file, so concurrent writers do not
+		// interleave their data
+		Path directory = file.getAbsoluteFile().getParentFile().toPath();
+		Path temporaryPath = Files.createTempFile(directory, file.getName(), ".tmp");
+
+		try {
+			Files.write(temporaryPath, buffer.array());
+			Files.move(temporaryPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryPath);
+		}
+	}
+
+	static private int align(int size) {
+		return (size + 7) / 8 * 8;
+	}
+
+	private byte[] createHeader() throws IOException {
+		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(byteStream);
+
+		outputStream.writeLong(fingerprint);
+		outputStream.writeInt(departureTimes.limit());
+		outputStream.writeInt(routeStopOffsets.limit());
+		outputStream.writeInt(visitKeys.limit());
+
+		// Routes ordered by their index
+		List<String[]> routes = new ArrayList<>();
+
+		for (Map.Entry<Id<TransitLine>, Map<Id<TransitRoute>, Integer>> lineEntry : routeIndices.entrySet()) {
+			for (Map.Entry<Id<TransitRoute>, Integer> routeEntry : lineEntry.getValue().entrySet()) {
+				while (routes.size() <= routeEntry.getValue()) {
+					routes.add(null);
+				}
+
+				routes.set(routeEntry.getValue(),
+						new String[] { lineEntry.getKey().toString(), routeEntry.getKey().toString() });
+			}
+		}
+
+		outputStream.writeInt(routes.size());
+
+		for (String[] route : routes) {
+			outputStream.writeUTF(route[0]);
+			outputStream.writeUTF(route[1]);
+		}
+
+		// Stops ordered by their index
+		String[] stops = new String[stopIndices.size()];
+
+		for (Map.Entry<Id<TransitStopFacility>, Integer> entry : stopIndices.entrySet()) {
+			stops[entry.getValue()] = entry.getKey().toString();
+		}
+
+		outputStream.writeInt(stops.length);
+
+		for (String stop : stops) {
+			outputStream.writeUTF(stop);
+		}
+
+		outputStream.close();
+		return byteStream.toByteArray();
+	}
+
+	/**
+	 * Loads a snapshot from a file by mapping it into memory.
+	 */
+	static public TransitScheduleSnapshot load(File file) throws IOException {
+		ByteBuffer buffer;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Transit schedule snapshot is too large: " + file);
+			}
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Not a transit schedule snapshot or unsupported version: " + file);
+		}
+
+		int headerLength = buffer.getInt();
+
+		if (headerLength < 0 || headerLength > buffer.remaining()) {
+			throw new IOException("Transit schedule snapshot has an invalid header: " + file);
+		}
+
+		byte[] header = new byte[headerLength];
+		buffer.get(header);
+
+		DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(header));
+
+		long fingerprint = inputStream.readLong();
+		int numberOfDepartures = inputStream.readInt();
+		int numberOfRouteStops = inputStream.readInt();
+		int capacity = inputStream.readInt();
+
+		int numberOfRoutes = inputStream.readInt();
+		Map<Id<TransitLine>, Map<Id<TransitRoute>, Integer>> routeIndices = new HashMap<>();
+
+		for (int routeIndex = 0; routeIndex < numberOfRoutes; routeIndex++) {
+			Id<TransitLine> lineId = Id.create(inputStream.readUTF(), TransitLine.class);
+			Id<TransitRoute> routeId = Id.create(inputStream.readUTF(), TransitRoute.class);
+			routeIndices.computeIfAbsent(lineId, id -> new HashMap<>()).put(routeId, routeIndex);
+		}
+
+		int numberOfStops = inputStream.readInt();
+		Map<Id<TransitStopFacility>, Integer> stopIndices = new HashMap<>();
+
+		for (int stopIndex = 0; stopIndex < numberOfStops; stopIndex++) {
+			stopIndices.put(Id.create(inputStream.readUTF(), TransitStopFacility.class), stopIndex);
+		}
+
+		int position = align(12 + header.length);
+
+		long expectedSize = (long) position + 8L * (numberOfDepartures + numberOfRouteStops + capacity)
+				+ 4L * (2 * (numberOfRoutes + 1) + 2 * numberOfRouteStops + capacity);
+
+		if (buffer.limit() < expectedSize) {
+			throw new IOException("Transit schedule snapshot is truncated: " + file);
+		}
+
+		DoubleBuffer departureTimes = slice(buffer, position, 8 * numberOfDepartures).asDoubleBuffer();
+		position += 8 * numberOfDepartures;
+
+		DoubleBuffer routeStopOffsets = slice(buffer, position, 8 * numberOfRouteStops).asDoubleBuffer();
+		position += 8 * numberOfRouteStops;
+
+		LongBuffer visitKeys = slice(buffer, position, 8 * capacity).asLongBuffer();
+		position += 8 * capacity;
+
+		IntBuffer routeDepartureStart = slice(buffer, position, 4 * (numberOfRoutes + 1)).asIntBuffer();
+		position += 4 * (numberOfRoutes + 1);
+
+		IntBuffer routeStopStart = slice(buffer, position, 4 * (numberOfRoutes + 1)).asIntBuffer();
+		position += 4 * (numberOfRoutes + 1);
+
+		IntBuffer routeStopIndices = slice(buffer, position, 4 * numberOfRouteStops).asIntBuffer();
+		position += 4 * numberOfRouteStops;
+
+		IntBuffer firstVisits = slice(buffer, position, 4 * capacity).asIntBuffer();
+		position += 4 * capacity;
+
+		IntBuffer nextVisits = slice(buffer, position, 4 * numberOfRouteStops).asIntBuffer();
+
+		return new TransitScheduleSnapshot(routeIndices, stopIndices, departureTimes, routeStopOffsets,
+				routeDepartureStart, routeStopStart, routeStopIndices, visitKeys, firstVisits, nextVisits,
+				fingerprint);
+	}
+
+	static private ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+		ByteBuffer section = buffer.duplicate();
+		section.position(position);
+		section.limit(position + length);
+		return section.slice();
+	}
+
+	/**
+	 * Loads the snapshot from the given file if it exists and matches the
+	 * schedule. Otherwise, a new snapshot is created and written to the file.
+	 */
+	static public TransitScheduleSnapshot createOrLoad(TransitSchedule schedule, File file) {
+		if (file.exists()) {
+			try {
+				TransitScheduleSnapshot snapshot = load(file);
+
+				if (snapshot.matches(schedule)) {
+					logger.info("Using transit schedule snapshot from " + file);
+					return snapshot;
+				}
+
+				logger.warn("Transit schedule snapshot in " + file + " does not match the schedule. Recreating it.");
+			} catch (IOException | RuntimeException e) {
+				// A truncated or corrupt file fails when the buffers are sliced
+				logger.warn("Cannot read transit schedule snapshot from " + file + ". Recreating it.", e);
+			}
+		}
+
+		TransitScheduleSnapshot snapshot = create(schedule);
+
+		try {
+			snapshot.write(file);
+			logger.info("Wrote transit schedule snapshot to " + file);
+		} catch (IOException e) {
+			logger.warn("Cannot write transit schedule snapshot to " + file, e);
+		}
+
+		return snapshot;
+	}
+}
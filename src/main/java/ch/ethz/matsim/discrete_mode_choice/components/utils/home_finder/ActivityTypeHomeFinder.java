@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -8,6 +9,8 @@ import org.matsim.api.core.v01.Id;
 
 import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 
 /**
  * This HomeFinder implementation searches for a configurable activity type in
@@ -20,14 +23,51 @@ import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
 public class ActivityTypeHomeFinder implements HomeFinder {
 	private final Collection<String> activityTypes;
 	private final String singleActivityType;
+	private final ActivityTypeRegistry activityTypeRegistry;
+	private final BitSet activityTypeMask;
 
-	public ActivityTypeHomeFinder(Collection<String> activityTypes) {
+	/**
+	 * The activity type mask is only used for plan views that have been created
+	 * with the given registry. Otherwise, the activity types are compared one by
+	 * one.
+	 */
+	public ActivityTypeHomeFinder(Collection<String> activityTypes, ActivityTypeRegistry activityTypeRegistry) {
 		this.activityTypes = activityTypes;
 		this.singleActivityType = activityTypes.size() == 1 ? activityTypes.iterator().next() : null;
+		this.activityTypeRegistry = activityTypeRegistry;
+		this.activityTypeMask = activityTypeRegistry.getActivityTypeMask(activityTypes);
+	}
+
+	public ActivityTypeHomeFinder(Collection<String> activityTypes) {
+		this(activityTypes, new ActivityTypeRegistry());
+	}
+
+	private Id<? extends BasicLocation> getHomeLocationId(PlanView planView) {
+		for (int index = 0; index < planView.getNumberOfTrips(); index++) {
+			int originActivityIndex = planView.getOriginActivityIndex(index);
+
+			if (activityTypeMask.get(planView.getActivityTypeIndex(originActivityIndex))) {
+				return planView.getLocationId(planView.getLocationIndex(originActivityIndex));
+			}
+
+			int destinationActivityIndex = planView.getDestinationActivityIndex(index);
+
+			if (activityTypeMask.get(planView.getActivityTypeIndex(destinationActivityIndex))) {
+				return planView.getLocationId(planView.getLocationIndex(destinationActivityIndex));
+			}
+		}
+
+		return null;
 	}
 
 	@Override
 	public Id<? extends BasicLocation> getHomeLocationId(List<DiscreteModeChoiceTrip> trips) {
+		PlanView planView = PlanView.find(trips);
+
+		if (planView != null && planView.getActivityTypeRegistry() == activityTypeRegistry) {
+			return getHomeLocationId(planView);
+		}
+
 		for (DiscreteModeChoiceTrip trip : trips) {
 			if (singleActivityType == null) {
 				if (activityTypes.contains(trip.getOriginActivity().getType())) {
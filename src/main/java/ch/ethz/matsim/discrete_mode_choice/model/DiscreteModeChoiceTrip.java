@@ -23,13 +23,26 @@ public final class DiscreteModeChoiceTrip {
 	private final int hashCode;
 	private final int index;
 
+	private final PlanView planView;
+
 	public DiscreteModeChoiceTrip(Activity originActivity, Activity destinationActivity, String initialMode,
 			List<? extends PlanElement> initialElements, int personHash, int tripHash, int index) {
+		this(originActivity, destinationActivity, initialMode, initialElements, personHash, tripHash, index, null);
+	}
+
+	/**
+	 * Creates a trip that is part of the given plan view. The index must be the
+	 * index of the trip in the view.
+	 */
+	public DiscreteModeChoiceTrip(Activity originActivity, Activity destinationActivity, String initialMode,
+			List<? extends PlanElement> initialElements, int personHash, int tripHash, int index,
+			PlanView planView) {
 		this.originActivity = originActivity;
 		this.destinationActivity = destinationActivity;
 		this.initialMode = initialMode;
 		this.initialElements = initialElements;
 		this.index = index;
+		this.planView = planView;
 
 		int hashCode = 12;
 		hashCode += 37 * (int) (personHash ^ (personHash >>> 32));
@@ -37,6 +50,22 @@ public final class DiscreteModeChoiceTrip {
 		this.hashCode = hashCode;
 	}
 
+	/**
+	 * Creates a copy of a trip, which shares the activities and initial elements
+	 * with the original trip but has its own departure time. This way the copy can
+	 * be estimated in parallel to the original trip.
+	 */
+	public DiscreteModeChoiceTrip(DiscreteModeChoiceTrip trip) {
+		this.originActivity = trip.originActivity;
+		this.destinationActivity = trip.destinationActivity;
+		this.initialMode = trip.initialMode;
+		this.initialElements = trip.initialElements;
+		this.index = trip.index;
+		this.hashCode = trip.hashCode;
+		this.departureTime = trip.departureTime;
+		this.planView = trip.planView;
+	}
+
 	public Activity getOriginActivity() {
 		return originActivity;
 	}
@@ -69,4 +98,12 @@ public final class DiscreteModeChoiceTrip {
 	public int getIndex() {
 		return index;
 	}
+
+	/**
+	 * Returns the view on the plan that this trip belongs to, or null if the trip
+	 * has not been created from a plan by the TripListConverter.
+	 */
+	public PlanView getPlanView() {
+		return planView;
+	}
 }
@@ -0,0 +1,176 @@
+package ch.ethz.matsim.discrete_mode_choice.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+
+import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
+
+/**
+ * A compact view on the plan of an agent, which is created once by the
+ * TripListConverter and shared by all trips of the plan. It contains:
+ *
+ * <ul>
+ * <li>The (non-stage) activities of the plan, their position in the plan and
+ * the indices of the origin and destination activities of every trip.</li>
+ * <li>The location of every activity as an integer index, such that two
+ * activities are at the same location if they have the same index.</li>
+ * <li>The type of every activity as an identifier of the ActivityTypeRegistry
+ * that has been used to create the view.</li>
+ * <li>The initial routing mode of every trip.</li>
+ * </ul>
+ *
+ * Components that receive the whole list of trips of a plan can obtain the view
+ * with find(List) instead of looking up activity types and locations trip by
+ * trip.
+ *
+ * @author sebhoerl
+ */
+public final class PlanView {
+	private final ActivityTypeRegistry activityTypeRegistry;
+
+	private final List<Activity> activities;
+	private final int[] activityElementIndices;
+
+	private final int[] originActivityIndices;
+	private final int[] destinationActivityIndices;
+	private final String[] initialModes;
+
+	private final int[] activityLocationIndices;
+	private final int[] activityTypes;
+
+	private final List<Id<? extends BasicLocation>> locationIds = new ArrayList<>();
+	private final Map<Id<? extends BasicLocation>, Integer> locationIndices = new HashMap<>();
+
+	/**
+	 * Creates a view on a plan. The activities are given with their position in
+	 * the plan, and every trip is defined by the indices (in the given list) of its
+	 * origin and destination activity and its initial mode. The activity types are
+	 * looked up in the given registry.
+	 */
+	public PlanView(ActivityTypeRegistry activityTypeRegistry, List<Activity> activities,
+			int[] activityElementIndices, int[] originActivityIndices, int[] destinationActivityIndices,
+			String[] initialModes) {
+		this.activityTypeRegistry = activityTypeRegistry;
+		this.activities = activities;
+		this.activityElementIndices = activityElementIndices;
+		this.originActivityIndices = originActivityIndices;
+		this.destinationActivityIndices = destinationActivityIndices;
+		this.initialModes = initialModes;
+
+		this.activityLocationIndices = new int[activities.size()];
+		this.activityTypes = new int[activities.size()];
+
+		for (int index = 0; index < activities.size(); index++) {
+			Activity activity = activities.get(index);
+
+			Id<? extends BasicLocation> locationId = LocationUtils.getLocationId(activity);
+			Integer locationIndex = locationIndices.get(locationId);
+
+			if (locationIndex == null) {
+				locationIndex = locationIds.size();
+				locationIndices.put(locationId, locationIndex);
+				locationIds.add(locationId);
+			}
+
+			activityLocationIndices[index] = locationIndex;
+			activityTypes[index] = activityTypeRegistry.getActivityTypeId(activity.getType());
+		}
+	}
+
+	/**
+	 * Returns the view that is shared by the given trips if they are exactly the
+	 * trips of that view in their original order. Otherwise (e.g. for the trips of
+	 * a single tour or for trips that have not been created by the
+	 * TripListConverter) null is returned.
+	 */
+	static public PlanView find(List<DiscreteModeChoiceTrip> trips) {
+		if (trips.size() == 0) {
+			return null;
+		}
+
+		PlanView planView = trips.get(0).getPlanView();
+
+		if (planView == null || planView.getNumberOfTrips() != trips.size()) {
+			return null;
+		}
+
+		int index = 0;
+
+		for (DiscreteModeChoiceTrip trip : trips) {
+			if (trip.getPlanView() != planView || trip.getIndex() != index) {
+				return null;
+			}
+
+			index++;
+		}
+
+		return planView;
+	}
+
+	public ActivityTypeRegistry getActivityTypeRegistry() {
+		return activityTypeRegistry;
+	}
+
+	public int getNumberOfTrips() {
+		return originActivityIndices.length;
+	}
+
+	public int getNumberOfActivities() {
+		return activities.size();
+	}
+
+	public int getNumberOfLocations() {
+		return locationIds.size();
+	}
+
+	public Activity getActivity(int activityIndex) {
+		return activities.get(activityIndex);
+	}
+
+	/**
+	 * Returns the position of an activity in the plan elements of the plan.
+	 */
+	public int getActivityElementIndex(int activityIndex) {
+		return activityElementIndices[activityIndex];
+	}
+
+	public int getOriginActivityIndex(int tripIndex) {
+		return originActivityIndices[tripIndex];
+	}
+
+	public int getDestinationActivityIndex(int tripIndex) {
+		return destinationActivityIndices[tripIndex];
+	}
+
+	public String getInitialMode(int tripIndex) {
+		return initialModes[tripIndex];
+	}
+
+	public int getActivityTypeIndex(int activityIndex) {
+		return activityTypes[activityIndex];
+	}
+
+	public int getLocationIndex(int activityIndex) {
+		return activityLocationIndices[activityIndex];
+	}
+
+	public Id<? extends BasicLocation> getLocationId(int locationIndex) {
+		return locationIds.get(locationIndex);
+	}
+
+	/**
+	 * Returns the index of a location or -1 if no activity of the plan takes place
+	 * there.
+	 */
+	public int findLocationIndex(Id<? extends BasicLocation> locationId) {
+		Integer locationIndex = locationId == null ? null : locationIndices.get(locationId);
+		return locationIndex == null ? -1 : locationIndex;
+	}
+}
@@ -0,0 +1,101 @@
+package ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense integer identifiers to activity types. The PlanView stores the
+ * type of every activity as such an identifier, so that tour finders and home
+ * finders can check the types of a plan against a BitSet mask instead of
+ * comparing strings.
+ *
+ * The registry is initialized with the activity types that are known from the
+ * configuration. Types that appear later on in the plans are registered on the
+ * fly. Identifiers are never reused or changed. Lookups are thread-safe.
+ *
+ * Identifiers are only comparable within one registry. Components that receive
+ * a PlanView hence check that it has been created with their registry.
+ *
+ * @author sebhoerl
+ */
+public class ActivityTypeRegistry {
+	final private Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private volatile String[] activityTypes = new String[0];
+
+	public ActivityTypeRegistry(Collection<String> activityTypes) {
+		for (String activityType : activityTypes) {
+			getActivityTypeId(activityType);
+		}
+	}
+
+	public ActivityTypeRegistry() {
+		this(Collections.emptySet());
+	}
+
+	/**
+	 * Returns the identifier of an activity type, which is registered if it is not
+	 * known yet.
+	 */
+	public int getActivityTypeId(String activityType) {
+		Integer id = ids.get(activityType);
+
+		if (id == null) {
+			return registerActivityType(activityType);
+		}
+
+		return id;
+	}
+
+	private synchronized int registerActivityType(String activityType) {
+		Integer id = ids.get(activityType);
+
+		if (id == null) {
+			id = activityTypes.length;
+
+			String[] updatedActivityTypes = Arrays.copyOf(activityTypes, id + 1);
+			updatedActivityTypes[id] = activityType;
+			activityTypes = updatedActivityTypes;
+
+			ids.put(activityType, id);
+		}
+
+		return id;
+	}
+
+	public String getActivityType(int id) {
+		String[] activityTypes = this.activityTypes;
+
+		if (id < 0 || id >= activityTypes.length) {
+			throw new IllegalStateException(String.format("There is no activity type with ID %d", id));
+		}
+
+		return activityTypes[id];
+	}
+
+	public int getNumberOfActivityTypes() {
+		return activityTypes.length;
+	}
+
+	public List<String> getActivityTypes() {
+		return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(activityTypes)));
+	}
+
+	/**
+	 * Returns a mask in which the bits of the given activity types are set.
+	 */
+	public BitSet getActivityTypeMask(Collection<String> activityTypes) {
+		BitSet mask = new BitSet();
+
+		for (String activityType : activityTypes) {
+			mask.set(getActivityTypeId(activityType));
+		}
+
+		return mask;
+	}
+}
@@ -44,4 +44,24 @@ public class CompositeTourConstraint implements TourConstraint {
 
 		return true;
 	}
+
+	@Override
+	public PrefixValidity validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes,
+			List<List<String>> previousModes) {
+		PrefixValidity validity = PrefixValidity.VALID;
+
+		for (TourConstraint constraint : constraints) {
+			PrefixValidity constraintValidity = constraint.validatePrefix(tour, prefixModes, previousModes);
+
+			if (constraintValidity == PrefixValidity.INVALID) {
+				return PrefixValidity.INVALID;
+			}
+
+			if (constraintValidity == PrefixValidity.UNKNOWN) {
+				validity = PrefixValidity.UNKNOWN;
+			}
+		}
+
+		return validity;
+	}
 }
@@ -1,5 +1,7 @@
 package ch.ethz.matsim.discrete_mode_choice.model.constraints;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,33 +16,65 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
  * This means that the trip constraint must be fulfilled for each trip in the
  * tour for the tour to be feasible.
  * 
+ * The modes of the previous tours are flattened only once and then reused for
+ * all chains of the current tour. Trips within the current tour see a view on
+ * these modes plus the modes of the preceding trips in the tour, so no
+ * additional lists are built per chain.
+ * 
  * @author sebhoerl
  */
 public class TourFromTripConstraint implements TourConstraint {
 	private final TripConstraint constraint;
 
+	private final List<String> previousTourTripModes = new ArrayList<>();
+	private List<List<String>> cachedPreviousTourModes = null;
+	private int cachedNumberOfPreviousTours = -1;
+
 	TourFromTripConstraint(TripConstraint constraint) {
 		this.constraint = constraint;
 	}
 
+	private void updatePreviousTourTripModes(List<List<String>> previousTourModes) {
+		if (previousTourModes != cachedPreviousTourModes || previousTourModes.size() != cachedNumberOfPreviousTours) {
+			previousTourTripModes.clear();
+			previousTourModes.forEach(previousTourTripModes::addAll);
+
+			cachedPreviousTourModes = previousTourModes;
+			cachedNumberOfPreviousTours = previousTourModes.size();
+		}
+	}
+
 	@Override
 	public boolean validateBeforeEstimation(List<DiscreteModeChoiceTrip> currentTourTrips,
 			List<String> currentTourModes, List<List<String>> previousTourModes) {
-		List<String> previousTripModes = new LinkedList<>();
-		previousTourModes.forEach(previousTripModes::addAll);
+		updatePreviousTourTripModes(previousTourModes);
 
 		for (int i = 0; i < currentTourModes.size(); i++) {
 			if (!constraint.validateBeforeEstimation(currentTourTrips.get(i), currentTourModes.get(i),
-					previousTripModes)) {
+					new PreviousTripModes(previousTourTripModes, currentTourModes, i))) {
 				return false;
 			}
-
-			previousTripModes.add(currentTourModes.get(i));
 		}
 
 		return true;
 	}
 
+	@Override
+	public PrefixValidity validatePrefix(List<DiscreteModeChoiceTrip> currentTourTrips, List<String> prefixModes,
+			List<List<String>> previousTourModes) {
+		updatePreviousTourTripModes(previousTourModes);
+
+		// All trips but the last one have been validated for the shorter prefix
+		int index = prefixModes.size() - 1;
+
+		if (constraint.validateBeforeEstimation(currentTourTrips.get(index), prefixModes.get(index),
+				new PreviousTripModes(previousTourTripModes, prefixModes, index))) {
+			return PrefixValidity.VALID;
+		} else {
+			return PrefixValidity.INVALID;
+		}
+	}
+
 	@Override
 	public boolean validateAfterEstimation(List<DiscreteModeChoiceTrip> currentTourTrips,
 			TourCandidate currentTourCandidate, List<TourCandidate> previousTourCandidates) {
@@ -60,4 +94,39 @@ public class TourFromTripConstraint implements TourConstraint {
 
 		return true;
 	}
+
+	/**
+	 * Read-only view on the modes of all previous tours followed by the first
+	 * trips of the current tour.
+	 */
+	static private class PreviousTripModes extends AbstractList<String> {
+		private final List<String> previousTourTripModes;
+		private final List<String> currentTourModes;
+		private final int numberOfCurrentTourTrips;
+
+		PreviousTripModes(List<String> previousTourTripModes, List<String> currentTourModes,
+				int numberOfCurrentTourTrips) {
+			this.previousTourTripModes = previousTourTripModes;
+			this.currentTourModes = currentTourModes;
+			this.numberOfCurrentTourTrips = numberOfCurrentTourTrips;
+		}
+
+		@Override
+		public String get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			}
+
+			if (index < previousTourTripModes.size()) {
+				return previousTourTripModes.get(index);
+			} else {
+				return currentTourModes.get(index - previousTourTripModes.size());
+			}
+		}
+
+		@Override
+		public int size() {
+			return previousTourTripModes.size() + numberOfCurrentTourTrips;
+		}
+	}
 }
@@ -1,13 +1,18 @@
 package ch.ethz.matsim.discrete_mode_choice.model.estimation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Person;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
 
@@ -16,37 +21,218 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
  * One can configure which modes should be cached. This way, for instance when a
  * trip would be estimates many times, e.g. in a tour-based model, one makes
  * sure that this only happens once.
- * 
+ *
+ * Results are identified by the trip (its origin and destination activity and
+ * its index in the plan), the mode identifier from the ModeRegistry and the
+ * departure time. Departure times are
+ * aggregated into buckets with the size of the given tolerance, so that a trip
+ * which departs slightly earlier or later in another chain of the tour can
+ * reuse the estimate. A tolerance of zero means that only estimates with
+ * exactly the same departure time are reused, an infinite tolerance means that
+ * the departure time is ignored.
+ *
+ * The cache only holds the trips of one agent and is cleared as soon as
+ * another agent is estimated. With the TOUR scope, the estimates of earlier
+ * tours are additionally dropped. Tours are estimated one after another and
+ * every further pass over a tour (for instance, the next chain or the final
+ * estimate of the chosen chain) goes back to its first trip without preceding
+ * trips. Such a step back hence reveals the index of the first trip of the
+ * current tour, and all estimates of trips with a lower index are dropped. The
+ * estimates of the current tour are kept, even if its trips are estimated
+ * without preceding trips (as in the trellis model). In a trip-based model,
+ * the whole plan counts as one tour.
+ *
  * @author sebhoerl
  */
 public class CachedTripEstimator implements TripEstimator {
-	final private Map<String, Map<DiscreteModeChoiceTrip, TripCandidate>> cache = new HashMap<>();
+	public enum Scope {
+		AGENT, TOUR
+	}
+
+	final private Map<TripKey, TripCandidate> cache = new HashMap<>();
+	final private ModeRegistry modeRegistry;
+	final private BitSet cachedModeMask;
 	final private TripEstimator delegate;
 
-	public CachedTripEstimator(TripEstimator delegate, Collection<String> cachedModes) {
+	final private double timeTolerance;
+	final private Scope scope;
+
+	private Person currentPerson = null;
+	private int previousTripIndex = -1;
+	private int currentTourIndex = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	public CachedTripEstimator(TripEstimator delegate, Collection<String> cachedModes, double timeTolerance,
+			Scope scope, ModeRegistry modeRegistry) {
 		this.delegate = delegate;
+		this.modeRegistry = modeRegistry;
+		this.cachedModeMask = modeRegistry.getModeMask(cachedModes);
+		this.timeTolerance = timeTolerance;
+		this.scope = scope;
+	}
 
-		for (String mode : cachedModes) {
-			cache.put(mode, new HashMap<>());
-		}
+	public CachedTripEstimator(TripEstimator delegate, Collection<String> cachedModes, double timeTolerance,
+			Scope scope) {
+		this(delegate, cachedModes, timeTolerance, scope, new ModeRegistry(cachedModes));
+	}
+
+	public CachedTripEstimator(TripEstimator delegate, Collection<String> cachedModes) {
+		this(delegate, cachedModes, 0.0, Scope.AGENT);
 	}
 
 	@Override
 	public TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
 			List<TripCandidate> preceedingTrips) {
-		Map<DiscreteModeChoiceTrip, TripCandidate> modeCache = cache.get(mode);
+		int modeId = modeRegistry.getModeId(mode);
+
+		if (!cachedModeMask.get(modeId)) {
+			return delegate.estimateTrip(person, mode, trip, preceedingTrips);
+		}
+
+		updateScope(person, trip, preceedingTrips);
+
+		TripKey key = new TripKey(trip, modeId, getDepartureBucket(trip.getDepartureTime()));
+		TripCandidate candidate = cache.get(key);
+
+		if (candidate == null) {
+			misses++;
+
+			candidate = delegate.estimateTrip(person, mode, trip, preceedingTrips);
+			cache.put(key, candidate);
+		} else {
+			hits++;
+		}
+
+		return candidate;
+	}
+
+	@Override
+	public List<TripCandidate> estimateTrips(Person person, List<String> modes, DiscreteModeChoiceTrip trip,
+			List<TripCandidate> preceedingTrips) {
+		updateScope(person, trip, preceedingTrips);
+
+		long departureBucket = getDepartureBucket(trip.getDepartureTime());
+		TripCandidate[] candidates = new TripCandidate[modes.size()];
+
+		int[] modeIds = modeRegistry.getModeIds(modes, null);
+
+		List<String> missingModes = new ArrayList<>(modes.size());
+		List<Integer> missingIndices = new ArrayList<>(modes.size());
+
+		for (int index = 0; index < modes.size(); index++) {
+			String mode = modes.get(index);
+
+			if (cachedModeMask.get(modeIds[index])) {
+				candidates[index] = cache.get(new TripKey(trip, modeIds[index], departureBucket));
+
+				if (candidates[index] != null) {
+					hits++;
+					continue;
+				}
+
+				misses++;
+			}
+
+			missingModes.add(mode);
+			missingIndices.add(index);
+		}
+
+		// All modes that are not in the cache are passed on together
+		if (missingModes.size() > 0) {
+			List<TripCandidate> missingCandidates = delegate.estimateTrips(person, missingModes, trip,
+					preceedingTrips);
+
+			for (int k = 0; k < missingModes.size(); k++) {
+				int index = missingIndices.get(k);
+				TripCandidate candidate = missingCandidates.get(k);
+				candidates[index] = candidate;
+
+				if (cachedModeMask.get(modeIds[index])) {
+					cache.put(new TripKey(trip, modeIds[index], departureBucket), candidate);
+				}
+			}
+		}
 
-		if (modeCache != null) {
-			TripCandidate candidate = modeCache.get(trip);
+		return Arrays.asList(candidates);
+	}
+
+	private void updateScope(Person person, DiscreteModeChoiceTrip trip, List<TripCandidate> preceedingTrips) {
+		if (person != currentPerson) {
+			cache.clear();
+			currentPerson = person;
+			previousTripIndex = -1;
+			currentTourIndex = 0;
+		}
+
+		if (scope == Scope.TOUR) {
+			int tripIndex = trip.getIndex();
 
-			if (candidate == null) {
-				candidate = delegate.estimateTrip(person, mode, trip, preceedingTrips);
-				modeCache.put(trip, candidate);
+			if (preceedingTrips.isEmpty() && tripIndex <= previousTripIndex && tripIndex > currentTourIndex) {
+				cache.keySet().removeIf(key -> key.tripIndex < tripIndex);
+				currentTourIndex = tripIndex;
 			}
 
-			return candidate;
+			previousTripIndex = tripIndex;
+		}
+	}
+
+	private long getDepartureBucket(double departureTime) {
+		if (Double.isInfinite(timeTolerance)) {
+			return 0;
+		} else if (timeTolerance > 0.0) {
+			return (long) Math.floor(departureTime / timeTolerance);
 		} else {
-			return delegate.estimateTrip(person, mode, trip, preceedingTrips);
+			return Double.doubleToLongBits(departureTime);
+		}
+	}
+
+	public long getNumberOfHits() {
+		return hits;
+	}
+
+	public long getNumberOfMisses() {
+		return misses;
+	}
+
+	static private class TripKey {
+		final private Activity originActivity;
+		final private Activity destinationActivity;
+		final private int tripIndex;
+		final private int modeId;
+		final private long departureBucket;
+		final private int hashCode;
+
+		TripKey(DiscreteModeChoiceTrip trip, int modeId, long departureBucket) {
+			this.originActivity = trip.getOriginActivity();
+			this.destinationActivity = trip.getDestinationActivity();
+			this.tripIndex = trip.getIndex();
+			this.modeId = modeId;
+			this.departureBucket = departureBucket;
+
+			int hashCode = trip.hashCode();
+			hashCode = 31 * hashCode + modeId;
+			hashCode = 31 * hashCode + Long.hashCode(departureBucket);
+			this.hashCode = hashCode;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof TripKey) {
+				TripKey otherKey = (TripKey) other;
+
+				return tripIndex == otherKey.tripIndex && departureBucket == otherKey.departureBucket
+						&& originActivity == otherKey.originActivity
+						&& destinationActivity == otherKey.destinationActivity && modeId == otherKey.modeId;
+			}
+
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
 		}
 	}
 }
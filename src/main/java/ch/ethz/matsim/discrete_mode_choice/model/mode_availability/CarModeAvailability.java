@@ -9,6 +9,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.population.PersonUtils;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 
 /**
  * This mode availability filters out "car" from the list of given modes if an
@@ -25,6 +26,10 @@ public class CarModeAvailability extends DefaultModeAvailability {
 		super(modes);
 	}
 
+	public CarModeAvailability(Collection<String> modes, ModeRegistry modeRegistry) {
+		super(modes, modeRegistry);
+	}
+
 	@Override
 	public Collection<String> getAvailableModes(Person person, List<DiscreteModeChoiceTrip> trips) {
 		boolean carAvailability = !"no".equals(PersonUtils.getLicense(person));
@@ -1,15 +1,21 @@
 package ch.ethz.matsim.discrete_mode_choice.model.mode_availability;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import org.matsim.api.core.v01.population.Person;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 
 /**
  * This implementation of ModeAvailability has a static list of modes that will
  * be used as alternatives.
+ *
+ * If a ModeRegistry is given, the registered mode instances are returned, so
+ * that the constraints and estimators which look up mode identifiers later on
+ * find them by reference.
  * 
  * @author sebhoerl
  */
@@ -20,6 +26,16 @@ public class DefaultModeAvailability implements ModeAvailability {
 		this.modes = modes;
 	}
 
+	public DefaultModeAvailability(Collection<String> modes, ModeRegistry modeRegistry) {
+		List<String> registeredModes = new ArrayList<>(modes.size());
+
+		for (String mode : modes) {
+			registeredModes.add(modeRegistry.getRegisteredMode(mode));
+		}
+
+		this.modes = registeredModes;
+	}
+
 	@Override
 	public Collection<String> getAvailableModes(Person person, List<DiscreteModeChoiceTrip> trips) {
 		return modes;
@@ -11,6 +11,10 @@ import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
  * This class is used as a filter to define which more are available for a
  * certain chain of trips. Only modes that are returned here are even considered
  * as alternatives for the trips.
+ *
+ * The built-in implementations return the mode instances registered in the
+ * ModeRegistry, so the identifiers of the modes are found by reference later
+ * on.
  * 
  * @author sebhoerl
  */
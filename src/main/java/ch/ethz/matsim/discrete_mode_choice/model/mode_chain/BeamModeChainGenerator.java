@@ -0,0 +1,259 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+/**
+ * This mode chain generator performs a beam search over the mode chains of a
+ * tour. Chains are extended trip by trip and after each trip only the K
+ * partial chains with the highest utility are kept. Partial chains are scored
+ * by the tour estimator of the model, which is passed in by the tour-based
+ * model and receives the modes of the first trips of a chain. Only the chains
+ * that survive until the last trip are returned, ordered by their utility.
+ *
+ * This makes the number of scored partial chains per tour linear in the number
+ * of trips, so also very long tours can be handled. If the tour estimator
+ * memoizes the estimates of chain prefixes (see CumulativeTourEstimator), the
+ * surviving chains are not estimated again when they are passed on to the tour
+ * estimator afterwards. However, the result is an approximation: chains that
+ * start with a bad prefix are never considered, even if they could become the
+ * best ones later on. If there are not more chains than the beam width, all
+ * chains are generated without any estimation, so short tours are not
+ * affected. The same is the case if no estimator is given.
+ *
+ * Partial chains are passed to the prefix filter, so constraints that are able
+ * to reject partial chains make sure that the beam is not filled with
+ * infeasible chains.
+ *
+ * @author sebhoerl
+ */
+public class BeamModeChainGenerator implements ModeChainGenerator {
+	final private List<String> availableModes;
+	final private int numberOfTrips;
+	final private Predicate<List<String>> prefixFilter;
+
+	final private ToDoubleFunction<List<String>> prefixEstimator;
+	final private int beamWidth;
+	final private Statistics statistics;
+
+	final private long maximumAlternatives;
+
+	private Iterator<List<String>> iterator = null;
+
+	public BeamModeChainGenerator(Collection<String> availableModes, int numberOfTrips,
+			Predicate<List<String>> prefixFilter, ToDoubleFunction<List<String>> prefixEstimator, int beamWidth,
+			Statistics statistics) {
+		if (beamWidth < 1) {
+			throw new IllegalArgumentException("The beam width must be at least one");
+		}
+
+		this.availableModes = new ArrayList<>(availableModes);
+		this.numberOfTrips = numberOfTrips;
+		this.prefixFilter = prefixFilter;
+		this.prefixEstimator = prefixEstimator;
+		this.beamWidth = beamWidth;
+		this.statistics = statistics;
+
+		ModeChainGenerator fullGenerator = new PrunedModeChainGenerator(availableModes, numberOfTrips, prefixFilter);
+		this.maximumAlternatives = fullGenerator.getNumberOfAlternatives();
+
+		if (maximumAlternatives <= beamWidth || prefixEstimator == null) {
+			this.iterator = fullGenerator;
+		}
+	}
+
+	/**
+	 * Returns the number of chains that are generated at most, which is the beam
+	 * width for long tours.
+	 */
+	@Override
+	public long getNumberOfAlternatives() {
+		return prefixEstimator == null ? maximumAlternatives : Math.min(maximumAlternatives, beamWidth);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (iterator == null) {
+			iterator = performSearch().iterator();
+		}
+
+		return iterator.hasNext();
+	}
+
+	@Override
+	public List<String> next() {
+		if (!hasNext()) {
+			throw new IllegalStateException();
+		}
+
+		return iterator.next();
+	}
+
+	private List<List<String>> performSearch() {
+		List<PartialChain> beam = Collections.singletonList(new PartialChain(Collections.emptyList(), 0.0));
+
+		long numberOfEstimatedChains = 0;
+		double minimumMargin = Double.POSITIVE_INFINITY;
+
+		for (int tripIndex = 0; tripIndex < numberOfTrips; tripIndex++) {
+			List<PartialChain> extendedBeam = new ArrayList<>(beam.size() * availableModes.size());
+
+			for (PartialChain chain : beam) {
+				for (String mode : availableModes) {
+					List<String> modes = new ArrayList<>(chain.modes.size() + 1);
+					modes.addAll(chain.modes);
+					modes.add(mode);
+
+					if (!prefixFilter.test(modes)) {
+						continue;
+					}
+
+					double utility = prefixEstimator.applyAsDouble(modes);
+					numberOfEstimatedChains++;
+
+					if (Double.isFinite(utility)) {
+						extendedBeam.add(new PartialChain(modes, utility));
+					}
+				}
+			}
+
+			extendedBeam.sort(Comparator.comparingDouble((PartialChain chain) -> chain.utility).reversed());
+
+			if (extendedBeam.size() > beamWidth) {
+				minimumMargin = Math.min(minimumMargin,
+						extendedBeam.get(beamWidth - 1).utility - extendedBeam.get(beamWidth).utility);
+				extendedBeam = extendedBeam.subList(0, beamWidth);
+			}
+
+			beam = extendedBeam;
+		}
+
+		List<List<String>> chains = new ArrayList<>(beam.size());
+
+		for (PartialChain chain : beam) {
+			chains.add(chain.modes);
+		}
+
+		statistics.addTour(maximumAlternatives, numberOfEstimatedChains, minimumMargin);
+		return chains;
+	}
+
+	static private class PartialChain {
+		final List<String> modes;
+		final double utility;
+
+		PartialChain(List<String> modes, double utility) {
+			this.modes = modes;
+			this.utility = utility;
+		}
+	}
+
+	/**
+	 * Collects information on how much the beam search approximates the full
+	 * enumeration of chains. The margin of a tour is the smallest difference in
+	 * cumulative utility between the worst partial chain that has been kept and
+	 * the best one that has been dropped. Small margins indicate that the beam
+	 * width may be too small.
+	 */
+	static public class Statistics {
+		private long numberOfTours = 0;
+		private long numberOfTruncatedTours = 0;
+		private long numberOfFullChains = 0;
+		private long numberOfEstimatedChains = 0;
+
+		private double sumOfMargins = 0.0;
+		private double minimumMargin = Double.POSITIVE_INFINITY;
+
+		synchronized void addTour(long fullChains, long estimatedChains, double margin) {
+			numberOfTours++;
+			numberOfFullChains = fullChains > Long.MAX_VALUE - numberOfFullChains ? Long.MAX_VALUE
+					: numberOfFullChains + fullChains;
+			numberOfEstimatedChains += estimatedChains;
+
+			if (Double.isFinite(margin)) {
+				numberOfTruncatedTours++;
+				sumOfMargins += margin;
+				minimumMargin = Math.min(minimumMargin, margin);
+			}
+		}
+
+		public synchronized long getNumberOfTours() {
+			return numberOfTours;
+		}
+
+		public synchronized long getNumberOfTruncatedTours() {
+			return numberOfTruncatedTours;
+		}
+
+		public synchronized String createReport() {
+			return String.format(
+					"Beam search: %d tours, %d truncated, %d partial chains estimated instead of %d full chains, utility margin mean %.3f, minimum %.3f",
+					numberOfTours, numberOfTruncatedTours, numberOfEstimatedChains, numberOfFullChains,
+					numberOfTruncatedTours > 0 ? sumOfMargins / numberOfTruncatedTours : Double.NaN,
+					numberOfTruncatedTours > 0 ? minimumMargin : Double.NaN);
+		}
+
+		public synchronized void reset() {
+			numberOfTours = 0;
+			numberOfTruncatedTours = 0;
+			numberOfFullChains = 0;
+			numberOfEstimatedChains = 0;
+			sumOfMargins = 0.0;
+			minimumMargin = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	static public class Factory implements ModeChainGeneratorFactory, IterationEndsListener {
+		private final static Logger logger = Logger.getLogger(BeamModeChainGenerator.class);
+
+		private final int beamWidth;
+		private final Statistics statistics = new Statistics();
+
+		public Factory(int beamWidth) {
+			this.beamWidth = beamWidth;
+		}
+
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips) {
+			return createModeChainGenerator(modes, person, trips, prefix -> true);
+		}
+
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips, Predicate<List<String>> prefixFilter) {
+			return createModeChainGenerator(modes, person, trips, prefixFilter, null);
+		}
+
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips, Predicate<List<String>> prefixFilter,
+				ToDoubleFunction<List<String>> prefixEstimator) {
+			return new BeamModeChainGenerator(modes, trips.size(), prefixFilter, prefixEstimator, beamWidth,
+					statistics);
+		}
+
+		public Statistics getStatistics() {
+			return statistics;
+		}
+
+		@Override
+		public void notifyIterationEnds(IterationEndsEvent event) {
+			logger.info(statistics.createReport());
+			statistics.reset();
+		}
+	}
+}
@@ -19,7 +19,8 @@ import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
  * chain can be encoded as an integer. What happens then is that a counter is
  * increased every time a new mode chain is requested and a new chain
  * corresponding to that integer is created. This way this generator has a very
- * low memory footprint.
+ * low memory footprint. Still, a new list is allocated for every chain. See
+ * IndexedModeChainGenerator for a variant that avoids this.
  * 
  * @author sebhoerl
  *
@@ -32,7 +33,7 @@ public class DefaultModeChainGenerator implements ModeChainGenerator {
 
 	final private long maximumAlternatives;
 
-	private int index = 0;
+	private long index = 0;
 
 	public DefaultModeChainGenerator(Collection<String> availableModes, int numberOfTrips) {
 		this.availableModes = new ArrayList<>(availableModes);
@@ -57,10 +58,10 @@ public class DefaultModeChainGenerator implements ModeChainGenerator {
 		}
 
 		List<String> chain = new ArrayList<>(numberOfTrips);
-		int copy = index;
+		long copy = index;
 
 		for (int k = 0; k < numberOfTrips; k++) {
-			chain.add(availableModes.get(copy % numberOfModes));
+			chain.add(availableModes.get((int) (copy % numberOfModes)));
 			copy -= copy % numberOfModes;
 			copy /= numberOfModes;
 		}
@@ -0,0 +1,121 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+/**
+ * This mode chain generator produces the same chains in the same order as the
+ * DefaultModeChainGenerator, but does not allocate any memory per chain. The
+ * current chain is kept as an array of mode indices, which is advanced like an
+ * odometer: the index of the first trip is increased, and whenever it runs
+ * over, it is reset and the next trip is increased.
+ *
+ * The list that is returned by next() is a view on this array. Hence, it is
+ * the same object for every call and its content changes once next() is called
+ * again. Callers that want to keep a chain need to copy it.
+ *
+ * The number of alternatives saturates at Long.MAX_VALUE for very long tours.
+ *
+ * @author sebhoerl
+ */
+public class IndexedModeChainGenerator implements ModeChainGenerator {
+	final private String[] availableModes;
+
+	final private int numberOfTrips;
+	final private int numberOfModes;
+
+	final private long maximumAlternatives;
+
+	final private int[] modeIndices;
+	final private List<String> chain = new ModeChainView();
+
+	private long index = 0;
+
+	public IndexedModeChainGenerator(Collection<String> availableModes, int numberOfTrips) {
+		this.availableModes = availableModes.toArray(new String[availableModes.size()]);
+		this.numberOfModes = availableModes.size();
+		this.numberOfTrips = numberOfTrips;
+		this.maximumAlternatives = calculateMaximumAlternatives(numberOfModes, numberOfTrips);
+		this.modeIndices = new int[numberOfTrips];
+	}
+
+	static private long calculateMaximumAlternatives(int numberOfModes, int numberOfTrips) {
+		long alternatives = 1;
+
+		for (int k = 0; k < numberOfTrips; k++) {
+			if (numberOfModes > 0 && alternatives > Long.MAX_VALUE / numberOfModes) {
+				return Long.MAX_VALUE;
+			}
+
+			alternatives *= numberOfModes;
+		}
+
+		return alternatives;
+	}
+
+	@Override
+	public long getNumberOfAlternatives() {
+		return maximumAlternatives;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return index < maximumAlternatives;
+	}
+
+	@Override
+	public List<String> next() {
+		if (!hasNext()) {
+			throw new IllegalStateException();
+		}
+
+		if (index > 0) {
+			for (int k = 0; k < numberOfTrips; k++) {
+				if (++modeIndices[k] < numberOfModes) {
+					break;
+				}
+
+				modeIndices[k] = 0;
+			}
+		}
+
+		index++;
+
+		return chain;
+	}
+
+	/**
+	 * Returns the indices of the modes of the current chain with respect to the
+	 * order of the available modes that have been passed to the constructor. The
+	 * array is reused and must not be modified.
+	 */
+	public int[] getModeIndices() {
+		return modeIndices;
+	}
+
+	private class ModeChainView extends AbstractList<String> implements RandomAccess {
+		@Override
+		public String get(int index) {
+			return availableModes[modeIndices[index]];
+		}
+
+		@Override
+		public int size() {
+			return numberOfTrips;
+		}
+	}
+
+	static public class Factory implements ModeChainGeneratorFactory {
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips) {
+			return new IndexedModeChainGenerator(modes, trips.size());
+		}
+	}
+}
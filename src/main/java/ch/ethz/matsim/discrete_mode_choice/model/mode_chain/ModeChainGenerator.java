@@ -8,6 +8,10 @@ import java.util.List;
  * of possible chains of modes needs to be created. This interface defines a
  * process that iteratively constructs such chains.
  * 
+ * Implementations may return the same list object for every chain and only
+ * update its content. Hence, a chain must be copied if it is kept after the
+ * next chain has been requested.
+ * 
  * @author sebhoerl
  */
 public interface ModeChainGenerator extends Iterator<List<String>> {
@@ -2,6 +2,8 @@ package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
 import org.matsim.api.core.v01.population.Person;
 
@@ -15,4 +17,27 @@ import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
 public interface ModeChainGeneratorFactory {
 	ModeChainGenerator createModeChainGenerator(Collection<String> availableModes, Person person,
 			List<DiscreteModeChoiceTrip> trips);
+
+	/**
+	 * Creates a ModeChainGenerator that may use the given prefix filter to skip
+	 * chains early. The filter receives the modes for the first trips of a chain
+	 * and returns false if no chain starting with them is feasible. By default,
+	 * the filter is ignored.
+	 */
+	default ModeChainGenerator createModeChainGenerator(Collection<String> availableModes, Person person,
+			List<DiscreteModeChoiceTrip> trips, Predicate<List<String>> prefixFilter) {
+		return createModeChainGenerator(availableModes, person, trips);
+	}
+
+	/**
+	 * Creates a ModeChainGenerator that may additionally use the given estimator
+	 * to rank partial chains. The estimator receives the modes for the first
+	 * trips of a chain and returns their utility according to the tour estimator
+	 * of the model. By default, the estimator is ignored.
+	 */
+	default ModeChainGenerator createModeChainGenerator(Collection<String> availableModes, Person person,
+			List<DiscreteModeChoiceTrip> trips, Predicate<List<String>> prefixFilter,
+			ToDoubleFunction<List<String>> prefixEstimator) {
+		return createModeChainGenerator(availableModes, person, trips, prefixFilter);
+	}
 }
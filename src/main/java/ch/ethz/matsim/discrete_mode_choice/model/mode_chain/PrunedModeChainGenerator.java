@@ -0,0 +1,150 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+/**
+ * This mode chain generator constructs chains trip by trip in a depth-first
+ * manner. Every time a mode is appended to the current partial chain, a prefix
+ * filter is asked whether the chain can still become feasible. If not, all
+ * chains starting with that prefix are skipped at once. This way, the modes ^
+ * trips chains of the DefaultModeChainGenerator do not need to be enumerated if
+ * constraints are able to reject partial chains.
+ * 
+ * Chains are produced in lexicographic order, i.e. the mode of the last trip
+ * changes fastest.
+ * 
+ * @author sebhoerl
+ */
+public class PrunedModeChainGenerator implements ModeChainGenerator {
+	final private List<String> availableModes;
+	final private Predicate<List<String>> prefixFilter;
+
+	final private int numberOfTrips;
+	final private int numberOfModes;
+
+	final private long maximumAlternatives;
+
+	final private int[] modeIndices;
+	final private List<String> prefix;
+	private int depth;
+
+	private List<String> nextChain = null;
+
+	public PrunedModeChainGenerator(Collection<String> availableModes, int numberOfTrips,
+			Predicate<List<String>> prefixFilter) {
+		this.availableModes = new ArrayList<>(availableModes);
+		this.numberOfModes = availableModes.size();
+		this.numberOfTrips = numberOfTrips;
+		this.prefixFilter = prefixFilter;
+		this.maximumAlternatives = calculateMaximumAlternatives(numberOfModes, numberOfTrips);
+
+		this.modeIndices = new int[numberOfTrips];
+		this.prefix = new ArrayList<>(numberOfTrips);
+		this.depth = numberOfTrips > 0 ? 0 : -1;
+	}
+
+	static private long calculateMaximumAlternatives(int numberOfModes, int numberOfTrips) {
+		long alternatives = 1;
+
+		for (int k = 0; k < numberOfTrips; k++) {
+			if (numberOfModes > 0 && alternatives > Long.MAX_VALUE / numberOfModes) {
+				return Long.MAX_VALUE;
+			}
+
+			alternatives *= numberOfModes;
+		}
+
+		return alternatives;
+	}
+
+	/**
+	 * Returns the number of chains that would be generated without any pruning.
+	 * This is an upper bound for the chains that are actually returned. The value
+	 * saturates at Long.MAX_VALUE for very long tours.
+	 */
+	@Override
+	public long getNumberOfAlternatives() {
+		return maximumAlternatives;
+	}
+
+	private List<String> findNextChain() {
+		while (depth >= 0) {
+			if (modeIndices[depth] == numberOfModes) {
+				// All modes have been tested at this position, so we go one level up
+				modeIndices[depth] = 0;
+				depth--;
+
+				if (depth >= 0) {
+					prefix.remove(depth);
+					modeIndices[depth]++;
+				}
+
+				continue;
+			}
+
+			prefix.add(availableModes.get(modeIndices[depth]));
+
+			if (!prefixFilter.test(prefix)) {
+				// The whole sub-tree starting with this prefix is infeasible
+				prefix.remove(depth);
+				modeIndices[depth]++;
+				continue;
+			}
+
+			if (depth == numberOfTrips - 1) {
+				List<String> chain = new ArrayList<>(prefix);
+
+				prefix.remove(depth);
+				modeIndices[depth]++;
+
+				return chain;
+			}
+
+			depth++;
+		}
+
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextChain == null) {
+			nextChain = findNextChain();
+		}
+
+		return nextChain != null;
+	}
+
+	@Override
+	public List<String> next() {
+		if (!hasNext()) {
+			throw new IllegalStateException();
+		}
+
+		List<String> chain = nextChain;
+		nextChain = null;
+
+		return chain;
+	}
+
+	static public class Factory implements ModeChainGeneratorFactory {
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips) {
+			return new PrunedModeChainGenerator(modes, trips.size(), prefix -> true);
+		}
+
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips, Predicate<List<String>> prefixFilter) {
+			return new PrunedModeChainGenerator(modes, trips.size(), prefixFilter);
+		}
+	}
+}
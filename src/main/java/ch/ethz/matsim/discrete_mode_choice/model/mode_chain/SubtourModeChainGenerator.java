@@ -0,0 +1,231 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.components.utils.PlanLocations;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+/**
+ * This mode chain generator only constructs chains that fulfill the rules of
+ * the SubtourModeConstraint. The tour is decomposed into its subtours once
+ * (see PlanLocations.getSubtourStarts). Then, a mode is chosen for the first
+ * trip of every subtour. If it is a constrained mode, all other trips of the
+ * subtour get the same mode. Otherwise, they can be covered by any
+ * non-constrained mode. Hence, if all modes are constrained (the classic
+ * SubtourModeChoice setting), only one chain per combination of subtour modes
+ * is generated instead of all modes ^ trips chains.
+ *
+ * Like the PrunedModeChainGenerator, the chains are constructed trip by trip
+ * and every partial chain is checked with the prefix filter, so that the other
+ * tour constraints (e.g. vehicle continuity) can skip infeasible chains early.
+ *
+ * @author sebhoerl
+ */
+public class SubtourModeChainGenerator implements ModeChainGenerator {
+	final private List<String> availableModes;
+	final private List<String> unconstrainedModes;
+	final private Collection<String> constrainedModes;
+	final private Predicate<List<String>> prefixFilter;
+
+	final private int numberOfTrips;
+	final private int[] subtourStarts;
+
+	final private long maximumAlternatives;
+
+	final private List<List<String>> candidates;
+	final private int[] modeIndices;
+	final private List<String> prefix;
+	private int depth;
+
+	private List<String> nextChain = null;
+
+	public SubtourModeChainGenerator(Collection<String> availableModes, Collection<String> constrainedModes,
+			int[] subtourStarts, Predicate<List<String>> prefixFilter) {
+		this.availableModes = new ArrayList<>(availableModes);
+		this.constrainedModes = constrainedModes;
+		this.prefixFilter = prefixFilter;
+
+		this.unconstrainedModes = new ArrayList<>(availableModes.size());
+
+		for (String mode : availableModes) {
+			if (!constrainedModes.contains(mode)) {
+				unconstrainedModes.add(mode);
+			}
+		}
+
+		this.numberOfTrips = subtourStarts.length;
+		this.subtourStarts = subtourStarts;
+		this.maximumAlternatives = calculateMaximumAlternatives(this.availableModes.size(),
+				unconstrainedModes.size(), subtourStarts);
+
+		this.candidates = new ArrayList<>(Collections.nCopies(numberOfTrips, null));
+		this.modeIndices = new int[numberOfTrips];
+		this.prefix = new ArrayList<>(numberOfTrips);
+		this.depth = -1;
+
+		if (numberOfTrips > 0) {
+			enterDepth(0);
+		}
+	}
+
+	static private long multiply(long a, long b) {
+		if (b > 0 && a > Long.MAX_VALUE / b) {
+			return Long.MAX_VALUE;
+		}
+
+		return a * b;
+	}
+
+	/**
+	 * For every subtour of n trips, c constrained and u non-constrained available
+	 * modes, there are c + u ^ n chains.
+	 */
+	static private long calculateMaximumAlternatives(int numberOfModes, int numberOfUnconstrainedModes,
+			int[] subtourStarts) {
+		long alternatives = 1;
+		int index = 0;
+
+		while (index < subtourStarts.length) {
+			int subtourLength = 1;
+
+			while (index + subtourLength < subtourStarts.length && subtourStarts[index + subtourLength] == index) {
+				subtourLength++;
+			}
+
+			long subtourAlternatives = numberOfModes - numberOfUnconstrainedModes;
+			long unconstrainedAlternatives = 1;
+
+			for (int k = 0; k < subtourLength; k++) {
+				unconstrainedAlternatives = multiply(unconstrainedAlternatives, numberOfUnconstrainedModes);
+			}
+
+			subtourAlternatives = unconstrainedAlternatives == Long.MAX_VALUE ? Long.MAX_VALUE
+					: subtourAlternatives + unconstrainedAlternatives;
+
+			alternatives = multiply(alternatives, subtourAlternatives);
+			index += subtourLength;
+		}
+
+		return alternatives;
+	}
+
+	/**
+	 * Returns the number of chains that fulfill the subtour rules without
+	 * considering the prefix filter. This is an upper bound for the chains that are
+	 * actually returned. The value saturates at Long.MAX_VALUE for very long tours.
+	 */
+	@Override
+	public long getNumberOfAlternatives() {
+		return maximumAlternatives;
+	}
+
+	private void enterDepth(int nextDepth) {
+		depth = nextDepth;
+		modeIndices[depth] = 0;
+
+		int startIndex = subtourStarts[depth];
+
+		if (startIndex == depth) {
+			candidates.set(depth, availableModes);
+		} else {
+			String subtourMode = prefix.get(startIndex);
+
+			if (constrainedModes.contains(subtourMode)) {
+				candidates.set(depth, Collections.singletonList(subtourMode));
+			} else {
+				candidates.set(depth, unconstrainedModes);
+			}
+		}
+	}
+
+	private List<String> findNextChain() {
+		while (depth >= 0) {
+			List<String> depthCandidates = candidates.get(depth);
+
+			if (modeIndices[depth] == depthCandidates.size()) {
+				// All modes have been tested at this position, so we go one level up
+				depth--;
+
+				if (depth >= 0) {
+					prefix.remove(depth);
+					modeIndices[depth]++;
+				}
+
+				continue;
+			}
+
+			prefix.add(depthCandidates.get(modeIndices[depth]));
+
+			if (!prefixFilter.test(prefix)) {
+				// The whole sub-tree starting with this prefix is infeasible
+				prefix.remove(depth);
+				modeIndices[depth]++;
+				continue;
+			}
+
+			if (depth == numberOfTrips - 1) {
+				List<String> chain = new ArrayList<>(prefix);
+
+				prefix.remove(depth);
+				modeIndices[depth]++;
+
+				return chain;
+			}
+
+			enterDepth(depth + 1);
+		}
+
+		return null;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextChain == null) {
+			nextChain = findNextChain();
+		}
+
+		return nextChain != null;
+	}
+
+	@Override
+	public List<String> next() {
+		if (!hasNext()) {
+			throw new IllegalStateException();
+		}
+
+		List<String> chain = nextChain;
+		nextChain = null;
+
+		return chain;
+	}
+
+	static public class Factory implements ModeChainGeneratorFactory {
+		private final Collection<String> constrainedModes;
+
+		public Factory(Collection<String> constrainedModes) {
+			this.constrainedModes = constrainedModes;
+		}
+
+		private int[] getSubtourStarts(List<DiscreteModeChoiceTrip> trips) {
+			return PlanLocations.create(trips, null).getSubtourStarts(0, trips.size());
+		}
+
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips) {
+			return new SubtourModeChainGenerator(modes, constrainedModes, getSubtourStarts(trips), prefix -> true);
+		}
+
+		@Override
+		public ModeChainGenerator createModeChainGenerator(Collection<String> modes, Person person,
+				List<DiscreteModeChoiceTrip> trips, Predicate<List<String>> prefixFilter) {
+			return new SubtourModeChainGenerator(modes, constrainedModes, getSubtourStarts(trips), prefixFilter);
+		}
+	}
+}
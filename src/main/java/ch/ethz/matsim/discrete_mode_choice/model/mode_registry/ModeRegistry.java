@@ -0,0 +1,140 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_registry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense integer identifiers to modes. Components can use them to
+ * replace string comparisons and hash set lookups in their inner loops by
+ * comparisons of integers and BitSet masks.
+ *
+ * The registry is initialized with the modes that are known from the
+ * configuration. Modes that appear later on (for instance, from the initial
+ * plans) are registered on the fly, so every mode string always has an
+ * identifier. Identifiers are never reused or changed. Lookups are thread-safe.
+ *
+ * The mode instances returned by getMode are the registered ones. Components
+ * that pass these instances on (for instance, the mode availabilities) make
+ * sure that later lookups are resolved by comparing references with the few
+ * registered modes, without hashing or comparing strings.
+ *
+ * @author sebhoerl
+ */
+public class ModeRegistry {
+	static private final int MAXIMUM_REFERENCE_LOOKUPS = 16;
+
+	final private Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private volatile String[] modes = new String[0];
+
+	public ModeRegistry(Collection<String> modes) {
+		for (String mode : modes) {
+			getModeId(mode);
+		}
+	}
+
+	public ModeRegistry() {
+		this(Collections.emptySet());
+	}
+
+	/**
+	 * Returns the identifier of a mode, which is registered if it is not known
+	 * yet.
+	 */
+	public int getModeId(String mode) {
+		String[] modes = this.modes;
+
+		for (int id = 0; id < modes.length && id < MAXIMUM_REFERENCE_LOOKUPS; id++) {
+			if (modes[id] == mode) {
+				return id;
+			}
+		}
+
+		Integer id = ids.get(mode);
+
+		if (id == null) {
+			return registerMode(mode);
+		}
+
+		return id;
+	}
+
+	private synchronized int registerMode(String mode) {
+		Integer id = ids.get(mode);
+
+		if (id == null) {
+			id = modes.length;
+
+			String[] updatedModes = Arrays.copyOf(modes, id + 1);
+			updatedModes[id] = mode;
+			modes = updatedModes;
+
+			ids.put(mode, id);
+		}
+
+		return id;
+	}
+
+	public String getMode(int id) {
+		String[] modes = this.modes;
+
+		if (id < 0 || id >= modes.length) {
+			throw new IllegalStateException(String.format("There is no mode with ID %d", id));
+		}
+
+		return modes[id];
+	}
+
+	/**
+	 * Returns the registered instance of the given mode, which is registered if
+	 * it is not known yet.
+	 */
+	public String getRegisteredMode(String mode) {
+		return getMode(getModeId(mode));
+	}
+
+	public int getNumberOfModes() {
+		return modes.length;
+	}
+
+	public List<String> getModes() {
+		return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(modes)));
+	}
+
+	/**
+	 * Returns a mask in which the bits of the given modes are set.
+	 */
+	public BitSet getModeMask(Collection<String> modes) {
+		BitSet mask = new BitSet();
+
+		for (String mode : modes) {
+			mask.set(getModeId(mode));
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Writes the identifiers of the given modes into a buffer. If the buffer is
+	 * null or too small, a new one is created. The buffer that has been used is
+	 * returned.
+	 */
+	public int[] getModeIds(List<String> modes, int[] buffer) {
+		int size = modes.size();
+
+		if (buffer == null || buffer.length < size) {
+			buffer = new int[size];
+		}
+
+		for (int i = 0; i < size; i++) {
+			buffer[i] = getModeId(modes.get(i));
+		}
+
+		return buffer;
+	}
+}
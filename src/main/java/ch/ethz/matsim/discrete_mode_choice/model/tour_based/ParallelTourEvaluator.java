@@ -0,0 +1,168 @@
+package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+/**
+ * Estimates the mode chains of one tour in parallel. This is useful if single
+ * agents have very long tours (for instance, if the whole plan is one tour),
+ * because otherwise one replanning thread may spend much longer on such an
+ * agent than all the other threads on the rest of the population.
+ *
+ * The chains are consumed as a stream from the calling thread, which keeps
+ * generating and validating them while the pool estimates batches of
+ * previously submitted chains. At most a small, fixed number of batches is in
+ * flight at any time, so the memory use does not depend on the number of
+ * chains of the tour. Each batch is estimated in order by its own
+ * TourEstimator and its own copies of the trips, because estimators are not
+ * thread-safe and update the departure times of the trips. The candidates are
+ * passed on in the same order as the chains, so the subsequent selection does
+ * not depend on how the work has been scheduled.
+ *
+ * Estimators are obtained from the supplier once and then kept for later
+ * tours, so one instance of this class should not be used by multiple threads
+ * at the same time.
+ *
+ * @author sebhoerl
+ */
+public class ParallelTourEvaluator {
+	private final ForkJoinPool pool;
+	private final int numberOfPartitions;
+	private final int minimumNumberOfChains;
+	private final int batchSize;
+	private final int maximumBatchesInFlight;
+	private final Supplier<TourEstimator> estimatorSupplier;
+
+	private final Queue<TourEstimator> estimators = new ConcurrentLinkedQueue<>();
+
+	public ParallelTourEvaluator(ForkJoinPool pool, int numberOfPartitions, int minimumNumberOfChains,
+			Supplier<TourEstimator> estimatorSupplier) {
+		this.pool = pool;
+		this.numberOfPartitions = numberOfPartitions;
+		this.minimumNumberOfChains = Math.max(2, minimumNumberOfChains);
+		this.batchSize = Math.max(1, this.minimumNumberOfChains / Math.max(1, numberOfPartitions));
+		this.maximumBatchesInFlight = 2 * Math.max(1, numberOfPartitions);
+		this.estimatorSupplier = estimatorSupplier;
+	}
+
+	/**
+	 * Estimates all chains and passes the candidates to the consumer in the order
+	 * of the chains. The consumer is always called on the calling thread. If
+	 * there are fewer chains than the configured minimum, they are estimated
+	 * sequentially with the given estimator on the original trips.
+	 */
+	public void estimateTours(Person person, Iterator<List<String>> chains, List<DiscreteModeChoiceTrip> tourTrips,
+			List<TourCandidate> previousCandidates, TourEstimator sequentialEstimator,
+			Consumer<TourCandidate> consumer) {
+		List<List<String>> initialChains = nextBatch(chains, minimumNumberOfChains);
+
+		if (numberOfPartitions < 2 || initialChains.size() < minimumNumberOfChains) {
+			for (List<String> chain : initialChains) {
+				consumer.accept(sequentialEstimator.estimateTour(person, chain, tourTrips, previousCandidates));
+			}
+
+			return;
+		}
+
+		Deque<Future<List<TourCandidate>>> batches = new ArrayDeque<>(maximumBatchesInFlight);
+
+		try {
+			for (int startIndex = 0; startIndex < initialChains.size(); startIndex += batchSize) {
+				int endIndex = Math.min(initialChains.size(), startIndex + batchSize);
+				submitBatch(batches, consumer, person, initialChains.subList(startIndex, endIndex), tourTrips,
+						previousCandidates);
+			}
+
+			while (chains.hasNext()) {
+				submitBatch(batches, consumer, person, nextBatch(chains, batchSize), tourTrips, previousCandidates);
+			}
+
+			while (!batches.isEmpty()) {
+				completeBatch(batches, consumer);
+			}
+		} finally {
+			for (Future<List<TourCandidate>> batch : batches) {
+				batch.cancel(false);
+			}
+		}
+	}
+
+	private List<List<String>> nextBatch(Iterator<List<String>> chains, int maximumSize) {
+		List<List<String>> batch = new ArrayList<>(maximumSize);
+
+		while (batch.size() < maximumSize && chains.hasNext()) {
+			// The generator may reuse the chain, but the estimator may keep it
+			batch.add(new ArrayList<>(chains.next()));
+		}
+
+		return batch;
+	}
+
+	private void submitBatch(Deque<Future<List<TourCandidate>>> batches, Consumer<TourCandidate> consumer,
+			Person person, List<List<String>> chains, List<DiscreteModeChoiceTrip> tourTrips,
+			List<TourCandidate> previousCandidates) {
+		if (batches.size() >= maximumBatchesInFlight) {
+			completeBatch(batches, consumer);
+		}
+
+		batches.addLast(pool.submit(() -> estimateBatch(person, chains, tourTrips, previousCandidates)));
+	}
+
+	private void completeBatch(Deque<Future<List<TourCandidate>>> batches, Consumer<TourCandidate> consumer) {
+		try {
+			for (TourCandidate candidate : batches.removeFirst().get()) {
+				consumer.accept(candidate);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private List<TourCandidate> estimateBatch(Person person, List<List<String>> chains,
+			List<DiscreteModeChoiceTrip> tourTrips, List<TourCandidate> previousCandidates) {
+		TourEstimator estimator = estimators.poll();
+
+		if (estimator == null) {
+			estimator = estimatorSupplier.get();
+		}
+
+		try {
+			List<DiscreteModeChoiceTrip> batchTrips = new ArrayList<>(tourTrips.size());
+
+			for (DiscreteModeChoiceTrip trip : tourTrips) {
+				batchTrips.add(new DiscreteModeChoiceTrip(trip));
+			}
+
+			List<TourCandidate> candidates = new ArrayList<>(chains.size());
+
+			for (List<String> chain : chains) {
+				candidates.add(estimator.estimateTour(person, chain, batchTrips, previousCandidates));
+			}
+
+			return candidates;
+		} finally {
+			estimators.add(estimator);
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Random;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
@@ -39,13 +42,28 @@ public class TourBasedModel implements DiscreteModeChoiceModel {
 	final private TourConstraintFactory constraintFactory;
 	final private UtilitySelectorFactory selectorFactory;
 	final private ModeChainGeneratorFactory modeChainGeneratorFactory;
-	final private FallbackBehaviour fallbackBehaviour;
+	final private TourFallbackHandler fallbackHandler;
 	final private TimeInterpreter.Factory timeInterpreterFactory;
+	final private ParallelTourEvaluator parallelEvaluator;
 
 	public TourBasedModel(TourEstimator estimator, ModeAvailability modeAvailability,
 			TourConstraintFactory constraintFactory, TourFinder tourFinder, TourFilter tourFilter,
 			UtilitySelectorFactory selectorFactory, ModeChainGeneratorFactory modeChainGeneratorFactory,
 			FallbackBehaviour fallbackBehaviour, TimeInterpreter.Factory timeInterpreterFactory) {
+		this(estimator, modeAvailability, constraintFactory, tourFinder, tourFilter, selectorFactory,
+				modeChainGeneratorFactory, fallbackBehaviour, timeInterpreterFactory, null);
+	}
+
+	/**
+	 * Creates a tour-based model that estimates the chains of long tours in
+	 * parallel using the given ParallelTourEvaluator. If it is null, all chains
+	 * are estimated sequentially.
+	 */
+	public TourBasedModel(TourEstimator estimator, ModeAvailability modeAvailability,
+			TourConstraintFactory constraintFactory, TourFinder tourFinder, TourFilter tourFilter,
+			UtilitySelectorFactory selectorFactory, ModeChainGeneratorFactory modeChainGeneratorFactory,
+			FallbackBehaviour fallbackBehaviour, TimeInterpreter.Factory timeInterpreterFactory,
+			ParallelTourEvaluator parallelEvaluator) {
 		this.estimator = estimator;
 		this.modeAvailability = modeAvailability;
 		this.constraintFactory = constraintFactory;
@@ -53,8 +71,9 @@ public class TourBasedModel implements DiscreteModeChoiceModel {
 		this.tourFilter = tourFilter;
 		this.selectorFactory = selectorFactory;
 		this.modeChainGeneratorFactory = modeChainGeneratorFactory;
-		this.fallbackBehaviour = fallbackBehaviour;
+		this.fallbackHandler = new TourFallbackHandler(logger, tourFinder, estimator, fallbackBehaviour);
 		this.timeInterpreterFactory = timeInterpreterFactory;
+		this.parallelEvaluator = parallelEvaluator;
 	}
 
 	@Override
@@ -79,49 +98,52 @@ public class TourBasedModel implements DiscreteModeChoiceModel {
 
 			if (tourFilter.filter(person, tourTrips)) {
 				ModeChainGenerator generator = modeChainGeneratorFactory.createModeChainGenerator(modes, person,
-						tourTrips);
-				UtilitySelector selector = selectorFactory.createUtilitySelector();
-
-				while (generator.hasNext()) {
-					List<String> tourModes = generator.next();
-
-					if (!constraint.validateBeforeEstimation(tourTrips, tourModes, tourCandidateModes)) {
-						continue;
-					}
-
-					TourCandidate candidate = estimator.estimateTour(person, tourModes, tourTrips, tourCandidates);
-
-					if (!Double.isFinite(candidate.getUtility())) {
-						logger.warn(buildIllegalUtilityMessage(tripIndex, person));
-						continue;
+						tourTrips,
+						prefixModes -> constraint.validatePrefix(tourTrips, prefixModes,
+								tourCandidateModes) != TourConstraint.PrefixValidity.INVALID,
+						prefixModes -> estimator.estimateTour(person, prefixModes, tourTrips, tourCandidates)
+								.getUtility());
+				UtilitySelector selector = selectorFactory.createUtilitySelector(random);
+
+				if (parallelEvaluator == null) {
+					while (generator.hasNext()) {
+						List<String> tourModes = generator.next();
+
+						if (!constraint.validateBeforeEstimation(tourTrips, tourModes, tourCandidateModes)) {
+							continue;
+						}
+
+						// The generator may reuse the chain, but the estimator may keep it
+						tourModes = new ArrayList<>(tourModes);
+
+						TourCandidate candidate = estimator.estimateTour(person, tourModes, tourTrips,
+								tourCandidates);
+						addCandidate(selector, constraint, person, tripIndex, tourTrips, candidate, tourCandidates);
 					}
-
-					if (!constraint.validateAfterEstimation(tourTrips, candidate, tourCandidates)) {
-						continue;
-					}
-
-					selector.addCandidate(candidate);
+				} else {
+					Iterator<List<String>> feasibleTourModes = new FeasibleChainIterator(generator,
+							tourModes -> constraint.validateBeforeEstimation(tourTrips, tourModes, tourCandidateModes));
+
+					int currentTripIndex = tripIndex;
+					parallelEvaluator.estimateTours(person, feasibleTourModes, tourTrips, tourCandidates, estimator,
+							candidate -> addCandidate(selector, constraint, person, currentTripIndex, tourTrips,
+									candidate, tourCandidates));
 				}
 
 				Optional<UtilityCandidate> selectedCandidate = selector.select(random);
 
-				if (!selectedCandidate.isPresent()) {
-					switch (fallbackBehaviour) {
-					case INITIAL_CHOICE:
-						logger.warn(
-								buildFallbackMessage(tripIndex, person, "Setting tour modes back to initial choice."));
-						selectedCandidate = Optional.of(createFallbackCandidate(person, tourTrips, tourCandidates));
-						break;
-					case IGNORE_AGENT:
-						return handleIgnoreAgent(tripIndex, person, tourTrips);
-					case EXCEPTION:
-						throw new NoFeasibleChoiceException(buildFallbackMessage(tripIndex, person, ""));
+				if (selectedCandidate.isPresent()) {
+					finalTourCandidate = (TourCandidate) selectedCandidate.get();
+				} else {
+					finalTourCandidate = fallbackHandler.handleInfeasibleTour(tripIndex, person, tourTrips,
+							tourCandidates);
+
+					if (finalTourCandidate == null) {
+						return fallbackHandler.createInitialTripCandidates(tripIndex, person, trips);
 					}
 				}
-
-				finalTourCandidate = (TourCandidate) selectedCandidate.get();
 			} else {
-				finalTourCandidate = createFallbackCandidate(person, tourTrips, tourCandidates);
+				finalTourCandidate = fallbackHandler.createFallbackCandidate(person, tourTrips, tourCandidates);
 			}
 
 			tourCandidates.add(finalTourCandidate);
@@ -139,37 +161,21 @@ public class TourBasedModel implements DiscreteModeChoiceModel {
 			}
 		}
 
-		return createTripCandidates(tourCandidates);
+		return TourFallbackHandler.createTripCandidates(tourCandidates);
 	}
 
-	private TourCandidate createFallbackCandidate(Person person, List<DiscreteModeChoiceTrip> tourTrips,
-			List<TourCandidate> tourCandidates) {
-		List<String> initialModes = tourTrips.stream().map(DiscreteModeChoiceTrip::getInitialMode)
-				.collect(Collectors.toList());
-		return estimator.estimateTour(person, initialModes, tourTrips, tourCandidates);
-	}
-
-	private List<TripCandidate> createTripCandidates(List<TourCandidate> tourCandidates) {
-		return tourCandidates.stream().map(TourCandidate::getTripCandidates).flatMap(List::stream)
-				.collect(Collectors.toList());
-	}
-
-	private List<TripCandidate> handleIgnoreAgent(int tripIndex, Person person, List<DiscreteModeChoiceTrip> trips) {
-		List<TourCandidate> tourCandidates = new LinkedList<>();
-
-		for (List<DiscreteModeChoiceTrip> tourTrips : tourFinder.findTours(trips)) {
-			List<String> tourModes = tourTrips.stream().map(DiscreteModeChoiceTrip::getInitialMode)
-					.collect(Collectors.toList());
-			tourCandidates.add(estimator.estimateTour(person, tourModes, tourTrips, tourCandidates));
+	private void addCandidate(UtilitySelector selector, TourConstraint constraint, Person person, int tripIndex,
+			List<DiscreteModeChoiceTrip> tourTrips, TourCandidate candidate, List<TourCandidate> tourCandidates) {
+		if (!Double.isFinite(candidate.getUtility())) {
+			logger.warn(buildIllegalUtilityMessage(tripIndex, person));
+			return;
 		}
 
-		logger.warn(buildFallbackMessage(tripIndex, person, "Setting whole plan back to initial modes."));
-		return createTripCandidates(tourCandidates);
-	}
+		if (!constraint.validateAfterEstimation(tourTrips, candidate, tourCandidates)) {
+			return;
+		}
 
-	private String buildFallbackMessage(int tripIndex, Person person, String appendix) {
-		return String.format("No feasible mode choice candidate for tour starting at trip %d of agent %s. %s",
-				tripIndex, person.getId().toString(), appendix);
+		selector.addCandidate(candidate);
 	}
 
 	private String buildIllegalUtilityMessage(int tripIndex, Person person) {
@@ -177,4 +183,44 @@ public class TourBasedModel implements DiscreteModeChoiceModel {
 				"Received illegal utility for for tour starting at trip %d of agent %s. Continuing with next candidate.",
 				tripIndex, person.getId().toString());
 	}
+
+	/**
+	 * Passes on the chains of a generator that are accepted by the constraint
+	 * before estimation.
+	 */
+	static private class FeasibleChainIterator implements Iterator<List<String>> {
+		private final ModeChainGenerator generator;
+		private final Predicate<List<String>> predicate;
+
+		private List<String> next = null;
+
+		FeasibleChainIterator(ModeChainGenerator generator, Predicate<List<String>> predicate) {
+			this.generator = generator;
+			this.predicate = predicate;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && generator.hasNext()) {
+				List<String> candidate = generator.next();
+
+				if (predicate.test(candidate)) {
+					next = candidate;
+				}
+			}
+
+			return next != null;
+		}
+
+		@Override
+		public List<String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			List<String> result = next;
+			next = null;
+			return result;
+		}
+	}
 }
@@ -35,4 +35,28 @@ public interface TourConstraint {
 	 */
 	boolean validateAfterEstimation(List<DiscreteModeChoiceTrip> tour, TourCandidate candidate,
 			List<TourCandidate> previousCandidates);
+
+	/**
+	 * This function is called while mode chains are constructed trip by trip. The
+	 * prefixModes argument contains the modes for the first trips of the tour. If
+	 * INVALID is returned, no chain starting with these modes can be feasible and
+	 * the whole branch of chains is skipped. VALID indicates that the prefix is
+	 * feasible as far as this constraint can tell, while UNKNOWN indicates that
+	 * the constraint does not evaluate prefixes at all.
+	 * 
+	 * Prefixes are extended one mode at a time, so implementations may assume that
+	 * the prefix without its last mode has not been found INVALID before. The
+	 * prefixModes list may be reused by the caller and should not be stored.
+	 */
+	default PrefixValidity validatePrefix(List<DiscreteModeChoiceTrip> tour, List<String> prefixModes,
+			List<List<String>> previousModes) {
+		return PrefixValidity.UNKNOWN;
+	}
+
+	/**
+	 * Result of the validation of a partial mode chain.
+	 */
+	static public enum PrefixValidity {
+		VALID, INVALID, UNKNOWN
+	}
 }
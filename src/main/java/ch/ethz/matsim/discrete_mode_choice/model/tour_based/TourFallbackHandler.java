@@ -0,0 +1,90 @@
+package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.TourFinder;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel.FallbackBehaviour;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel.NoFeasibleChoiceException;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+/**
+ * Implements the fallback behaviour that is shared by the tour-based models if
+ * no feasible candidate can be found for a tour.
+ * 
+ * @author sebhoerl
+ */
+class TourFallbackHandler {
+	final private Logger logger;
+	final private TourFinder tourFinder;
+	final private TourEstimator estimator;
+	final private FallbackBehaviour fallbackBehaviour;
+
+	TourFallbackHandler(Logger logger, TourFinder tourFinder, TourEstimator estimator,
+			FallbackBehaviour fallbackBehaviour) {
+		this.logger = logger;
+		this.tourFinder = tourFinder;
+		this.estimator = estimator;
+		this.fallbackBehaviour = fallbackBehaviour;
+	}
+
+	/**
+	 * Handles a tour without any feasible candidate. Returns the candidate with
+	 * the initial modes of the tour, or null if the whole agent should be set back
+	 * to the initial modes with createInitialTripCandidates.
+	 */
+	TourCandidate handleInfeasibleTour(int tripIndex, Person person, List<DiscreteModeChoiceTrip> tourTrips,
+			List<TourCandidate> tourCandidates) throws NoFeasibleChoiceException {
+		switch (fallbackBehaviour) {
+		case INITIAL_CHOICE:
+			logger.warn(buildFallbackMessage(tripIndex, person, "Setting tour modes back to initial choice."));
+			return createFallbackCandidate(person, tourTrips, tourCandidates);
+		case IGNORE_AGENT:
+			return null;
+		case EXCEPTION:
+			throw new NoFeasibleChoiceException(buildFallbackMessage(tripIndex, person, ""));
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Estimates the tour with the initial modes of its trips.
+	 */
+	TourCandidate createFallbackCandidate(Person person, List<DiscreteModeChoiceTrip> tourTrips,
+			List<TourCandidate> tourCandidates) {
+		List<String> initialModes = tourTrips.stream().map(DiscreteModeChoiceTrip::getInitialMode)
+				.collect(Collectors.toList());
+		return estimator.estimateTour(person, initialModes, tourTrips, tourCandidates);
+	}
+
+	/**
+	 * Sets all tours of the plan back to their initial modes.
+	 */
+	List<TripCandidate> createInitialTripCandidates(int tripIndex, Person person,
+			List<DiscreteModeChoiceTrip> trips) {
+		List<TourCandidate> tourCandidates = new LinkedList<>();
+
+		for (List<DiscreteModeChoiceTrip> tourTrips : tourFinder.findTours(trips)) {
+			tourCandidates.add(createFallbackCandidate(person, tourTrips, tourCandidates));
+		}
+
+		logger.warn(buildFallbackMessage(tripIndex, person, "Setting whole plan back to initial modes."));
+		return createTripCandidates(tourCandidates);
+	}
+
+	static List<TripCandidate> createTripCandidates(List<TourCandidate> tourCandidates) {
+		return tourCandidates.stream().map(TourCandidate::getTripCandidates).flatMap(List::stream)
+				.collect(Collectors.toList());
+	}
+
+	private String buildFallbackMessage(int tripIndex, Person person, String appendix) {
+		return String.format("No feasible mode choice candidate for tour starting at trip %d of agent %s. %s",
+				tripIndex, person.getId().toString(), appendix);
+	}
+}
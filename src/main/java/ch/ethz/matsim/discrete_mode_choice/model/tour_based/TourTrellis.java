@@ -0,0 +1,340 @@
+package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+
+import ch.ethz.matsim.discrete_mode_choice.components.utils.LocationUtils;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+/**
+ * A trellis over the mode chains of one tour for the case where the utility of
+ * a chain is the sum of independent trip utilities and the only restriction on
+ * the chains is vehicle continuity (in the same way as it is defined by the
+ * VehicleTourConstraint). The states of the trellis are the locations of all
+ * restricted vehicles after a trip, so the size of the trellis grows with the
+ * number of trips times the number of reachable vehicle locations instead of
+ * the number of chains.
+ *
+ * After a backward pass over the trellis, either the chain with the maximum
+ * utility is found (Viterbi), or a chain is sampled exactly from the
+ * multinomial logit model over all feasible chains by going forward through the
+ * trellis and choosing every trip with its conditional probability.
+ *
+ * @author sebhoerl
+ */
+public class TourTrellis {
+	private final static int UNUSED = -1;
+	private final static int NOT_IN_TOUR = -2;
+
+	private final List<String> modes;
+	private final int[] vehicleIndices;
+	private final int numberOfVehicles;
+	private final int numberOfTrips;
+
+	private final int[] originIndices;
+	private final int[] destinationIndices;
+	private final int homeIndex;
+	private final long stateBase;
+
+	private final Node initialNode;
+	private final List<List<Node>> layers = new ArrayList<>();
+
+	/**
+	 * Creates the trellis for a tour.
+	 *
+	 * @param trips          The trips of the tour
+	 * @param modes          The modes that can be chosen for every trip
+	 * @param vehicleIndices For every mode, the index of the vehicle that is used
+	 *                       by the mode, or -1 if the mode is not restricted
+	 * @param homeLocationId The home location of the agent or null, in which case
+	 *                       vehicles must be used on the first and last trip
+	 * @param utilities      Utility per trip and mode. Non-finite utilities mark
+	 *                       modes that cannot be chosen for a trip.
+	 */
+	public TourTrellis(List<DiscreteModeChoiceTrip> trips, List<String> modes, int[] vehicleIndices,
+			Id<? extends BasicLocation> homeLocationId, double[][] utilities) {
+		this.modes = modes;
+		this.vehicleIndices = vehicleIndices;
+		this.numberOfVehicles = Arrays.stream(vehicleIndices).max().orElse(-1) + 1;
+		this.numberOfTrips = trips.size();
+
+		Map<Id<? extends BasicLocation>, Integer> locationIndices = new HashMap<>();
+		originIndices = new int[numberOfTrips];
+		destinationIndices = new int[numberOfTrips];
+
+		for (int tripIndex = 0; tripIndex < numberOfTrips; tripIndex++) {
+			DiscreteModeChoiceTrip trip = trips.get(tripIndex);
+			originIndices[tripIndex] = getLocationIndex(locationIndices,
+					LocationUtils.getLocationId(trip.getOriginActivity()));
+			destinationIndices[tripIndex] = getLocationIndex(locationIndices,
+					LocationUtils.getLocationId(trip.getDestinationActivity()));
+		}
+
+		if (homeLocationId == null) {
+			homeIndex = UNUSED;
+		} else {
+			homeIndex = locationIndices.getOrDefault(homeLocationId, NOT_IN_TOUR);
+		}
+
+		stateBase = locationIndices.size() + 1;
+
+		if (numberOfVehicles > 0 && Math.pow(stateBase, numberOfVehicles) > Long.MAX_VALUE) {
+			throw new IllegalStateException("Too many vehicles and locations to encode the states of the trellis");
+		}
+
+		int[] initialLocations = new int[numberOfVehicles];
+		Arrays.fill(initialLocations, UNUSED);
+		initialNode = new Node(initialLocations);
+
+		buildLayers(utilities);
+	}
+
+	static private int getLocationIndex(Map<Id<? extends BasicLocation>, Integer> locationIndices,
+			Id<? extends BasicLocation> locationId) {
+		Integer index = locationIndices.get(locationId);
+
+		if (index == null) {
+			index = locationIndices.size();
+			locationIndices.put(locationId, index);
+		}
+
+		return index;
+	}
+
+	private long getStateKey(int[] vehicleLocations) {
+		long key = 0;
+
+		for (int location : vehicleLocations) {
+			key = key * stateBase + location + 1;
+		}
+
+		return key;
+	}
+
+	private void buildLayers(double[][] utilities) {
+		List<Node> layer = new ArrayList<>();
+		layer.add(initialNode);
+		layers.add(layer);
+
+		for (int tripIndex = 0; tripIndex < numberOfTrips; tripIndex++) {
+			Map<Long, Node> nextLayer = new HashMap<>();
+			boolean isLastTrip = tripIndex == numberOfTrips - 1;
+
+			for (Node node : layer) {
+				for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+					double utility = utilities[tripIndex][modeIndex];
+
+					if (!Double.isFinite(utility)) {
+						continue;
+					}
+
+					int[] nextLocations = getNextLocations(node.vehicleLocations, tripIndex, modeIndex);
+
+					if (nextLocations == null) {
+						continue;
+					}
+
+					if (isLastTrip && !isFinalState(nextLocations, modeIndex)) {
+						continue;
+					}
+
+					Node target = nextLayer.computeIfAbsent(getStateKey(nextLocations), k -> new Node(nextLocations));
+					node.edges.add(new Edge(modeIndex, utility, target));
+				}
+			}
+
+			layer = new ArrayList<>(nextLayer.values());
+			layers.add(layer);
+		}
+	}
+
+	/**
+	 * Returns the vehicle locations after performing the trip with the given mode
+	 * or null if the vehicle of the mode is not available at the origin.
+	 */
+	private int[] getNextLocations(int[] vehicleLocations, int tripIndex, int modeIndex) {
+		int vehicleIndex = vehicleIndices[modeIndex];
+
+		if (vehicleIndex == -1) {
+			return vehicleLocations;
+		}
+
+		int vehicleLocation = vehicleLocations[vehicleIndex];
+		int originIndex = originIndices[tripIndex];
+
+		if (vehicleLocation == UNUSED) {
+			// First use of the vehicle in this tour
+			if (homeIndex == UNUSED ? tripIndex > 0 : originIndex != homeIndex) {
+				return null;
+			}
+		} else if (vehicleLocation != originIndex) {
+			return null;
+		}
+
+		int[] nextLocations = vehicleLocations.clone();
+		nextLocations[vehicleIndex] = destinationIndices[tripIndex];
+		return nextLocations;
+	}
+
+	private boolean isFinalState(int[] vehicleLocations, int lastModeIndex) {
+		for (int vehicleIndex = 0; vehicleIndex < numberOfVehicles; vehicleIndex++) {
+			int vehicleLocation = vehicleLocations[vehicleIndex];
+
+			if (vehicleLocation != UNUSED) {
+				if (homeIndex == UNUSED) {
+					if (vehicleIndices[lastModeIndex] != vehicleIndex) {
+						return false;
+					}
+				} else if (vehicleLocation != homeIndex) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the feasible chain with the highest utility, or nothing if there is
+	 * no feasible chain.
+	 */
+	public Optional<List<String>> findMaximum() {
+		computeValues(true, false);
+		return traverse(null, false);
+	}
+
+	/**
+	 * Samples a feasible chain with a probability that is proportional to the
+	 * exponential of its utility. If uniform is set, the utilities are ignored and
+	 * all feasible chains have the same probability.
+	 */
+	public Optional<List<String>> sample(Random random, boolean uniform) {
+		computeValues(false, uniform);
+		return traverse(random, uniform);
+	}
+
+	/**
+	 * Returns the number of nodes in the trellis, mainly for diagnostic purposes.
+	 */
+	public int getNumberOfNodes() {
+		return layers.stream().mapToInt(List::size).sum();
+	}
+
+	private void computeValues(boolean maximum, boolean uniform) {
+		// Nodes in the last layer have been checked when they were created
+		for (Node node : layers.get(numberOfTrips)) {
+			node.value = 0.0;
+		}
+
+		for (int layerIndex = numberOfTrips - 1; layerIndex >= 0; layerIndex--) {
+			for (Node node : layers.get(layerIndex)) {
+				double value = Double.NEGATIVE_INFINITY;
+
+				for (Edge edge : node.edges) {
+					double edgeValue = (uniform ? 0.0 : edge.utility) + edge.target.value;
+
+					if (maximum) {
+						value = Math.max(value, edgeValue);
+					} else {
+						value = logSumExp(value, edgeValue);
+					}
+				}
+
+				node.value = value;
+			}
+		}
+	}
+
+	static private double logSumExp(double a, double b) {
+		if (a == Double.NEGATIVE_INFINITY) {
+			return b;
+		}
+
+		if (b == Double.NEGATIVE_INFINITY) {
+			return a;
+		}
+
+		double maximum = Math.max(a, b);
+		return maximum + Math.log(Math.exp(a - maximum) + Math.exp(b - maximum));
+	}
+
+	private Optional<List<String>> traverse(Random random, boolean uniform) {
+		if (initialNode.value == Double.NEGATIVE_INFINITY) {
+			return Optional.empty();
+		}
+
+		List<String> chain = new ArrayList<>(numberOfTrips);
+		Node node = initialNode;
+
+		while (!node.edges.isEmpty()) {
+			Edge selectedEdge = null;
+
+			if (random == null) {
+				double bestValue = Double.NEGATIVE_INFINITY;
+
+				for (Edge edge : node.edges) {
+					double edgeValue = edge.utility + edge.target.value;
+
+					if (selectedEdge == null || edgeValue > bestValue) {
+						selectedEdge = edge;
+						bestValue = edgeValue;
+					}
+				}
+			} else {
+				double threshold = random.nextDouble();
+				double cumulativeProbability = 0.0;
+
+				for (Edge edge : node.edges) {
+					double edgeValue = (uniform ? 0.0 : edge.utility) + edge.target.value;
+
+					if (edgeValue == Double.NEGATIVE_INFINITY) {
+						continue;
+					}
+
+					// The last feasible edge catches numerical inaccuracies
+					selectedEdge = edge;
+					cumulativeProbability += Math.exp(edgeValue - node.value);
+
+					if (cumulativeProbability > threshold) {
+						break;
+					}
+				}
+			}
+
+			chain.add(modes.get(selectedEdge.modeIndex));
+			node = selectedEdge.target;
+		}
+
+		return Optional.of(chain);
+	}
+
+	static private class Node {
+		final int[] vehicleLocations;
+		final List<Edge> edges = new ArrayList<>();
+		double value = Double.NEGATIVE_INFINITY;
+
+		Node(int[] vehicleLocations) {
+			this.vehicleLocations = vehicleLocations;
+		}
+	}
+
+	static private class Edge {
+		final int modeIndex;
+		final double utility;
+		final Node target;
+
+		Edge(int modeIndex, double utility, Node target) {
+			this.modeIndex = modeIndex;
+			this.utility = utility;
+			this.target = target;
+		}
+	}
+}
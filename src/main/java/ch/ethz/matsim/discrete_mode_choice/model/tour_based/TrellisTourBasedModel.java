@@ -0,0 +1,205 @@
+package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.TourFinder;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_availability.ModeAvailability;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.replanning.time_interpreter.TimeInterpreter;
+
+/**
+ * A variant of the tour-based model for the case where the utility of a tour is
+ * the sum of the trip utilities (as for the CumulativeTourEstimator) and where
+ * vehicle continuity is the only constraint on the tours. Instead of generating
+ * and estimating all mode chains of a tour, every trip is estimated once per
+ * mode and the chain is chosen on a TourTrellis. The effort therefore only
+ * grows linearly with the length of the tour.
+ *
+ * The separability is declared by choosing this model, so the TripEstimator
+ * must not depend on the previous trips of the tour. Since the departure times
+ * of later trips depend on the chosen modes, trips are estimated at reference
+ * departure times, which are obtained by propagating the duration of the
+ * initial mode of every trip (or the shortest duration if the initial mode is
+ * not available). The chosen chain is then estimated by the TourEstimator with
+ * the actual departure times to obtain the final candidate.
+ *
+ * Hence, the maximum and the multinomial logit selection are only exact if the
+ * trip utilities do not depend on the departure time. Otherwise, the chain is
+ * chosen based on the utilities at the reference departure times, which may
+ * differ from the utilities of the final candidate.
+ *
+ * @author sebhoerl
+ */
+public class TrellisTourBasedModel implements DiscreteModeChoiceModel {
+	final private static Logger logger = Logger.getLogger(TrellisTourBasedModel.class);
+
+	public enum Selection {
+		MAXIMUM, MULTINOMIAL_LOGIT, RANDOM
+	}
+
+	final private TripEstimator tripEstimator;
+	final private TourEstimator tourEstimator;
+	final private ModeAvailability modeAvailability;
+	final private TourFinder tourFinder;
+	final private TourFilter tourFilter;
+	final private HomeFinder homeFinder;
+	final private Collection<String> restrictedModes;
+	final private Selection selection;
+	final private TourFallbackHandler fallbackHandler;
+	final private TimeInterpreter.Factory timeInterpreterFactory;
+
+	public TrellisTourBasedModel(TripEstimator tripEstimator, TourEstimator tourEstimator,
+			ModeAvailability modeAvailability, TourFinder tourFinder, TourFilter tourFilter, HomeFinder homeFinder,
+			Collection<String> restrictedModes, Selection selection, FallbackBehaviour fallbackBehaviour,
+			TimeInterpreter.Factory timeInterpreterFactory) {
+		this.tripEstimator = tripEstimator;
+		this.tourEstimator = tourEstimator;
+		this.modeAvailability = modeAvailability;
+		this.tourFinder = tourFinder;
+		this.tourFilter = tourFilter;
+		this.homeFinder = homeFinder;
+		this.restrictedModes = restrictedModes;
+		this.selection = selection;
+		this.fallbackHandler = new TourFallbackHandler(logger, tourFinder, tourEstimator, fallbackBehaviour);
+		this.timeInterpreterFactory = timeInterpreterFactory;
+	}
+
+	@Override
+	public List<TripCandidate> chooseModes(Person person, List<DiscreteModeChoiceTrip> trips, Random random)
+			throws NoFeasibleChoiceException {
+		List<String> modes = new ArrayList<>(modeAvailability.getAvailableModes(person, trips));
+		Id<? extends BasicLocation> homeLocationId = homeFinder.getHomeLocationId(trips);
+
+		// Every restricted mode has its own vehicle
+		int[] vehicleIndices = new int[modes.size()];
+		int numberOfVehicles = 0;
+
+		for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+			vehicleIndices[modeIndex] = restrictedModes.contains(modes.get(modeIndex)) ? numberOfVehicles++ : -1;
+		}
+
+		List<TourCandidate> tourCandidates = new LinkedList<>();
+
+		int tripIndex = 1;
+		TimeInterpreter time = timeInterpreterFactory.createTimeInterpreter();
+
+		for (List<DiscreteModeChoiceTrip> tourTrips : tourFinder.findTours(trips)) {
+			time.addActivity(tourTrips.get(0).getOriginActivity());
+
+			// We pass the departure time through the first origin activity
+			tourTrips.get(0).setDepartureTime(time.getCurrentTime());
+
+			TourCandidate finalTourCandidate = null;
+
+			if (tourFilter.filter(person, tourTrips)) {
+				double[][] utilities = estimateUtilities(person, modes, tourTrips, time);
+				TourTrellis trellis = new TourTrellis(tourTrips, modes, vehicleIndices, homeLocationId, utilities);
+
+				Optional<List<String>> tourModes;
+
+				switch (selection) {
+				case MAXIMUM:
+					tourModes = trellis.findMaximum();
+					break;
+				case MULTINOMIAL_LOGIT:
+					tourModes = trellis.sample(random, false);
+					break;
+				case RANDOM:
+					tourModes = trellis.sample(random, true);
+					break;
+				default:
+					throw new IllegalStateException();
+				}
+
+				if (tourModes.isPresent()) {
+					finalTourCandidate = tourEstimator.estimateTour(person, tourModes.get(), tourTrips,
+							tourCandidates);
+				} else {
+					finalTourCandidate = fallbackHandler.handleInfeasibleTour(tripIndex, person, tourTrips,
+							tourCandidates);
+
+					if (finalTourCandidate == null) {
+						return fallbackHandler.createInitialTripCandidates(tripIndex, person, trips);
+					}
+				}
+			} else {
+				finalTourCandidate = fallbackHandler.createFallbackCandidate(person, tourTrips, tourCandidates);
+			}
+
+			tourCandidates.add(finalTourCandidate);
+			tripIndex += tourTrips.size();
+
+			for (int i = 0; i < tourTrips.size(); i++) {
+				if (i > 0) { // Our time object is already at the end of the first activity
+					time.addActivity(tourTrips.get(i).getOriginActivity());
+				}
+
+				time.addTime(finalTourCandidate.getTripCandidates().get(i).getDuration());
+			}
+		}
+
+		return TourFallbackHandler.createTripCandidates(tourCandidates);
+	}
+
+	/**
+	 * Estimates every trip of the tour with every mode at its reference departure
+	 * time.
+	 */
+	private double[][] estimateUtilities(Person person, List<String> modes, List<DiscreteModeChoiceTrip> tourTrips,
+			TimeInterpreter tourTime) {
+		double[][] utilities = new double[tourTrips.size()][modes.size()];
+		TimeInterpreter time = tourTime.fork();
+
+		for (int i = 0; i < tourTrips.size(); i++) {
+			DiscreteModeChoiceTrip trip = tourTrips.get(i);
+
+			if (i > 0) { // We're already at the end of the first origin activity
+				time.addActivity(trip.getOriginActivity());
+				trip.setDepartureTime(time.getCurrentTime());
+			}
+
+			double referenceDuration = Double.NaN;
+			double shortestDuration = Double.POSITIVE_INFINITY;
+
+			List<TripCandidate> candidates = tripEstimator.estimateTrips(person, modes, trip,
+					Collections.emptyList());
+
+			for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+				String mode = modes.get(modeIndex);
+				TripCandidate candidate = candidates.get(modeIndex);
+				utilities[i][modeIndex] = candidate.getUtility();
+
+				if (Double.isFinite(candidate.getUtility())) {
+					shortestDuration = Math.min(shortestDuration, candidate.getDuration());
+
+					if (mode.equals(trip.getInitialMode())) {
+						referenceDuration = candidate.getDuration();
+					}
+				}
+			}
+
+			if (Double.isNaN(referenceDuration)) {
+				referenceDuration = Double.isFinite(shortestDuration) ? shortestDuration : 0.0;
+			}
+
+			time.addTime(referenceDuration);
+		}
+
+		return utilities;
+	}
+}
@@ -0,0 +1,85 @@
+package ch.ethz.matsim.discrete_mode_choice.model.trip_based;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+/**
+ * Estimates the modes of one trip in parallel. If the estimation includes
+ * routing, the time needed for one trip is dominated by the slowest mode (often
+ * public transport), so the cheaper modes can be routed while the expensive one
+ * is still running.
+ *
+ * Every mode is estimated by its own TripEstimator (and hence its own
+ * TripRouter, because routers are not thread-safe) and its own copy of the
+ * trip. Estimators are obtained from the supplier when needed and then kept for
+ * later trips. The candidates are returned in the same order as the modes, so
+ * the subsequent selection does not depend on how the work has been scheduled.
+ *
+ * @author sebhoerl
+ */
+public class ParallelTripEvaluator {
+	private final ForkJoinPool pool;
+	private final Supplier<TripEstimator> estimatorSupplier;
+
+	private final Queue<TripEstimator> estimators = new ConcurrentLinkedQueue<>();
+
+	public ParallelTripEvaluator(ForkJoinPool pool, Supplier<TripEstimator> estimatorSupplier) {
+		this.pool = pool;
+		this.estimatorSupplier = estimatorSupplier;
+	}
+
+	public List<TripCandidate> estimateTrips(Person person, List<String> modes, DiscreteModeChoiceTrip trip,
+			List<TripCandidate> previousTrips) {
+		List<Callable<TripCandidate>> tasks = new ArrayList<>(modes.size());
+
+		for (String mode : modes) {
+			tasks.add(() -> estimateTrip(person, mode, trip, previousTrips));
+		}
+
+		List<TripCandidate> candidates = new ArrayList<>(modes.size());
+
+		try {
+			for (Future<TripCandidate> future : pool.invokeAll(tasks)) {
+				candidates.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+
+		return candidates;
+	}
+
+	private TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
+			List<TripCandidate> previousTrips) {
+		TripEstimator estimator = estimators.poll();
+
+		if (estimator == null) {
+			estimator = estimatorSupplier.get();
+		}
+
+		try {
+			return estimator.estimateTrip(person, mode, new DiscreteModeChoiceTrip(trip), previousTrips);
+		} finally {
+			estimators.add(estimator);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package ch.ethz.matsim.discrete_mode_choice.model.trip_based;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -34,10 +35,24 @@ public class TripBasedModel implements DiscreteModeChoiceModel {
 	private final UtilitySelectorFactory selectorFactory;
 	private final FallbackBehaviour fallbackBehaviour;
 	private final TimeInterpreter.Factory timeInterpreterFactory;
+	private final ParallelTripEvaluator parallelEvaluator;
 
 	public TripBasedModel(TripEstimator estimator, TripFilter tripFilter, ModeAvailability modeAvailability,
 			TripConstraintFactory constraintFactory, UtilitySelectorFactory selectorFactory,
 			FallbackBehaviour fallbackBehaviour, TimeInterpreter.Factory timeInterpreterFactory) {
+		this(estimator, tripFilter, modeAvailability, constraintFactory, selectorFactory, fallbackBehaviour,
+				timeInterpreterFactory, null);
+	}
+
+	/**
+	 * Creates a trip-based model that estimates the feasible modes of a trip in
+	 * parallel using the given ParallelTripEvaluator. If it is null, all modes are
+	 * estimated sequentially.
+	 */
+	public TripBasedModel(TripEstimator estimator, TripFilter tripFilter, ModeAvailability modeAvailability,
+			TripConstraintFactory constraintFactory, UtilitySelectorFactory selectorFactory,
+			FallbackBehaviour fallbackBehaviour, TimeInterpreter.Factory timeInterpreterFactory,
+			ParallelTripEvaluator parallelEvaluator) {
 		this.estimator = estimator;
 		this.tripFilter = tripFilter;
 		this.modeAvailability = modeAvailability;
@@ -45,6 +60,7 @@ public class TripBasedModel implements DiscreteModeChoiceModel {
 		this.selectorFactory = selectorFactory;
 		this.fallbackBehaviour = fallbackBehaviour;
 		this.timeInterpreterFactory = timeInterpreterFactory;
+		this.parallelEvaluator = parallelEvaluator;
 	}
 
 	@Override
@@ -66,16 +82,29 @@ public class TripBasedModel implements DiscreteModeChoiceModel {
 			TripCandidate finalTripCandidate = null;
 
 			if (tripFilter.filter(person, trip)) {
-				UtilitySelector selector = selectorFactory.createUtilitySelector();
+				UtilitySelector selector = selectorFactory.createUtilitySelector(random);
 				tripIndex++;
 
+				List<String> feasibleModes = new ArrayList<>(modes.size());
+
 				for (String mode : modes) {
-					if (!constraint.validateBeforeEstimation(trip, mode, tripCandidateModes)) {
-						continue;
+					if (constraint.validateBeforeEstimation(trip, mode, tripCandidateModes)) {
+						feasibleModes.add(mode);
 					}
+				}
 
-					TripCandidate candidate = estimator.estimateTrip(person, mode, trip, tripCandidates);
+				// All feasible modes are estimated at once, so the estimator can share work
+				List<TripCandidate> candidates;
+
+				if (feasibleModes.isEmpty()) {
+					candidates = Collections.emptyList();
+				} else if (parallelEvaluator != null && feasibleModes.size() > 1) {
+					candidates = parallelEvaluator.estimateTrips(person, feasibleModes, trip, tripCandidates);
+				} else {
+					candidates = estimator.estimateTrips(person, feasibleModes, trip, tripCandidates);
+				}
 
+				for (TripCandidate candidate : candidates) {
 					if (!Double.isFinite(candidate.getUtility())) {
 						logger.warn(buildIllegalUtilityMessage(tripIndex, person));
 						continue;
@@ -7,6 +7,10 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
 
 /**
  * This class defines a constriant for a trip.
+ *
+ * Modes are passed as strings. Implementations that check modes in their inner
+ * loops can look up the integer identifiers of the modes in the ModeRegistry
+ * and compare those or test them against BitSet masks.
  * 
  * @author sebhoerl
  */
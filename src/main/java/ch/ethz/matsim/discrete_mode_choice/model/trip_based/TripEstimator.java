@@ -1,5 +1,6 @@
 package ch.ethz.matsim.discrete_mode_choice.model.trip_based;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.matsim.api.core.v01.population.Person;
@@ -15,4 +16,21 @@ import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandi
  */
 public interface TripEstimator {
 	TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip, List<TripCandidate> previousTrips);
+
+	/**
+	 * Estimates one trip for a number of modes at once and returns the candidates
+	 * in the same order as the modes. By default, the modes are estimated one by
+	 * one, but estimators can override this to share work between the modes of a
+	 * trip, for instance to look up the origin and destination only once.
+	 */
+	default List<TripCandidate> estimateTrips(Person person, List<String> modes, DiscreteModeChoiceTrip trip,
+			List<TripCandidate> previousTrips) {
+		List<TripCandidate> candidates = new ArrayList<>(modes.size());
+
+		for (String mode : modes) {
+			candidates.add(estimateTrip(person, mode, trip, previousTrips));
+		}
+
+		return candidates;
+	}
 }
@@ -0,0 +1,147 @@
+package ch.ethz.matsim.discrete_mode_choice.model.utilities;
+
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+/**
+ * This selector samples from the multinomial logit model by adding a Gumbel
+ * distributed error term to the utility of every candidate and choosing the
+ * candidate with the highest total utility. Like the MaximumSelector, it only
+ * holds the best candidate and does not need any exponential terms or
+ * cumulative densities.
+ *
+ * The error terms are not drawn sequentially. Instead, one seed is drawn from
+ * the random number generator of the agent when the selector is created (so it
+ * depends on the agent, the iteration and the tour in the same way as the other
+ * selectors). The error term of a candidate is then calculated by hashing this
+ * seed together with a key of the candidate, which is the chain of modes for
+ * tour candidates and the mode for trip candidates. Hence, the choice does not
+ * depend on the order in which candidates are added, so candidates can be
+ * estimated in any order or in parallel while results stay reproducible. For
+ * other candidates, the position in which they are added is used as the key.
+ *
+ * The maximum and minimum utility are treated in the same way as by the
+ * MultinomialLogitSelector.
+ *
+ * @author sebhoerl
+ */
+public class GumbelMaxSelector implements UtilitySelector {
+	private final static Logger logger = Logger.getLogger(GumbelMaxSelector.class);
+
+	private final long seed;
+
+	private final double maximumUtility;
+	private final double minimumUtility;
+	private final boolean considerMinimumUtility;
+
+	private UtilityCandidate bestCandidate = null;
+	private double bestUtility = Double.NEGATIVE_INFINITY;
+
+	private long numberOfCandidates = 0;
+
+	public GumbelMaxSelector(long seed, double maximumUtility, double minimumUtility,
+			boolean considerMinimumUtility) {
+		this.seed = seed;
+		this.maximumUtility = maximumUtility;
+		this.minimumUtility = minimumUtility;
+		this.considerMinimumUtility = considerMinimumUtility;
+	}
+
+	@Override
+	public void addCandidate(UtilityCandidate candidate) {
+		long key = getKey(candidate, numberOfCandidates++);
+		double utility = candidate.getUtility();
+
+		if (considerMinimumUtility && !(utility > minimumUtility)) {
+			return;
+		}
+
+		// Warn if there is a utility that is exceeding the feasible range
+		if (utility > maximumUtility) {
+			logger.warn(String.format(
+					"Encountered choice where a utility (%f) is larger than %f (maximum configured utility)", utility,
+					maximumUtility));
+			utility = maximumUtility;
+		}
+
+		double totalUtility = utility + getErrorTerm(seed, key);
+
+		if (bestCandidate == null || totalUtility > bestUtility) {
+			bestCandidate = candidate;
+			bestUtility = totalUtility;
+		}
+	}
+
+	@Override
+	public Optional<UtilityCandidate> select(Random random) {
+		if (bestCandidate == null) {
+			if (numberOfCandidates > 0) {
+				logger.warn(String.format(
+						"Encountered choice where all utilities were smaller than %f (minimum configured utility)",
+						minimumUtility));
+			}
+
+			return Optional.empty();
+		}
+
+		return Optional.of(bestCandidate);
+	}
+
+	static private long getKey(UtilityCandidate candidate, long index) {
+		if (candidate instanceof TourCandidate) {
+			long key = 0x9e3779b97f4a7c15L;
+
+			for (TripCandidate tripCandidate : ((TourCandidate) candidate).getTripCandidates()) {
+				key = RandomUtils.mix(key + tripCandidate.getMode().hashCode());
+			}
+
+			return key;
+		} else if (candidate instanceof TripCandidate) {
+			return RandomUtils.mix(((TripCandidate) candidate).getMode().hashCode());
+		} else {
+			return index;
+		}
+	}
+
+	/**
+	 * Returns a standard Gumbel distributed error term for the given seed and key.
+	 */
+	static double getErrorTerm(long seed, long key) {
+		long value = RandomUtils.mix(seed ^ RandomUtils.mix(key));
+
+		// Uniform value in (0, 1) from the upper 53 bits
+		double uniform = ((value >>> 11) + 0.5) / (1L << 53);
+		return -Math.log(-Math.log(uniform));
+	}
+
+	public static class Factory implements UtilitySelectorFactory {
+		private final double minimumUtility;
+		private final double maximumUtility;
+		private final boolean considerMinimumUtility;
+
+		public Factory(double minimumUtility, double maximumUtility, boolean considerMinimumUtility) {
+			this.minimumUtility = minimumUtility;
+			this.maximumUtility = maximumUtility;
+			this.considerMinimumUtility = considerMinimumUtility;
+		}
+
+		/**
+		 * Creates a selector with a random seed. The choices are then not
+		 * reproducible, so the models always pass the generator of the agent.
+		 */
+		@Override
+		public UtilitySelector createUtilitySelector() {
+			return createUtilitySelector(new Random());
+		}
+
+		@Override
+		public UtilitySelector createUtilitySelector(Random random) {
+			return new GumbelMaxSelector(random.nextLong(), maximumUtility, minimumUtility, considerMinimumUtility);
+		}
+	}
+}
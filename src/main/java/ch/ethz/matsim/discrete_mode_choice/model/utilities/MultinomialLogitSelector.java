@@ -1,11 +1,8 @@
 package ch.ethz.matsim.discrete_mode_choice.model.utilities;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 import org.apache.log4j.Logger;
 
@@ -16,16 +13,31 @@ import org.apache.log4j.Logger;
  * 
  * <code>P(i) = exp( Ui ) / Sum( U1 + U2 + ... + Un )</code>
  * 
- * For large utilities the exponential terms can exceed the value range of a
- * double. Therefore, the selector has a cutoff value, which is a maximum of
- * 700.0 by default. If this value is reached a warning will be shown.
+ * To avoid that the exponential terms exceed the value range of a double, the
+ * maximum utility of all candidates is subtracted from all utilities before
+ * the exponential terms are calculated, which does not change the
+ * probabilities. Additionally, the selector has a cutoff value, which is a
+ * maximum of 700.0 by default. If this value is reached a warning will be
+ * shown.
+ * 
+ * Candidates and utilities are kept in arrays which grow with the number of
+ * candidates, and the selection is performed by a binary search over the
+ * cumulative density, so choice sets with many candidates (as they occur in
+ * tour-based models) can be handled efficiently.
  * 
  * @author sebhoerl
  */
 public class MultinomialLogitSelector implements UtilitySelector {
 	private final static Logger logger = Logger.getLogger(MultinomialLogitSelector.class);
 
-	final private List<UtilityCandidate> candidates = new LinkedList<>();
+	private final static int INITIAL_CAPACITY = 16;
+
+	private UtilityCandidate[] candidates = new UtilityCandidate[INITIAL_CAPACITY];
+	private double[] utilities = new double[INITIAL_CAPACITY];
+	private int numberOfCandidates = 0;
+
+	private int[] filteredIndices = new int[0];
+	private double[] cumulativeDensity = new double[0];
 
 	private final double maximumUtility;
 	private final double minimumUtility;
@@ -43,37 +55,39 @@ public class MultinomialLogitSelector implements UtilitySelector {
 
 	@Override
 	public void addCandidate(UtilityCandidate candidate) {
-		candidates.add(candidate);
+		if (numberOfCandidates == candidates.length) {
+			candidates = Arrays.copyOf(candidates, 2 * candidates.length);
+			utilities = Arrays.copyOf(utilities, 2 * utilities.length);
+		}
+
+		candidates[numberOfCandidates] = candidate;
+		utilities[numberOfCandidates] = candidate.getUtility();
+		numberOfCandidates++;
 	}
 
 	@Override
 	public Optional<UtilityCandidate> select(Random random) {
 		// I) If not candidates are available, give back nothing
-		if (candidates.size() == 0) {
+		if (numberOfCandidates == 0) {
 			return Optional.empty();
 		}
 
-		// II) Filter candidates that have a very low utility
-		List<UtilityCandidate> filteredCandidates = candidates;
-
-		if (considerMinimumUtility) {
-			filteredCandidates = candidates.stream() //
-					.filter(c -> c.getUtility() > minimumUtility) //
-					.collect(Collectors.toList());
-
-			if (filteredCandidates.size() == 0) {
-				logger.warn(String.format(
-						"Encountered choice where all utilities were smaller than %f (minimum configured utility)",
-						minimumUtility));
-				return Optional.empty();
-			}
+		if (filteredIndices.length < numberOfCandidates) {
+			filteredIndices = new int[candidates.length];
+			cumulativeDensity = new double[candidates.length];
 		}
 
-		// III) Create a probability distribution over candidates
-		List<Double> density = new ArrayList<>(filteredCandidates.size());
+		// II) Filter candidates that have a very low utility and cut off large
+		// utilities
+		int numberOfFilteredCandidates = 0;
+		double maximumFilteredUtility = Double.NEGATIVE_INFINITY;
+
+		for (int i = 0; i < numberOfCandidates; i++) {
+			double utility = utilities[i];
 
-		for (UtilityCandidate candidate : filteredCandidates) {
-			double utility = candidate.getUtility();
+			if (considerMinimumUtility && !(utility > minimumUtility)) {
+				continue;
+			}
 
 			// Warn if there is a utility that is exceeding the feasible range
 			if (utility > maximumUtility) {
@@ -83,23 +97,47 @@ public class MultinomialLogitSelector implements UtilitySelector {
 				utility = maximumUtility;
 			}
 
-			density.add(Math.exp(utility));
+			filteredIndices[numberOfFilteredCandidates] = i;
+			cumulativeDensity[numberOfFilteredCandidates] = utility;
+			numberOfFilteredCandidates++;
+
+			maximumFilteredUtility = Math.max(maximumFilteredUtility, utility);
+		}
+
+		if (numberOfFilteredCandidates == 0) {
+			logger.warn(String.format(
+					"Encountered choice where all utilities were smaller than %f (minimum configured utility)",
+					minimumUtility));
+			return Optional.empty();
 		}
 
-		// IV) Build a cumulative density of the distribution
-		List<Double> cumulativeDensity = new ArrayList<>(density.size());
+		// III) Build a cumulative density of the distribution, shifted by the maximum
+		// utility (the buffer holds the utilities before)
 		double totalDensity = 0.0;
 
-		for (int i = 0; i < density.size(); i++) {
-			totalDensity += density.get(i);
-			cumulativeDensity.add(totalDensity);
+		for (int i = 0; i < numberOfFilteredCandidates; i++) {
+			totalDensity += Math.exp(cumulativeDensity[i] - maximumFilteredUtility);
+			cumulativeDensity[i] = totalDensity;
 		}
 
-		// V) Perform a selection using the CDF
+		// IV) Perform a selection using the CDF: the first candidate whose cumulative
+		// density is not smaller than the pointer is chosen
 		double pointer = random.nextDouble() * totalDensity;
 
-		int selection = (int) cumulativeDensity.stream().filter(f -> f < pointer).count();
-		return Optional.of(filteredCandidates.get(selection));
+		int lower = 0;
+		int upper = numberOfFilteredCandidates - 1;
+
+		while (lower < upper) {
+			int middle = (lower + upper) >>> 1;
+
+			if (cumulativeDensity[middle] < pointer) {
+				lower = middle + 1;
+			} else {
+				upper = middle;
+			}
+		}
+
+		return Optional.of(candidates[filteredIndices[lower]]);
 	}
 
 	public static class Factory implements UtilitySelectorFactory {
@@ -0,0 +1,22 @@
+package ch.ethz.matsim.discrete_mode_choice.model.utilities;
+
+/**
+ * Helper functions for deriving reproducible random numbers from seeds and
+ * keys, independent of the order in which they are requested.
+ * 
+ * @author sebhoerl
+ */
+public class RandomUtils {
+	private RandomUtils() {
+	}
+
+	/**
+	 * Scrambles the bits of the given value with the 64 bit finalizer of
+	 * MurmurHash3, such that similar inputs result in very different outputs.
+	 */
+	static public long mix(long value) {
+		value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+		value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return value ^ (value >>> 33);
+	}
+}
@@ -0,0 +1,125 @@
+package ch.ethz.matsim.discrete_mode_choice.model.utilities;
+
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+/**
+ * This selector samples from the same multinomial logit model as the
+ * MultinomialLogitSelector, but it never holds more than one candidate, like
+ * the MaximumSelector. This is useful for tour-based models with many
+ * alternatives, because otherwise all estimated tours (including their routed
+ * plan elements) are kept in memory until the choice is made.
+ * 
+ * For every candidate (i) that is added, the logarithm of the sum of all
+ * exponential terms S(i) = exp( U1 ) + ... + exp( Ui ) is updated and the
+ * currently selected candidate is replaced by the new one with probability
+ * exp( Ui ) / S(i). After all candidates have been added, every candidate has
+ * been selected with its multinomial logit probability (weighted reservoir
+ * sampling). All calculations are performed in log space, so large utilities
+ * do not lead to an overflow. The maximum and minimum utility are treated in
+ * the same way as by the MultinomialLogitSelector.
+ * 
+ * Since random numbers are drawn while candidates are added, the selector
+ * needs to be created with a random number generator. The one that is passed
+ * to select is not used.
+ * 
+ * @author sebhoerl
+ */
+public class StreamingMultinomialLogitSelector implements UtilitySelector {
+	private final static Logger logger = Logger.getLogger(StreamingMultinomialLogitSelector.class);
+
+	private final Random random;
+
+	private final double maximumUtility;
+	private final double minimumUtility;
+	private final boolean considerMinimumUtility;
+
+	private UtilityCandidate selectedCandidate = null;
+	private double logSum = Double.NEGATIVE_INFINITY;
+	private boolean hasCandidates = false;
+
+	public StreamingMultinomialLogitSelector(Random random, double maximumUtility, double minimumUtility,
+			boolean considerMinimumUtility) {
+		this.random = random;
+		this.maximumUtility = maximumUtility;
+		this.minimumUtility = minimumUtility;
+		this.considerMinimumUtility = considerMinimumUtility;
+	}
+
+	@Override
+	public void addCandidate(UtilityCandidate candidate) {
+		hasCandidates = true;
+		double utility = candidate.getUtility();
+
+		if (considerMinimumUtility && !(utility > minimumUtility)) {
+			return;
+		}
+
+		// Warn if there is a utility that is exceeding the feasible range
+		if (utility > maximumUtility) {
+			logger.warn(String.format(
+					"Encountered choice where a utility (%f) is larger than %f (maximum configured utility)", utility,
+					maximumUtility));
+			utility = maximumUtility;
+		}
+
+		if (selectedCandidate == null) {
+			selectedCandidate = candidate;
+			logSum = utility;
+			return;
+		}
+
+		// log( exp( logSum ) + exp( utility ) ), shifted by the larger value
+		double maximum = Math.max(logSum, utility);
+		logSum = maximum + Math.log(Math.exp(logSum - maximum) + Math.exp(utility - maximum));
+
+		if (random.nextDouble() < Math.exp(utility - logSum)) {
+			selectedCandidate = candidate;
+		}
+	}
+
+	@Override
+	public Optional<UtilityCandidate> select(Random random) {
+		if (selectedCandidate == null) {
+			if (hasCandidates) {
+				logger.warn(String.format(
+						"Encountered choice where all utilities were smaller than %f (minimum configured utility)",
+						minimumUtility));
+			}
+
+			return Optional.empty();
+		}
+
+		return Optional.of(selectedCandidate);
+	}
+
+	public static class Factory implements UtilitySelectorFactory {
+		private final double minimumUtility;
+		private final double maximumUtility;
+		private final boolean considerMinimumUtility;
+
+		public Factory(double minimumUtility, double maximumUtility, boolean considerMinimumUtility) {
+			this.minimumUtility = minimumUtility;
+			this.maximumUtility = maximumUtility;
+			this.considerMinimumUtility = considerMinimumUtility;
+		}
+
+		/**
+		 * Creates a selector with its own random number generator. The choices are
+		 * then not reproducible, so the models always pass the generator of the
+		 * agent.
+		 */
+		@Override
+		public UtilitySelector createUtilitySelector() {
+			return createUtilitySelector(new Random());
+		}
+
+		@Override
+		public UtilitySelector createUtilitySelector(Random random) {
+			return new StreamingMultinomialLogitSelector(random, maximumUtility, minimumUtility,
+					considerMinimumUtility);
+		}
+	}
+}
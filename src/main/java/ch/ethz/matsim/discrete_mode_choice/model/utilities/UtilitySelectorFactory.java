@@ -1,5 +1,7 @@
 package ch.ethz.matsim.discrete_mode_choice.model.utilities;
 
+import java.util.Random;
+
 /**
  * Creates a UtilitySelector.
  * 
@@ -7,4 +9,14 @@ package ch.ethz.matsim.discrete_mode_choice.model.utilities;
  */
 public interface UtilitySelectorFactory {
 	UtilitySelector createUtilitySelector();
+
+	/**
+	 * Creates a UtilitySelector that may already draw random numbers while the
+	 * candidates are added. The models call this method with the random number
+	 * generator of the agent, which is later on also passed to
+	 * UtilitySelector.select. By default, it is ignored.
+	 */
+	default UtilitySelector createUtilitySelector(Random random) {
+		return createUtilitySelector();
+	}
 }
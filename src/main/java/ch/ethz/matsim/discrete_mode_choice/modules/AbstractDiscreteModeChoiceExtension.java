@@ -8,6 +8,7 @@ import com.google.inject.multibindings.MapBinder;
 import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.TourFinder;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.model.mode_availability.ModeAvailability;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.ModeChainGeneratorFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourFilter;
@@ -39,6 +40,8 @@ public abstract class AbstractDiscreteModeChoiceExtension extends AbstractModule
 	protected MapBinder<String, TourFilter> tourFilterBinder;
 	protected MapBinder<String, TripFilter> tripFilterBinder;
 
+	protected MapBinder<String, ModeChainGeneratorFactory> modeChainGeneratorFactoryBinder;
+
 	@Override
 	public final void install() {
 		tourEstimatorBinder = MapBinder.newMapBinder(binder(), String.class, TourEstimator.class);
@@ -56,6 +59,9 @@ public abstract class AbstractDiscreteModeChoiceExtension extends AbstractModule
 		tourFinderBinder = MapBinder.newMapBinder(binder(), String.class, TourFinder.class);
 		homeFinderBinder = MapBinder.newMapBinder(binder(), String.class, HomeFinder.class);
 
+		modeChainGeneratorFactoryBinder = MapBinder.newMapBinder(binder(), String.class,
+				ModeChainGeneratorFactory.class);
+
 		installExtension();
 	}
 
@@ -99,5 +105,9 @@ public abstract class AbstractDiscreteModeChoiceExtension extends AbstractModule
 		return homeFinderBinder.addBinding(name);
 	}
 
+	protected final LinkedBindingBuilder<ModeChainGeneratorFactory> bindModeChainGeneratorFactory(String name) {
+		return modeChainGeneratorFactoryBinder.addBinding(name);
+	}
+
 	abstract protected void installExtension();
 }
@@ -1,8 +1,10 @@
 package ch.ethz.matsim.discrete_mode_choice.modules;
 
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.matsim.api.core.v01.network.Network;
@@ -23,10 +25,12 @@ import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFind
 import ch.ethz.matsim.discrete_mode_choice.model.constraints.CompositeTourConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.constraints.CompositeTripConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.constraints.TourFromTripConstraintFactory;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.LinkAttributeConstraintConfigGroup;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.LinkAttributeRuleConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.ShapeFileConstraintConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.SubtourModeConstraintConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.VehicleTourConstraintConfigGroup;
@@ -127,41 +131,57 @@ public class ConstraintModule extends AbstractDiscreteModeChoiceExtension {
 	@Provides
 	@Singleton
 	public LinkAttributeConstraint.Factory provideLinkAttributeConstraintFactory(Network network,
-			DiscreteModeChoiceConfigGroup dmcConfig) {
+			DiscreteModeChoiceConfigGroup dmcConfig, ModeRegistry modeRegistry) {
 		LinkAttributeConstraintConfigGroup config = dmcConfig.getLinkAttributeConstraintConfigGroup();
-		return new LinkAttributeConstraint.Factory(network, config.getConstrainedModes(), config.getAttributeName(),
-				config.getAttributeValue(), config.getRequirement());
+		List<LinkAttributeConstraint.Rule> rules = new ArrayList<>();
+
+		// The top-level parameters always define the first rule, as before rule
+		// parameter sets existed. Without constrained modes, it has no effect.
+		if (!config.getConstrainedModes().isEmpty()) {
+			rules.add(new LinkAttributeConstraint.Rule(config.getConstrainedModes(), config.getAttributeName(),
+					config.getAttributeValue(), config.getRequirement()));
+		}
+
+		for (LinkAttributeRuleConfigGroup ruleConfig : config.getRules()) {
+			rules.add(new LinkAttributeConstraint.Rule(ruleConfig.getConstrainedModes(), ruleConfig.getAttributeName(),
+					ruleConfig.getAttributeValue(), ruleConfig.getRequirement()));
+		}
+
+		return new LinkAttributeConstraint.Factory(network, rules, modeRegistry);
 	}
 
 	@Provides
 	@Singleton
 	public ShapeFileConstraint.Factory provideShapeFileConstraintFactory(Network network,
-			DiscreteModeChoiceConfigGroup dmcConfig, Config matsimConfig) {
+			DiscreteModeChoiceConfigGroup dmcConfig, Config matsimConfig, ModeRegistry modeRegistry) {
 		ShapeFileConstraintConfigGroup config = dmcConfig.getShapeFileConstraintConfigGroup();
 		URL url = ConfigGroup.getInputFileURL(matsimConfig.getContext(), config.getPath());
-		return new ShapeFileConstraint.Factory(network, config.getConstrainedModes(), config.getRequirement(), url);
+		return new ShapeFileConstraint.Factory(network, config.getConstrainedModes(), config.getRequirement(), url,
+				modeRegistry);
 	}
 
 	@Provides
 	@Singleton
 	public VehicleTripConstraint.Factory provideVehicleTripConstraintFactory(DiscreteModeChoiceConfigGroup dmcConfig,
-			HomeFinder homeFinder) {
+			HomeFinder homeFinder, ModeRegistry modeRegistry) {
 		VehicleTripConstraintConfigGroup config = dmcConfig.getVehicleTripConstraintConfig();
-		return new VehicleTripConstraint.Factory(config.getRestrictedModes(), config.getIsAdvanced(), homeFinder);
+		return new VehicleTripConstraint.Factory(config.getRestrictedModes(), config.getIsAdvanced(), homeFinder,
+				modeRegistry);
 	}
 
 	@Provides
 	@Singleton
 	public VehicleTourConstraint.Factory provideVehicleTourConstraintFactory(DiscreteModeChoiceConfigGroup dmcConfig,
-			HomeFinder homeFinder) {
+			HomeFinder homeFinder, ModeRegistry modeRegistry) {
 		VehicleTourConstraintConfigGroup config = dmcConfig.getVehicleTourConstraintConfig();
-		return new VehicleTourConstraint.Factory(config.getRestrictedModes(), homeFinder);
+		return new VehicleTourConstraint.Factory(config.getRestrictedModes(), homeFinder, modeRegistry);
 	}
 
 	@Provides
 	@Singleton
-	public SubtourModeConstraint.Factory provideSubtourModeConstraintFactory(DiscreteModeChoiceConfigGroup dmcConfig) {
+	public SubtourModeConstraint.Factory provideSubtourModeConstraintFactory(DiscreteModeChoiceConfigGroup dmcConfig,
+			ModeRegistry modeRegistry) {
 		SubtourModeConstraintConfigGroup config = dmcConfig.getSubtourConstraintConfig();
-		return new SubtourModeConstraint.Factory(config.getConstrainedModes());
+		return new SubtourModeConstraint.Factory(config.getConstrainedModes(), modeRegistry);
 	}
 }
@@ -61,6 +61,7 @@ public final class DiscreteModeChoiceConfigurator {
 		dmcConfig.setTourConstraints(tourConstraints);
 		dmcConfig.setTourEstimator(EstimatorModule.UNIFORM);
 		dmcConfig.setTourFinder(TourFinderModule.PLAN_BASED);
+		dmcConfig.setModeChainGenerator(ModeChainGeneratorModule.SUBTOUR);
 
 		dmcConfig.getVehicleTourConstraintConfig().setRestrictedModes(Arrays.asList(smcConfig.getChainBasedModes()));
 
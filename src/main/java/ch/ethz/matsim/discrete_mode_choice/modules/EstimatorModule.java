@@ -16,11 +16,13 @@ import com.google.inject.Singleton;
 import ch.ethz.matsim.discrete_mode_choice.components.estimators.CumulativeTourEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.estimators.MATSimDayScoringEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.estimators.MATSimTripScoringEstimator;
+import ch.ethz.matsim.discrete_mode_choice.components.estimators.RouteCache;
 import ch.ethz.matsim.discrete_mode_choice.components.estimators.UniformTourEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.estimators.UniformTripEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.NullWaitingTimeEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.PTWaitingTimeEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.estimation.CachedTripEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
@@ -52,6 +54,12 @@ public class EstimatorModule extends AbstractDiscreteModeChoiceExtension {
 		bindTourEstimator(CUMULATIVE).to(CumulativeTourEstimator.class);
 		bindTourEstimator(UNIFORM).to(UniformTourEstimator.class);
 
+		DiscreteModeChoiceConfigGroup dmcConfig = DiscreteModeChoiceConfigGroup.getOrCreate(getConfig());
+
+		if (dmcConfig.getRouteCacheModes().size() > 0) {
+			addControlerListenerBinding().to(RouteCache.class);
+		}
+
 		TransitConfigGroup transitConfigGroup = getConfig().transit();
 
 		if (transitConfigGroup.isUseTransit()) {
@@ -76,11 +84,12 @@ public class EstimatorModule extends AbstractDiscreteModeChoiceExtension {
 
 	@Provides
 	public TripEstimator provideTripEstimator(DiscreteModeChoiceConfigGroup dmcConfig,
-			Map<String, Provider<TripEstimator>> components) {
+			Map<String, Provider<TripEstimator>> components, ModeRegistry modeRegistry) {
 		Provider<TripEstimator> provider = components.get(dmcConfig.getTripEstimator());
 
 		if (provider != null) {
-			return new CachedTripEstimator(provider.get(), dmcConfig.getCachedModes());
+			return new CachedTripEstimator(provider.get(), dmcConfig.getCachedModes(),
+					dmcConfig.getCachedModesTimeTolerance(), dmcConfig.getCachedModesScope(), modeRegistry);
 		} else {
 			throw new IllegalStateException(
 					String.format("There is no TripEstimator component called '%s',", dmcConfig.getTripEstimator()));
@@ -105,27 +114,36 @@ public class EstimatorModule extends AbstractDiscreteModeChoiceExtension {
 		return new NullWaitingTimeEstimator();
 	}
 
+	@Provides
+	@Singleton
+	public RouteCache provideRouteCache(DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new RouteCache(dmcConfig.getRouteCacheModes(), dmcConfig.getRouteCacheSize(),
+				dmcConfig.getRouteCacheTimeBin());
+	}
+
 	@Provides
 	public MATSimTripScoringEstimator provideMATSimTripScoringEstimator(ActivityFacilities facilities,
 			TripRouter tripRouter, PTWaitingTimeEstimator waitingTimeEstimator,
 			ScoringParametersForPerson scoringParametersForPerson, DiscreteModeChoiceConfigGroup dmcConfig,
-			TimeInterpreter.Factory timeInterpreterFactory) {
+			TimeInterpreter.Factory timeInterpreterFactory, RouteCache routeCache) {
 		MATSimTripScoringConfigGroup scoringConfig = dmcConfig.getMATSimTripScoringConfigGroup();
 		return new MATSimTripScoringEstimator(facilities, tripRouter, waitingTimeEstimator, scoringParametersForPerson,
-				timeInterpreterFactory, scoringConfig.getPtLegModes());
+				timeInterpreterFactory, scoringConfig.getPtLegModes(), routeCache);
 	}
 
 	@Provides
 	public MATSimDayScoringEstimator provideMATSimDayScoringEstimator(MATSimTripScoringEstimator tripEstimator,
 			ScoringParametersForPerson scoringParametersForPerson, DiscreteModeChoiceConfigGroup dmcConfig,
-			TimeInterpreter.Factory timeInterpreterFactory) {
-		return new MATSimDayScoringEstimator(new CachedTripEstimator(tripEstimator, dmcConfig.getCachedModes()),
-				scoringParametersForPerson, timeInterpreterFactory);
+			TimeInterpreter.Factory timeInterpreterFactory, ModeRegistry modeRegistry) {
+		TripEstimator cachedTripEstimator = new CachedTripEstimator(tripEstimator, dmcConfig.getCachedModes(),
+				dmcConfig.getCachedModesTimeTolerance(), dmcConfig.getCachedModesScope(), modeRegistry);
+		return new MATSimDayScoringEstimator(cachedTripEstimator, scoringParametersForPerson, timeInterpreterFactory);
 	}
 
 	@Provides
 	public CumulativeTourEstimator provideCumulativeTourEstimator(TripEstimator tripEstimator,
-			TimeInterpreter.Factory timeInterpreterFactory) {
-		return new CumulativeTourEstimator(tripEstimator, timeInterpreterFactory);
+			TimeInterpreter.Factory timeInterpreterFactory, DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new CumulativeTourEstimator(tripEstimator, timeInterpreterFactory,
+				dmcConfig.getMemoizeTourPrefixes(), dmcConfig.getMaximumMemoizedTourPrefixes());
 	}
 }
@@ -11,6 +11,7 @@ import com.google.inject.Singleton;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.ActivityTypeHomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.FirstActivityHomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.ActivityHomeFinderConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
 
@@ -40,9 +41,10 @@ public class HomeFinderModule extends AbstractDiscreteModeChoiceExtension {
 
 	@Provides
 	@Singleton
-	public ActivityTypeHomeFinder provideActivityTypeHomeFinder(DiscreteModeChoiceConfigGroup dmcConfig) {
+	public ActivityTypeHomeFinder provideActivityTypeHomeFinder(DiscreteModeChoiceConfigGroup dmcConfig,
+			ActivityTypeRegistry activityTypeRegistry) {
 		ActivityHomeFinderConfigGroup config = dmcConfig.getActivityHomeFinderConfigGroup();
-		return new ActivityTypeHomeFinder(config.getActivityTypes());
+		return new ActivityTypeHomeFinder(config.getActivityTypes(), activityTypeRegistry);
 	}
 
 	@Provides
@@ -10,6 +10,7 @@ import com.google.inject.Provides;
 import ch.ethz.matsim.discrete_mode_choice.model.mode_availability.CarModeAvailability;
 import ch.ethz.matsim.discrete_mode_choice.model.mode_availability.DefaultModeAvailability;
 import ch.ethz.matsim.discrete_mode_choice.model.mode_availability.ModeAvailability;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.ModeAvailabilityConfigGroup;
 
@@ -32,15 +33,17 @@ public class ModeAvailabilityModule extends AbstractDiscreteModeChoiceExtension
 	}
 
 	@Provides
-	public DefaultModeAvailability provideDefaultModeAvailability(DiscreteModeChoiceConfigGroup dmcConfig) {
+	public DefaultModeAvailability provideDefaultModeAvailability(DiscreteModeChoiceConfigGroup dmcConfig,
+			ModeRegistry modeRegistry) {
 		ModeAvailabilityConfigGroup config = dmcConfig.getDefaultModeAvailabilityConfig();
-		return new DefaultModeAvailability(config.getAvailableModes());
+		return new DefaultModeAvailability(config.getAvailableModes(), modeRegistry);
 	}
 
 	@Provides
-	public CarModeAvailability provideCarModeAvailability(DiscreteModeChoiceConfigGroup dmcConfig) {
+	public CarModeAvailability provideCarModeAvailability(DiscreteModeChoiceConfigGroup dmcConfig,
+			ModeRegistry modeRegistry) {
 		ModeAvailabilityConfigGroup config = dmcConfig.getCarModeAvailabilityConfig();
-		return new CarModeAvailability(config.getAvailableModes());
+		return new CarModeAvailability(config.getAvailableModes(), modeRegistry);
 	}
 
 	@Provides
@@ -0,0 +1,97 @@
+package ch.ethz.matsim.discrete_mode_choice.modules;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.inject.Provider;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.BeamModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.IndexedModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.ModeChainGeneratorFactory;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.PrunedModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.SubtourModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.BeamModeChainGeneratorConfigGroup;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
+
+/**
+ * Internal module that manages all built-in ModeChainGenerator
+ * implementations.
+ * 
+ * @author sebhoerl
+ *
+ */
+public class ModeChainGeneratorModule extends AbstractDiscreteModeChoiceExtension {
+	public static final String DEFAULT = "Default";
+	public static final String PRUNED = "Pruned";
+	public static final String INDEXED = "Indexed";
+	public static final String BEAM = "Beam";
+	public static final String SUBTOUR = "Subtour";
+
+	public static final Collection<String> COMPONENTS = Arrays.asList(DEFAULT, PRUNED, INDEXED, BEAM, SUBTOUR);
+
+	@Override
+	public void installExtension() {
+		bindModeChainGeneratorFactory(DEFAULT).to(DefaultModeChainGenerator.Factory.class);
+		bindModeChainGeneratorFactory(PRUNED).to(PrunedModeChainGenerator.Factory.class);
+		bindModeChainGeneratorFactory(INDEXED).to(IndexedModeChainGenerator.Factory.class);
+		bindModeChainGeneratorFactory(BEAM).to(BeamModeChainGenerator.Factory.class);
+		bindModeChainGeneratorFactory(SUBTOUR).to(SubtourModeChainGenerator.Factory.class);
+
+		DiscreteModeChoiceConfigGroup dmcConfig = DiscreteModeChoiceConfigGroup.getOrCreate(getConfig());
+
+		if (dmcConfig.getModeChainGenerator().equals(BEAM)) {
+			addControlerListenerBinding().to(BeamModeChainGenerator.Factory.class);
+		}
+	}
+
+	@Provides
+	@Singleton
+	public DefaultModeChainGenerator.Factory provideDefaultModeChainGeneratorFactory() {
+		return new DefaultModeChainGenerator.Factory();
+	}
+
+	@Provides
+	@Singleton
+	public PrunedModeChainGenerator.Factory providePrunedModeChainGeneratorFactory() {
+		return new PrunedModeChainGenerator.Factory();
+	}
+
+	@Provides
+	@Singleton
+	public IndexedModeChainGenerator.Factory provideIndexedModeChainGeneratorFactory() {
+		return new IndexedModeChainGenerator.Factory();
+	}
+
+	@Provides
+	@Singleton
+	public BeamModeChainGenerator.Factory provideBeamModeChainGeneratorFactory(
+			DiscreteModeChoiceConfigGroup dmcConfig) {
+		BeamModeChainGeneratorConfigGroup config = dmcConfig.getBeamModeChainGeneratorConfigGroup();
+		return new BeamModeChainGenerator.Factory(config.getBeamWidth());
+	}
+
+	@Provides
+	@Singleton
+	public SubtourModeChainGenerator.Factory provideSubtourModeChainGeneratorFactory(
+			DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new SubtourModeChainGenerator.Factory(dmcConfig.getSubtourConstraintConfig().getConstrainedModes());
+	}
+
+	@Provides
+	@Singleton
+	public ModeChainGeneratorFactory provideModeChainGeneratorFactory(DiscreteModeChoiceConfigGroup dmcConfig,
+			Map<String, Provider<ModeChainGeneratorFactory>> components) {
+		Provider<ModeChainGeneratorFactory> provider = components.get(dmcConfig.getModeChainGenerator());
+
+		if (provider != null) {
+			return provider.get();
+		} else {
+			throw new IllegalStateException(String.format("There is no ModeChainGenerator component called '%s',",
+					dmcConfig.getModeChainGenerator()));
+		}
+	}
+}
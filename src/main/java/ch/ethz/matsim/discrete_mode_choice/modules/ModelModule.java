@@ -2,31 +2,42 @@ package ch.ethz.matsim.discrete_mode_choice.modules;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import org.matsim.core.controler.AbstractModule;
 
 import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 
 import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.TourFinder;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.model.filters.CompositeTourFilter;
 import ch.ethz.matsim.discrete_mode_choice.model.filters.CompositeTripFilter;
 import ch.ethz.matsim.discrete_mode_choice.model.mode_availability.ModeAvailability;
-import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
 import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.ModeChainGeneratorFactory;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.ParallelTourEvaluator;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourBasedModel;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourFilter;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TrellisTourBasedModel;
 import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TripFilter;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.ParallelTripEvaluator;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripBasedModel;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraintFactory;
 import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.utilities.UtilitySelectorFactory;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.LinkAttributeRuleConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.replanning.TripListConverter;
 import ch.ethz.matsim.discrete_mode_choice.replanning.time_interpreter.TimeInterpreter;
 
@@ -47,20 +58,25 @@ public class ModelModule extends AbstractModule {
 		install(new ConstraintModule());
 		install(new FilterModule());
 		install(new HomeFinderModule());
-
-		bind(ModeChainGeneratorFactory.class).to(DefaultModeChainGenerator.Factory.class);
+		install(new ModeChainGeneratorModule());
 	}
 
+	public static final String TOUR_EVALUATION_POOL = "DiscreteModeChoiceTourEvaluation";
+	public static final String TRIP_EVALUATION_POOL = "DiscreteModeChoiceTripEvaluation";
+
 	public enum ModelType {
-		Trip, Tour
+		Trip, Tour, TourTrellis
 	}
 
 	@Provides
 	public DiscreteModeChoiceModel provideDiscreteModeChoiceModel(DiscreteModeChoiceConfigGroup dmcConfig,
-			Provider<TourBasedModel> tourBasedProvider, Provider<TripBasedModel> tripBasedProvider) {
+			Provider<TourBasedModel> tourBasedProvider, Provider<TripBasedModel> tripBasedProvider,
+			Provider<TrellisTourBasedModel> trellisTourBasedProvider) {
 		switch (dmcConfig.getModelType()) {
 		case Tour:
 			return tourBasedProvider.get();
+		case TourTrellis:
+			return trellisTourBasedProvider.get();
 		case Trip:
 			return tripBasedProvider.get();
 		default:
@@ -72,24 +88,97 @@ public class ModelModule extends AbstractModule {
 	public TourBasedModel provideTourBasedModel(ModeAvailability modeAvailability, TourFilter tourFilter,
 			TourEstimator tourEstimator, TourConstraintFactory tourConstraintFactory, TourFinder tourFinder,
 			UtilitySelectorFactory selectorFactory, ModeChainGeneratorFactory modeChainGeneratorFactory,
-			DiscreteModeChoiceConfigGroup dmcConfig, TimeInterpreter.Factory timeInterpreterFactory) {
+			DiscreteModeChoiceConfigGroup dmcConfig, TimeInterpreter.Factory timeInterpreterFactory,
+			Provider<TourEstimator> tourEstimatorProvider,
+			@Named(TOUR_EVALUATION_POOL) Provider<ForkJoinPool> tourEvaluationPoolProvider) {
+		ParallelTourEvaluator parallelEvaluator = null;
+
+		if (dmcConfig.getTourEvaluationThreads() > 1) {
+			parallelEvaluator = new ParallelTourEvaluator(tourEvaluationPoolProvider.get(),
+					dmcConfig.getTourEvaluationThreads(), dmcConfig.getMinimumChainsForParallelEvaluation(),
+					tourEstimatorProvider::get);
+		}
+
 		return new TourBasedModel(tourEstimator, modeAvailability, tourConstraintFactory, tourFinder, tourFilter,
-				selectorFactory, modeChainGeneratorFactory, dmcConfig.getFallbackBehaviour(), timeInterpreterFactory);
+				selectorFactory, modeChainGeneratorFactory, dmcConfig.getFallbackBehaviour(), timeInterpreterFactory,
+				parallelEvaluator);
+	}
+
+	@Provides
+	public TrellisTourBasedModel provideTrellisTourBasedModel(ModeAvailability modeAvailability,
+			TourFilter tourFilter, TripEstimator tripEstimator, TourEstimator tourEstimator, TourFinder tourFinder,
+			HomeFinder homeFinder, DiscreteModeChoiceConfigGroup dmcConfig,
+			TimeInterpreter.Factory timeInterpreterFactory) {
+		if (!dmcConfig.getTourEstimator().equals(EstimatorModule.CUMULATIVE)) {
+			throw new IllegalStateException(String.format("Model type %s needs the %s tour estimator",
+					ModelType.TourTrellis, EstimatorModule.CUMULATIVE));
+		}
+
+		for (String constraint : dmcConfig.getTourConstraints()) {
+			if (!constraint.equals(ConstraintModule.VEHICLE_CONTINUITY)) {
+				throw new IllegalStateException(String.format(
+						"Model type %s only supports the %s tour constraint, but %s is configured",
+						ModelType.TourTrellis, ConstraintModule.VEHICLE_CONTINUITY, constraint));
+			}
+		}
+
+		TrellisTourBasedModel.Selection selection;
+
+		switch (dmcConfig.getSelector()) {
+		case SelectorModule.MAXIMUM:
+			selection = TrellisTourBasedModel.Selection.MAXIMUM;
+			break;
+		case SelectorModule.MULTINOMIAL_LOGIT:
+		case SelectorModule.STREAMING_MULTINOMIAL_LOGIT:
+		case SelectorModule.GUMBEL_MAX:
+			selection = TrellisTourBasedModel.Selection.MULTINOMIAL_LOGIT;
+			break;
+		case SelectorModule.RANDOM:
+			selection = TrellisTourBasedModel.Selection.RANDOM;
+			break;
+		default:
+			throw new IllegalStateException(String.format("Model type %s does not support selector %s",
+					ModelType.TourTrellis, dmcConfig.getSelector()));
+		}
+
+		Collection<String> restrictedModes = dmcConfig.getTourConstraints()
+				.contains(ConstraintModule.VEHICLE_CONTINUITY)
+						? dmcConfig.getVehicleTourConstraintConfig().getRestrictedModes()
+						: Collections.emptySet();
+
+		return new TrellisTourBasedModel(tripEstimator, tourEstimator, modeAvailability, tourFinder, tourFilter,
+				homeFinder, restrictedModes, selection, dmcConfig.getFallbackBehaviour(), timeInterpreterFactory);
+	}
+
+	@Provides
+	@Singleton
+	@Named(TOUR_EVALUATION_POOL)
+	public ForkJoinPool provideTourEvaluationPool(DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new ForkJoinPool(Math.max(1, dmcConfig.getTourEvaluationThreads()));
 	}
 
 	@Provides
 	public TripBasedModel provideTripBasedModel(TripEstimator estimator, TripFilter tripFilter,
 			ModeAvailability modeAvailability, TripConstraintFactory constraintFactory,
 			UtilitySelectorFactory selectorFactory, DiscreteModeChoiceConfigGroup dmcConfig,
-			TimeInterpreter.Factory timeInterpreterFactory) {
+			TimeInterpreter.Factory timeInterpreterFactory, Provider<TripEstimator> tripEstimatorProvider,
+			@Named(TRIP_EVALUATION_POOL) Provider<ForkJoinPool> tripEvaluationPoolProvider) {
+		ParallelTripEvaluator parallelEvaluator = null;
+
+		if (dmcConfig.getTripEvaluationThreads() > 1) {
+			parallelEvaluator = new ParallelTripEvaluator(tripEvaluationPoolProvider.get(),
+					tripEstimatorProvider::get);
+		}
+
 		return new TripBasedModel(estimator, tripFilter, modeAvailability, constraintFactory, selectorFactory,
-				dmcConfig.getFallbackBehaviour(), timeInterpreterFactory);
+				dmcConfig.getFallbackBehaviour(), timeInterpreterFactory, parallelEvaluator);
 	}
 
 	@Provides
 	@Singleton
-	public DefaultModeChainGenerator.Factory provideDefaultModeChainGeneratorFactory() {
-		return new DefaultModeChainGenerator.Factory();
+	@Named(TRIP_EVALUATION_POOL)
+	public ForkJoinPool provideTripEvaluationPool(DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new ForkJoinPool(Math.max(1, dmcConfig.getTripEvaluationThreads()));
 	}
 
 	@Provides
@@ -127,7 +216,41 @@ public class ModelModule extends AbstractModule {
 	}
 
 	@Provides
-	public TripListConverter provideTripListConverter() {
-		return new TripListConverter();
+	@Singleton
+	public ModeRegistry provideModeRegistry(DiscreteModeChoiceConfigGroup dmcConfig) {
+		// Sorted, so that the identifiers do not depend on the order in the config
+		Set<String> modes = new TreeSet<>();
+
+		modes.addAll(dmcConfig.getDefaultModeAvailabilityConfig().getAvailableModes());
+		modes.addAll(dmcConfig.getCarModeAvailabilityConfig().getAvailableModes());
+		modes.addAll(dmcConfig.getVehicleTourConstraintConfig().getRestrictedModes());
+		modes.addAll(dmcConfig.getVehicleTripConstraintConfig().getRestrictedModes());
+		modes.addAll(dmcConfig.getSubtourConstraintConfig().getConstrainedModes());
+		modes.addAll(dmcConfig.getShapeFileConstraintConfigGroup().getConstrainedModes());
+		modes.addAll(dmcConfig.getLinkAttributeConstraintConfigGroup().getConstrainedModes());
+		modes.addAll(dmcConfig.getCachedModes());
+
+		for (LinkAttributeRuleConfigGroup ruleConfig : dmcConfig.getLinkAttributeConstraintConfigGroup().getRules()) {
+			modes.addAll(ruleConfig.getConstrainedModes());
+		}
+
+		return new ModeRegistry(modes);
+	}
+
+	@Provides
+	@Singleton
+	public ActivityTypeRegistry provideActivityTypeRegistry(DiscreteModeChoiceConfigGroup dmcConfig) {
+		// Sorted, so that the identifiers do not depend on the order in the config
+		Set<String> activityTypes = new TreeSet<>();
+
+		activityTypes.addAll(dmcConfig.getActivityTourFinderConfigGroup().getActivityTypes());
+		activityTypes.addAll(dmcConfig.getActivityHomeFinderConfigGroup().getActivityTypes());
+
+		return new ActivityTypeRegistry(activityTypes);
+	}
+
+	@Provides
+	public TripListConverter provideTripListConverter(ActivityTypeRegistry activityTypeRegistry) {
+		return new TripListConverter(activityTypeRegistry);
 	}
 }
@@ -8,9 +8,11 @@ import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 
+import ch.ethz.matsim.discrete_mode_choice.model.utilities.GumbelMaxSelector;
 import ch.ethz.matsim.discrete_mode_choice.model.utilities.MaximumSelector;
 import ch.ethz.matsim.discrete_mode_choice.model.utilities.MultinomialLogitSelector;
 import ch.ethz.matsim.discrete_mode_choice.model.utilities.RandomSelector;
+import ch.ethz.matsim.discrete_mode_choice.model.utilities.StreamingMultinomialLogitSelector;
 import ch.ethz.matsim.discrete_mode_choice.model.utilities.UtilitySelectorFactory;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.MultinomialLogitSelectorConfigGroup;
@@ -25,14 +27,19 @@ public class SelectorModule extends AbstractDiscreteModeChoiceExtension {
 	public final static String MAXIMUM = "Maximum";
 	public final static String MULTINOMIAL_LOGIT = "MultinomialLogit";
 	public final static String RANDOM = "Random";
+	public final static String STREAMING_MULTINOMIAL_LOGIT = "StreamingMultinomialLogit";
+	public final static String GUMBEL_MAX = "GumbelMax";
 
-	public final static Collection<String> COMPONENTS = Arrays.asList(MAXIMUM, MULTINOMIAL_LOGIT, RANDOM);
+	public final static Collection<String> COMPONENTS = Arrays.asList(MAXIMUM, MULTINOMIAL_LOGIT, RANDOM,
+			STREAMING_MULTINOMIAL_LOGIT, GUMBEL_MAX);
 
 	@Override
 	public void installExtension() {
 		bindSelectorFactory(MAXIMUM).to(MaximumSelector.Factory.class);
 		bindSelectorFactory(MULTINOMIAL_LOGIT).to(MultinomialLogitSelector.Factory.class);
 		bindSelectorFactory(RANDOM).to(RandomSelector.Factory.class);
+		bindSelectorFactory(STREAMING_MULTINOMIAL_LOGIT).to(StreamingMultinomialLogitSelector.Factory.class);
+		bindSelectorFactory(GUMBEL_MAX).to(GumbelMaxSelector.Factory.class);
 	}
 
 	@Provides
@@ -63,6 +70,23 @@ public class SelectorModule extends AbstractDiscreteModeChoiceExtension {
 				config.getConsiderMinimumUtility());
 	}
 
+	@Provides
+	@Singleton
+	public StreamingMultinomialLogitSelector.Factory provideStreamingMultinomialLogitSelector(
+			DiscreteModeChoiceConfigGroup dmcConfig) {
+		MultinomialLogitSelectorConfigGroup config = dmcConfig.getMultinomialLogitSelectorConfig();
+		return new StreamingMultinomialLogitSelector.Factory(config.getMinimumUtility(), config.getMaximumUtility(),
+				config.getConsiderMinimumUtility());
+	}
+
+	@Provides
+	@Singleton
+	public GumbelMaxSelector.Factory provideGumbelMaxSelector(DiscreteModeChoiceConfigGroup dmcConfig) {
+		MultinomialLogitSelectorConfigGroup config = dmcConfig.getMultinomialLogitSelectorConfig();
+		return new GumbelMaxSelector.Factory(config.getMinimumUtility(), config.getMaximumUtility(),
+				config.getConsiderMinimumUtility());
+	}
+
 	@Provides
 	@Singleton
 	public RandomSelector.Factory provideRandomTripSelector() {
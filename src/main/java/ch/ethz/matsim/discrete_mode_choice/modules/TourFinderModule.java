@@ -13,6 +13,7 @@ import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.HomeTourFinder
 import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.PlanTourFinder;
 import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.TourFinder;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.HomeFinder;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.ActivityTourFinderConfigGroup;
 import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
 
@@ -44,9 +45,10 @@ public class TourFinderModule extends AbstractDiscreteModeChoiceExtension {
 
 	@Provides
 	@Singleton
-	public ActivityTourFinder provideActivityBasedTourFinder(DiscreteModeChoiceConfigGroup dmcConfig) {
+	public ActivityTourFinder provideActivityBasedTourFinder(DiscreteModeChoiceConfigGroup dmcConfig,
+			ActivityTypeRegistry activityTypeRegistry) {
 		ActivityTourFinderConfigGroup config = dmcConfig.getActivityTourFinderConfigGroup();
-		return new ActivityTourFinder(config.getActivityTypes());
+		return new ActivityTourFinder(config.getActivityTypes(), activityTypeRegistry);
 	}
 
 	@Provides
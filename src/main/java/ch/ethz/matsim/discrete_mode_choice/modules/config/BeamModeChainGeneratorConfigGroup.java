@@ -0,0 +1,44 @@
+package ch.ethz.matsim.discrete_mode_choice.modules.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Config group for the BeamModeChainGenerator.
+ * 
+ * @author sebhoerl
+ *
+ */
+public class BeamModeChainGeneratorConfigGroup extends ComponentConfigGroup {
+	private int beamWidth = 100;
+
+	public static final String BEAM_WIDTH = "beamWidth";
+
+	public BeamModeChainGeneratorConfigGroup(String componentType, String componentName) {
+		super(componentType, componentName);
+	}
+
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> comments = new HashMap<>();
+
+		comments.put(BEAM_WIDTH,
+				"Defines how many partial mode chains are kept after each trip of a tour. This is also the maximum number of alternatives per tour.");
+
+		return comments;
+	}
+
+	@StringSetter(BEAM_WIDTH)
+	public void setBeamWidth(int beamWidth) {
+		if (beamWidth < 1) {
+			throw new IllegalArgumentException("The beam width must be at least one");
+		}
+
+		this.beamWidth = beamWidth;
+	}
+
+	@StringGetter(BEAM_WIDTH)
+	public int getBeamWidth() {
+		return beamWidth;
+	}
+}
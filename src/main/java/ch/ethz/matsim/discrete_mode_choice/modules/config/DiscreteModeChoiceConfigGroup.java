@@ -13,18 +13,22 @@ import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ReflectiveConfigGroup;
 import org.matsim.core.utils.collections.Tuple;
 
+import ch.ethz.matsim.discrete_mode_choice.components.estimators.CumulativeTourEstimator;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel;
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel.FallbackBehaviour;
+import ch.ethz.matsim.discrete_mode_choice.model.estimation.CachedTripEstimator;
 import ch.ethz.matsim.discrete_mode_choice.modules.ConstraintModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.DiscreteModeChoiceModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.EstimatorModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.FilterModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.HomeFinderModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.ModeAvailabilityModule;
+import ch.ethz.matsim.discrete_mode_choice.modules.ModeChainGeneratorModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.ModelModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.ModelModule.ModelType;
 import ch.ethz.matsim.discrete_mode_choice.modules.SelectorModule;
 import ch.ethz.matsim.discrete_mode_choice.modules.TourFinderModule;
+import ch.ethz.matsim.discrete_mode_choice.modules.utils.ScheduleWaitingTimeEstimatorModule.WaitingTimeEstimatorType;
 
 /**
  * Main config group for the DiscreteModeChoice extension.
@@ -36,6 +40,13 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 	private boolean enforceSinglePlan = false;
 	private boolean accumulateEstimationDelays = true;
 
+	private boolean costOrderedReplanning = false;
+
+	private int tourEvaluationThreads = 1;
+	private int minimumChainsForParallelEvaluation = 64;
+
+	private int tripEvaluationThreads = 1;
+
 	private ModelModule.ModelType modelType = ModelModule.ModelType.Tour;
 	private DiscreteModeChoiceModel.FallbackBehaviour fallbackBehaviour = DiscreteModeChoiceModel.FallbackBehaviour.EXCEPTION;
 
@@ -43,6 +54,7 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 	private String tourFinder = TourFinderModule.ACTIVITY_BASED;
 	private String homeFinder = HomeFinderModule.ACTIVITY_BASED;
 	private String selector = SelectorModule.RANDOM;
+	private String modeChainGenerator = ModeChainGeneratorModule.DEFAULT;
 
 	private Collection<String> tourConstraints = new HashSet<>(Arrays.asList(ConstraintModule.VEHICLE_CONTINUITY));
 	private Collection<String> tripConstraints = new HashSet<>(Arrays.asList(ConstraintModule.VEHICLE_CONTINUITY));
@@ -54,6 +66,20 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 	private Collection<String> tripFilters = new HashSet<>();
 
 	private Collection<String> cachedModes = new HashSet<>();
+	private double cachedModesTimeTolerance = 0.0;
+	private CachedTripEstimator.Scope cachedModesScope = CachedTripEstimator.Scope.AGENT;
+
+	private boolean memoizeTourPrefixes = false;
+	private int maximumMemoizedTourPrefixes = CumulativeTourEstimator.DEFAULT_MAXIMUM_NUMBER_OF_MEMO_NODES;
+
+	private Collection<String> routeCacheModes = new HashSet<>();
+	private int routeCacheSize = 100000;
+	private double routeCacheTimeBin = 900.0;
+
+	private String scheduleSnapshotPath = "";
+	private WaitingTimeEstimatorType waitingTimeEstimator = WaitingTimeEstimatorType.Schedule;
+	private double waitingTimeHeadwayBin = 3600.0;
+	private double waitingTimeMaximumHeadway = 600.0;
 
 	public static final String GROUP_NAME = "DiscreteModeChoice";
 
@@ -62,12 +88,20 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 	public static final String FALLBACK_BEHAVIOUR = "fallbackBehaviour";
 	public static final String ACCUMULATE_ESTIMATION_DELAYS = "accumulateEstimationDelays";
 
+	public static final String COST_ORDERED_REPLANNING = "costOrderedReplanning";
+
+	public static final String TOUR_EVALUATION_THREADS = "tourEvaluationThreads";
+	public static final String MINIMUM_CHAINS_FOR_PARALLEL_EVALUATION = "minimumChainsForParallelEvaluation";
+
+	public static final String TRIP_EVALUATION_THREADS = "tripEvaluationThreads";
+
 	public static final String MODEL_TYPE = "modelType";
 
 	public static final String MODE_AVAILABILITY = "modeAvailability";
 	public static final String TOUR_FINDER = "tourFinder";
 	public static final String HOME_FINDER = "homeFinder";
 	public static final String SELECTOR = "selector";
+	public static final String MODE_CHAIN_GENERATOR = "modeChainGenerator";
 
 	public static final String TOUR_CONSTRAINTS = "tourConstraints";
 	public static final String TRIP_CONSTRAINTS = "tripConstraints";
@@ -85,6 +119,20 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 	public static final String TRIP_FILTER = "tripFilter";
 
 	public static final String CACHED_MODES = "cachedModes";
+	public static final String CACHED_MODES_TIME_TOLERANCE = "cachedModesTimeTolerance";
+	public static final String CACHED_MODES_SCOPE = "cachedModesScope";
+
+	public static final String MEMOIZE_TOUR_PREFIXES = "memoizeTourPrefixes";
+	public static final String MAXIMUM_MEMOIZED_TOUR_PREFIXES = "maximumMemoizedTourPrefixes";
+
+	public static final String ROUTE_CACHE_MODES = "routeCacheModes";
+	public static final String ROUTE_CACHE_SIZE = "routeCacheSize";
+	public static final String ROUTE_CACHE_TIME_BIN = "routeCacheTimeBin";
+
+	public static final String SCHEDULE_SNAPSHOT_PATH = "scheduleSnapshotPath";
+	public static final String WAITING_TIME_ESTIMATOR = "waitingTimeEstimator";
+	public static final String WAITING_TIME_HEADWAY_BIN = "waitingTimeHeadwayBin";
+	public static final String WAITING_TIME_MAXIMUM_HEADWAY = "waitingTimeMaximumHeadway";
 
 	public DiscreteModeChoiceConfigGroup() {
 		super(GROUP_NAME);
@@ -120,6 +168,46 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		return accumulateEstimationDelays;
 	}
 
+	@StringSetter(COST_ORDERED_REPLANNING)
+	public void setCostOrderedReplanning(boolean costOrderedReplanning) {
+		this.costOrderedReplanning = costOrderedReplanning;
+	}
+
+	@StringGetter(COST_ORDERED_REPLANNING)
+	public boolean getCostOrderedReplanning() {
+		return costOrderedReplanning;
+	}
+
+	@StringSetter(TOUR_EVALUATION_THREADS)
+	public void setTourEvaluationThreads(int tourEvaluationThreads) {
+		this.tourEvaluationThreads = tourEvaluationThreads;
+	}
+
+	@StringGetter(TOUR_EVALUATION_THREADS)
+	public int getTourEvaluationThreads() {
+		return tourEvaluationThreads;
+	}
+
+	@StringSetter(MINIMUM_CHAINS_FOR_PARALLEL_EVALUATION)
+	public void setMinimumChainsForParallelEvaluation(int minimumChainsForParallelEvaluation) {
+		this.minimumChainsForParallelEvaluation = minimumChainsForParallelEvaluation;
+	}
+
+	@StringGetter(MINIMUM_CHAINS_FOR_PARALLEL_EVALUATION)
+	public int getMinimumChainsForParallelEvaluation() {
+		return minimumChainsForParallelEvaluation;
+	}
+
+	@StringSetter(TRIP_EVALUATION_THREADS)
+	public void setTripEvaluationThreads(int tripEvaluationThreads) {
+		this.tripEvaluationThreads = tripEvaluationThreads;
+	}
+
+	@StringGetter(TRIP_EVALUATION_THREADS)
+	public int getTripEvaluationThreads() {
+		return tripEvaluationThreads;
+	}
+
 	@StringSetter(FALLBACK_BEHAVIOUR)
 	public void setFallbackBehaviour(DiscreteModeChoiceModel.FallbackBehaviour fallbackBehaviour) {
 		this.fallbackBehaviour = fallbackBehaviour;
@@ -180,6 +268,16 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		return selector;
 	}
 
+	@StringSetter(MODE_CHAIN_GENERATOR)
+	public void setModeChainGenerator(String modeChainGenerator) {
+		this.modeChainGenerator = modeChainGenerator;
+	}
+
+	@StringGetter(MODE_CHAIN_GENERATOR)
+	public String getModeChainGenerator() {
+		return modeChainGenerator;
+	}
+
 	public void setTourFilters(Collection<String> tourFilters) {
 		this.tourFilters = new HashSet<>(tourFilters);
 	}
@@ -292,6 +390,129 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		return String.join(", ", cachedModes);
 	}
 
+	@StringSetter(CACHED_MODES_TIME_TOLERANCE)
+	public void setCachedModesTimeTolerance(double cachedModesTimeTolerance) {
+		this.cachedModesTimeTolerance = cachedModesTimeTolerance;
+	}
+
+	@StringGetter(CACHED_MODES_TIME_TOLERANCE)
+	public double getCachedModesTimeTolerance() {
+		return cachedModesTimeTolerance;
+	}
+
+	@StringSetter(CACHED_MODES_SCOPE)
+	public void setCachedModesScope(CachedTripEstimator.Scope cachedModesScope) {
+		this.cachedModesScope = cachedModesScope;
+	}
+
+	@StringGetter(CACHED_MODES_SCOPE)
+	public CachedTripEstimator.Scope getCachedModesScope() {
+		return cachedModesScope;
+	}
+
+	@StringSetter(MEMOIZE_TOUR_PREFIXES)
+	public void setMemoizeTourPrefixes(boolean memoizeTourPrefixes) {
+		this.memoizeTourPrefixes = memoizeTourPrefixes;
+	}
+
+	@StringGetter(MEMOIZE_TOUR_PREFIXES)
+	public boolean getMemoizeTourPrefixes() {
+		return memoizeTourPrefixes;
+	}
+
+	@StringSetter(MAXIMUM_MEMOIZED_TOUR_PREFIXES)
+	public void setMaximumMemoizedTourPrefixes(int maximumMemoizedTourPrefixes) {
+		this.maximumMemoizedTourPrefixes = maximumMemoizedTourPrefixes;
+	}
+
+	@StringGetter(MAXIMUM_MEMOIZED_TOUR_PREFIXES)
+	public int getMaximumMemoizedTourPrefixes() {
+		return maximumMemoizedTourPrefixes;
+	}
+
+	public void setRouteCacheModes(Collection<String> routeCacheModes) {
+		this.routeCacheModes = new HashSet<>(routeCacheModes);
+	}
+
+	public Collection<String> getRouteCacheModes() {
+		return routeCacheModes;
+	}
+
+	@StringSetter(ROUTE_CACHE_MODES)
+	public void setRouteCacheModesAsString(String routeCacheModes) {
+		this.routeCacheModes = Arrays.asList(routeCacheModes.split(",")).stream().map(String::trim)
+				.collect(Collectors.toSet());
+	}
+
+	@StringGetter(ROUTE_CACHE_MODES)
+	public String getRouteCacheModesAsString() {
+		return String.join(", ", routeCacheModes);
+	}
+
+	@StringSetter(ROUTE_CACHE_SIZE)
+	public void setRouteCacheSize(int routeCacheSize) {
+		this.routeCacheSize = routeCacheSize;
+	}
+
+	@StringGetter(ROUTE_CACHE_SIZE)
+	public int getRouteCacheSize() {
+		return routeCacheSize;
+	}
+
+	@StringSetter(ROUTE_CACHE_TIME_BIN)
+	public void setRouteCacheTimeBin(double routeCacheTimeBin) {
+		this.routeCacheTimeBin = routeCacheTimeBin;
+	}
+
+	@StringGetter(ROUTE_CACHE_TIME_BIN)
+	public double getRouteCacheTimeBin() {
+		return routeCacheTimeBin;
+	}
+
+	@StringSetter(SCHEDULE_SNAPSHOT_PATH)
+	public void setScheduleSnapshotPath(String scheduleSnapshotPath) {
+		this.scheduleSnapshotPath = scheduleSnapshotPath;
+	}
+
+	@StringGetter(SCHEDULE_SNAPSHOT_PATH)
+	public String getScheduleSnapshotPath() {
+		return scheduleSnapshotPath;
+	}
+
+	@StringSetter(WAITING_TIME_ESTIMATOR)
+	public void setWaitingTimeEstimator(WaitingTimeEstimatorType waitingTimeEstimator) {
+		this.waitingTimeEstimator = waitingTimeEstimator;
+	}
+
+	@StringGetter(WAITING_TIME_ESTIMATOR)
+	public WaitingTimeEstimatorType getWaitingTimeEstimator() {
+		return waitingTimeEstimator;
+	}
+
+	@StringSetter(WAITING_TIME_HEADWAY_BIN)
+	public void setWaitingTimeHeadwayBin(double waitingTimeHeadwayBin) {
+		if (!(waitingTimeHeadwayBin > 0.0)) {
+			throw new IllegalArgumentException("The headway bin size must be positive");
+		}
+
+		this.waitingTimeHeadwayBin = waitingTimeHeadwayBin;
+	}
+
+	@StringGetter(WAITING_TIME_HEADWAY_BIN)
+	public double getWaitingTimeHeadwayBin() {
+		return waitingTimeHeadwayBin;
+	}
+
+	@StringSetter(WAITING_TIME_MAXIMUM_HEADWAY)
+	public void setWaitingTimeMaximumHeadway(double waitingTimeMaximumHeadway) {
+		this.waitingTimeMaximumHeadway = waitingTimeMaximumHeadway;
+	}
+
+	@StringGetter(WAITING_TIME_MAXIMUM_HEADWAY)
+	public double getWaitingTimeMaximumHeadway() {
+		return waitingTimeMaximumHeadway;
+	}
+
 	// --- Component configuration ---
 
 	private final Map<Tuple<String, String>, ConfigGroup> componentRegistry = createComponentRegistry(
@@ -331,6 +552,8 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 				MATSimTripScoringConfigGroup::new);
 		registry.put(new Tuple<>(TOUR_FILTER, FilterModule.TOUR_LENGTH), //
 				TourLengthFilterConfigGroup::new);
+		registry.put(new Tuple<>(MODE_CHAIN_GENERATOR, ModeChainGeneratorModule.BEAM), //
+				BeamModeChainGeneratorConfigGroup::new);
 
 		return registry;
 	}
@@ -434,6 +657,11 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		return (TourLengthFilterConfigGroup) getComponentConfig(TOUR_FILTER, FilterModule.TOUR_LENGTH);
 	}
 
+	public BeamModeChainGeneratorConfigGroup getBeamModeChainGeneratorConfigGroup() {
+		return (BeamModeChainGeneratorConfigGroup) getComponentConfig(MODE_CHAIN_GENERATOR,
+				ModeChainGeneratorModule.BEAM);
+	}
+
 	@Override
 	public Map<String, String> getComments() {
 		Map<String, String> comments = new HashMap<>();
@@ -447,6 +675,16 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 		comments.put(ENFORCE_SINGLE_PLAN,
 				"Defines whether to run a runtime check that verifies that everything is set up correctl for a 'mode-choice-in-the-loop' setup.");
 
+		comments.put(COST_ORDERED_REPLANNING,
+				"Defines whether plans should be replanned from the most to the least expensive one (estimated by the number of plan elements) instead of being distributed evenly to the replanning threads. Every plan then uses its own random stream derived from the global random seed.");
+		comments.put(TOUR_EVALUATION_THREADS,
+				"Defines how many threads are used to estimate the mode chains of a single tour in the tour-based model. With a value of 1, all chains are estimated by the replanning thread itself. Results are reproducible for a fixed number of threads.");
+		comments.put(MINIMUM_CHAINS_FOR_PARALLEL_EVALUATION,
+				"Defines how many feasible mode chains a tour must have before they are estimated in parallel (see "
+						+ TOUR_EVALUATION_THREADS + ").");
+		comments.put(TRIP_EVALUATION_THREADS,
+				"Defines how many threads are used to estimate (and route) the feasible modes of a single trip in the trip-based model. With a value of 1, all modes are estimated by the replanning thread itself. Every thread uses its own estimator and router.");
+
 		options = Arrays.asList(FallbackBehaviour.values()).stream().map(String::valueOf)
 				.collect(Collectors.joining(", "));
 		comments.put(FALLBACK_BEHAVIOUR,
@@ -460,6 +698,9 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 				+ String.join(", ", HomeFinderModule.COMPONENTS));
 		comments.put(SELECTOR, "Defines which Selector component to use. Built-in choices: "
 				+ String.join(", ", SelectorModule.COMPONENTS));
+		comments.put(MODE_CHAIN_GENERATOR,
+				"Defines how mode chains are generated for the tour-based model. 'Pruned' skips all chains whose first trips are already rejected by the tour constraints. 'Beam' only keeps the best partial chains after each trip (approximation for long tours). 'Subtour' only generates chains that fulfill the SubtourMode constraint (using its constrainedModes). Built-in choices: "
+						+ String.join(", ", ModeChainGeneratorModule.COMPONENTS));
 		comments.put(TOUR_CONSTRAINTS,
 				"Defines a number of TourConstraint components that should be activated. Built-in choices: "
 						+ String.join(", ", ConstraintModule.TOUR_COMPONENTS));
@@ -478,6 +719,37 @@ public class DiscreteModeChoiceConfigGroup extends ReflectiveConfigGroup {
 						+ String.join(", ", FilterModule.TRIP_COMPONENTS));
 		comments.put(CACHED_MODES,
 				"Trips tested with the modes listed here will be cached for each combination of trip and agent during one replanning pass.");
+		comments.put(CACHED_MODES_TIME_TOLERANCE,
+				"Estimates of cached trips are reused if the departure times fall into the same bucket of this size [s]. With 0, the departure times need to match exactly, with Infinity they are ignored.");
+
+		options = Arrays.asList(CachedTripEstimator.Scope.values()).stream().map(String::valueOf)
+				.collect(Collectors.joining(", "));
+		comments.put(CACHED_MODES_SCOPE,
+				"Defines whether cached trip estimates are kept for all tours of an agent (AGENT) or dropped when the next tour is estimated (TOUR): "
+						+ options);
+		comments.put(MEMOIZE_TOUR_PREFIXES,
+				"Defines whether the Cumulative tour estimator reuses the trip estimates of chains that start with the same modes while the chains of one tour are estimated.");
+		comments.put(MAXIMUM_MEMOIZED_TOUR_PREFIXES,
+				"Maximum number of prefixes that are memoized per tour and replanning thread (see " + MEMOIZE_TOUR_PREFIXES
+						+ "). Every prefix takes a few hundred bytes plus the size of the trip candidate. Longer prefixes are estimated without memoization.");
+		comments.put(ROUTE_CACHE_MODES,
+				"Routes of the modes listed here are shared between all agents that travel between the same locations in the same time bin during one iteration. Only use this for modes whose routes do not depend on the person.");
+		comments.put(ROUTE_CACHE_SIZE, "Maximum number of routes that are kept in the shared route cache (see "
+				+ ROUTE_CACHE_MODES + ").");
+		comments.put(ROUTE_CACHE_TIME_BIN, "Size of the departure time bins of the shared route cache [s] (see "
+				+ ROUTE_CACHE_MODES + ").");
+		comments.put(SCHEDULE_SNAPSHOT_PATH,
+				"If set, the compact copy of the transit schedule that is used to estimate waiting times is written to this file and memory-mapped from there in later runs (as long as it matches the schedule). If empty, the copy is kept on the heap.");
+
+		options = Arrays.asList(WaitingTimeEstimatorType.values()).stream().map(String::valueOf)
+				.collect(Collectors.joining(", "));
+		comments.put(WAITING_TIME_ESTIMATOR,
+				"Defines how public transport waiting times are estimated if transit is simulated. 'Schedule' searches the next departure, 'Headway' returns half the mean headway of the route at the stop for frequent services and only searches the next departure otherwise: "
+						+ options);
+		comments.put(WAITING_TIME_HEADWAY_BIN,
+				"Size of the time bins for which the mean headways are calculated by the Headway waiting time estimator [s]. Must be positive. Small bins increase the memory consumption, since one value is stored per bin of the service span of every route and stop.");
+		comments.put(WAITING_TIME_MAXIMUM_HEADWAY,
+				"The Headway waiting time estimator only uses the mean headway if it is not larger than this value [s]. Otherwise, the next departure is searched.");
 
 		return comments;
 	}
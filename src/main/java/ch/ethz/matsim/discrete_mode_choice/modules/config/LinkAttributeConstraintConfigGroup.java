@@ -4,13 +4,17 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.matsim.core.config.ConfigGroup;
+
 import ch.ethz.matsim.discrete_mode_choice.components.constraints.LinkAttributeConstraint.Requirement;
 
 /**
- * Config group for the LinkAttributeConstraint.
+ * Config group for the LinkAttributeConstraint. Additional rules can be added
+ * as parameter sets of type "rule".
  * 
  * @author sebhoerl
  *
@@ -45,6 +49,20 @@ public class LinkAttributeConstraintConfigGroup extends ComponentConfigGroup {
 		return comments;
 	}
 
+	@Override
+	public ConfigGroup createParameterSet(String type) {
+		if (type.equals(LinkAttributeRuleConfigGroup.SET_NAME)) {
+			return new LinkAttributeRuleConfigGroup();
+		}
+
+		return super.createParameterSet(type);
+	}
+
+	public List<LinkAttributeRuleConfigGroup> getRules() {
+		return getParameterSets(LinkAttributeRuleConfigGroup.SET_NAME).stream()
+				.map(LinkAttributeRuleConfigGroup.class::cast).collect(Collectors.toList());
+	}
+
 	@StringSetter(REQUIREMENT)
 	public void setRequirement(Requirement requirement) {
 		this.requirement = requirement;
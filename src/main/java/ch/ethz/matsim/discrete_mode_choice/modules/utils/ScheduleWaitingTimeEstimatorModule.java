@@ -1,31 +1,78 @@
 package ch.ethz.matsim.discrete_mode_choice.modules.utils;
 
+import java.io.File;
+
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 
+import ch.ethz.matsim.discrete_mode_choice.components.utils.HeadwayWaitingTimeEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.PTWaitingTimeEstimator;
 import ch.ethz.matsim.discrete_mode_choice.components.utils.ScheduleWaitingTimeEstimator;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.TransitScheduleSnapshot;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
 
 /**
  * Module that is added if a TransitSchedule is available. It binds a
  * PTWaitingTimeEstimator that is able to estimate a waiting time from the
- * schedule.
+ * schedule. Depending on the configuration, the next departure is searched or
+ * the mean headway is used.
  * 
  * @author sebhoerl
  *
  */
 public class ScheduleWaitingTimeEstimatorModule extends AbstractModule {
+	public enum WaitingTimeEstimatorType {
+		Schedule, Headway
+	}
+
 	@Override
 	protected void configure() {
-		bind(PTWaitingTimeEstimator.class).to(ScheduleWaitingTimeEstimator.class);
 	}
 
 	@Provides
 	@Singleton
-	public ScheduleWaitingTimeEstimator provideScheduleWaitingTimeEstimator(TransitSchedule transitSchedule) {
-		return new ScheduleWaitingTimeEstimator(transitSchedule);
+	public PTWaitingTimeEstimator providePTWaitingTimeEstimator(DiscreteModeChoiceConfigGroup dmcConfig,
+			Provider<ScheduleWaitingTimeEstimator> scheduleProvider,
+			Provider<HeadwayWaitingTimeEstimator> headwayProvider) {
+		switch (dmcConfig.getWaitingTimeEstimator()) {
+		case Schedule:
+			return scheduleProvider.get();
+		case Headway:
+			return headwayProvider.get();
+		default:
+			throw new IllegalStateException(
+					String.format("Unknown waiting time estimator: %s", dmcConfig.getWaitingTimeEstimator()));
+		}
+	}
+
+	@Provides
+	@Singleton
+	public TransitScheduleSnapshot provideTransitScheduleSnapshot(TransitSchedule transitSchedule,
+			DiscreteModeChoiceConfigGroup dmcConfig) {
+		String snapshotPath = dmcConfig.getScheduleSnapshotPath();
+
+		if (snapshotPath == null || snapshotPath.isEmpty()) {
+			return TransitScheduleSnapshot.create(transitSchedule);
+		}
+
+		return TransitScheduleSnapshot.createOrLoad(transitSchedule, new File(snapshotPath));
+	}
+
+	@Provides
+	@Singleton
+	public ScheduleWaitingTimeEstimator provideScheduleWaitingTimeEstimator(TransitScheduleSnapshot snapshot) {
+		return new ScheduleWaitingTimeEstimator(snapshot);
+	}
+
+	@Provides
+	@Singleton
+	public HeadwayWaitingTimeEstimator provideHeadwayWaitingTimeEstimator(TransitScheduleSnapshot snapshot,
+			DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new HeadwayWaitingTimeEstimator(snapshot, dmcConfig.getWaitingTimeHeadwayBin(),
+				dmcConfig.getWaitingTimeMaximumHeadway());
 	}
 }
@@ -0,0 +1,159 @@
+package ch.ethz.matsim.discrete_mode_choice.replanning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.replanning.PlanStrategyModule;
+import org.matsim.core.replanning.ReplanningContext;
+
+import com.google.inject.Provider;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel;
+import ch.ethz.matsim.discrete_mode_choice.model.utilities.RandomUtils;
+
+/**
+ * This replanning module is an alternative to the
+ * DiscreteModeChoiceReplanningModule. The standard MATSim module distributes
+ * plans to threads in a round-robin fashion, no matter how expensive they are.
+ * Hence, one thread may end up with a couple of very long plans while the
+ * others are already finished.
+ *
+ * Here, all plans are collected first and the cost of each plan is estimated by
+ * the number of its plan elements. This proxy is cheap enough to be evaluated
+ * for the whole population before the parallel work starts. The plans are then
+ * processed from the most to the least expensive one. Each thread takes the next
+ * unprocessed plan as soon as it is done with the previous one, so expensive
+ * plans are spread over all threads and the cheap ones fill the gaps in the
+ * end.
+ *
+ * Since the order in which plans are processed by a thread is not fixed, every
+ * plan gets its own random stream, which is seeded from the global random seed,
+ * the iteration and the person ID. Hence, results are reproducible and do not
+ * depend on the number of threads.
+ *
+ * @author sebhoerl
+ */
+public class CostOrderedReplanningModule implements PlanStrategyModule {
+	final private int numberOfThreads;
+	final private long randomSeed;
+
+	final private Provider<DiscreteModeChoiceModel> modelProvider;
+	final private Provider<TripListConverter> converterProvider;
+	final private PopulationFactory populationFactory;
+
+	private final List<Plan> plans = new ArrayList<>();
+	private int iteration = 0;
+
+	public CostOrderedReplanningModule(GlobalConfigGroup globalConfigGroup,
+			Provider<DiscreteModeChoiceModel> modelProvider, Provider<TripListConverter> converterProvider,
+			PopulationFactory populationFactory) {
+		this.numberOfThreads = Math.max(1, globalConfigGroup.getNumberOfThreads());
+		this.randomSeed = globalConfigGroup.getRandomSeed();
+		this.modelProvider = modelProvider;
+		this.converterProvider = converterProvider;
+		this.populationFactory = populationFactory;
+	}
+
+	@Override
+	public void prepareReplanning(ReplanningContext replanningContext) {
+		iteration = replanningContext.getIteration();
+		plans.clear();
+	}
+
+	@Override
+	public void handlePlan(Plan plan) {
+		plans.add(plan);
+	}
+
+	@Override
+	public void finishReplanning() {
+		List<Plan> orderedPlans = orderPlans(plans);
+		plans.clear();
+
+		AtomicInteger nextPlanIndex = new AtomicInteger(0);
+		List<Callable<Void>> workers = new ArrayList<>(numberOfThreads);
+
+		for (int k = 0; k < numberOfThreads; k++) {
+			workers.add(() -> {
+				Random random = new Random();
+				DiscreteModeChoiceAlgorithm algorithm = new DiscreteModeChoiceAlgorithm(random, modelProvider.get(),
+						populationFactory, converterProvider.get());
+
+				int planIndex;
+
+				while ((planIndex = nextPlanIndex.getAndIncrement()) < orderedPlans.size()) {
+					Plan plan = orderedPlans.get(planIndex);
+
+					random.setSeed(createSeed(randomSeed, iteration, plan));
+					algorithm.run(plan);
+				}
+
+				return null;
+			});
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+
+		try {
+			for (Future<Void> future : pool.invokeAll(workers)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the plans ordered from the highest to the lowest estimated cost.
+	 * Plans with the same cost keep their initial order.
+	 */
+	static List<Plan> orderPlans(List<Plan> plans) {
+		long[] keys = new long[plans.size()];
+
+		for (int index = 0; index < plans.size(); index++) {
+			long cost = plans.get(index).getPlanElements().size();
+
+			// Sorting ascending by this key sorts by descending cost, then by index
+			keys[index] = ((Integer.MAX_VALUE - cost) << 32) | index;
+		}
+
+		Arrays.sort(keys);
+
+		List<Plan> orderedPlans = new ArrayList<>(plans.size());
+
+		for (long key : keys) {
+			orderedPlans.add(plans.get((int) key));
+		}
+
+		return orderedPlans;
+	}
+
+	/**
+	 * Creates a well-mixed seed for the random stream of one plan.
+	 */
+	static long createSeed(long randomSeed, int iteration, Plan plan) {
+		long seed = randomSeed;
+		seed = RandomUtils.mix(seed + iteration);
+		seed = RandomUtils.mix(seed + plan.getPerson().getId().toString().hashCode());
+		return seed;
+	}
+}
@@ -24,7 +24,8 @@ import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConf
  * <ul>
  * <li>TripsToLegs, which collapses all multi-stage trips into one leg</li>
  * <li>DiscreteModeChoiceReplanningModule, which creates a new discrete choice
- * model and performs the choices <(li>
+ * model and performs the choices (or the CostOrderedReplanningModule if
+ * configured)</li>
  * <li>Optionally, ReRoute if is is configured in the config, otherwise a check
  * is added that all routes are present after the mode choice</li>
  * </ul>
@@ -57,8 +58,14 @@ public class DiscreteModeChoiceStrategyProvider implements Provider<PlanStrategy
 	@Override
 	public PlanStrategy get() {
 		PlanStrategyImpl.Builder builder = new PlanStrategyImpl.Builder(new RandomPlanSelector<>());
-		builder.addStrategyModule(new DiscreteModeChoiceReplanningModule(globalConfigGroup, modeChoiceModelProvider,
-				tripListConverterProvider, populationFactory));
+
+		if (dmcConfig.getCostOrderedReplanning()) {
+			builder.addStrategyModule(new CostOrderedReplanningModule(globalConfigGroup, modeChoiceModelProvider,
+					tripListConverterProvider, populationFactory));
+		} else {
+			builder.addStrategyModule(new DiscreteModeChoiceReplanningModule(globalConfigGroup,
+					modeChoiceModelProvider, tripListConverterProvider, populationFactory));
+		}
 
 		if (dmcConfig.getPerformReroute()) {
 			builder.addStrategyModule(new ReRoute(activityFacilities, tripRouterProvider, globalConfigGroup));
@@ -1,45 +1,121 @@
 package ch.ethz.matsim.discrete_mode_choice.replanning;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.router.StageActivityTypeIdentifier;
 import org.matsim.core.router.TripStructureUtils;
-import org.matsim.core.router.TripStructureUtils.Trip;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 
 /**
  * Helper class for converting a MATSim plan into a list of
  * DiscreteModeChoiceTrip.
- * 
+ *
+ * The plan elements are traversed only once and no intermediate trip objects
+ * are created. The initial elements of a trip are copied, since the plan is
+ * changed while the trips are still in use when the chosen trips are inserted.
+ * All trips share a PlanView of the plan, which can be used by the tour
+ * finders, home finders and constraints. The activity types of the view are
+ * identified with the given ActivityTypeRegistry, which should be the one that
+ * is also used by these components.
+ *
  * @author sebhoerl
  */
 public final class TripListConverter {
+	private final ActivityTypeRegistry activityTypeRegistry;
+
+	public TripListConverter(ActivityTypeRegistry activityTypeRegistry) {
+		this.activityTypeRegistry = activityTypeRegistry;
+	}
+
+	public TripListConverter() {
+		this(new ActivityTypeRegistry());
+	}
+
 	/**
 	 * Convert a MATSim plan into a list of DiscreteModeChoiceTrip and extract the
 	 * respective legs. It is expected that the plan is already flattened (i.e.
 	 * there are no interaction activities).
 	 */
 	public List<DiscreteModeChoiceTrip> convert(Plan plan) {
-		List<Trip> initialTrips = TripStructureUtils.getTrips(plan);
-		List<DiscreteModeChoiceTrip> trips = new ArrayList<>(initialTrips.size());
+		List<PlanElement> elements = plan.getPlanElements();
+		int maximumNumberOfActivities = Math.max(1, (elements.size() + 1) / 2);
+
+		List<Activity> activities = new ArrayList<>(maximumNumberOfActivities);
+		int[] activityElementIndices = new int[maximumNumberOfActivities];
+
+		int[] originActivityIndices = new int[maximumNumberOfActivities];
+		int[] destinationActivityIndices = new int[maximumNumberOfActivities];
+		String[] initialModes = new String[maximumNumberOfActivities];
+
+		int numberOfTrips = 0;
+		int previousElementIndex = -1;
+
+		for (int elementIndex = 0; elementIndex < elements.size(); elementIndex++) {
+			PlanElement element = elements.get(elementIndex);
+
+			if (!(element instanceof Activity)) {
+				continue;
+			}
+
+			Activity activity = (Activity) element;
+
+			if (StageActivityTypeIdentifier.isStageActivity(activity.getType())) {
+				continue;
+			}
+
+			int activityIndex = activities.size();
+
+			if (activityIndex == activityElementIndices.length) {
+				activityElementIndices = Arrays.copyOf(activityElementIndices, 2 * activityIndex);
+				originActivityIndices = Arrays.copyOf(originActivityIndices, 2 * activityIndex);
+				destinationActivityIndices = Arrays.copyOf(destinationActivityIndices, 2 * activityIndex);
+				initialModes = Arrays.copyOf(initialModes, 2 * activityIndex);
+			}
+
+			activities.add(activity);
+			activityElementIndices[activityIndex] = elementIndex;
+
+			// Two consecutive activities without any leg in between do not form a trip
+			if (previousElementIndex >= 0 && elementIndex - previousElementIndex > 1) {
+				Leg firstLeg = (Leg) elements.get(previousElementIndex + 1);
+
+				originActivityIndices[numberOfTrips] = activityIndex - 1;
+				destinationActivityIndices[numberOfTrips] = activityIndex;
+				initialModes[numberOfTrips] = TripStructureUtils.getRoutingMode(firstLeg);
+				numberOfTrips++;
+			}
+
+			previousElementIndex = elementIndex;
+		}
 
-		int index = 0;
+		PlanView planView = new PlanView(activityTypeRegistry, activities,
+				Arrays.copyOf(activityElementIndices, activities.size()),
+				Arrays.copyOf(originActivityIndices, numberOfTrips),
+				Arrays.copyOf(destinationActivityIndices, numberOfTrips), Arrays.copyOf(initialModes, numberOfTrips));
 
-		for (Trip initialTrip : initialTrips) {
-			Activity originActivity = initialTrip.getOriginActivity();
-			Activity destinationActivity = initialTrip.getDestinationActivity();
+		List<DiscreteModeChoiceTrip> trips = new ArrayList<>(numberOfTrips);
+		int personHash = plan.getPerson().hashCode();
 
-			Leg firstLeg = (Leg) initialTrip.getTripElements().get(0);
-			String routingMode = TripStructureUtils.getRoutingMode(firstLeg);
+		for (int index = 0; index < numberOfTrips; index++) {
+			int originActivityIndex = originActivityIndices[index];
+			int destinationActivityIndex = destinationActivityIndices[index];
 
-			trips.add(new DiscreteModeChoiceTrip(originActivity, destinationActivity, routingMode,
-					initialTrip.getTripElements(), plan.getPerson().hashCode(), index, index));
+			List<PlanElement> initialElements = new ArrayList<>(
+					elements.subList(activityElementIndices[originActivityIndex] + 1,
+							activityElementIndices[destinationActivityIndex]));
 
-			index++;
+			trips.add(new DiscreteModeChoiceTrip(activities.get(originActivityIndex),
+					activities.get(destinationActivityIndex), initialModes[index], initialElements, personHash, index,
+					index, planView));
 		}
 
 		return trips;
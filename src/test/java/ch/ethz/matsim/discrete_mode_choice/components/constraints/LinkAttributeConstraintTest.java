@@ -0,0 +1,152 @@
+package ch.ethz.matsim.discrete_mode_choice.components.constraints;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+
+import ch.ethz.matsim.discrete_mode_choice.components.constraints.LinkAttributeConstraint.Requirement;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_registry.ModeRegistry;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraint;
+import ch.ethz.matsim.discrete_mode_choice.modules.ConstraintModule;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.DiscreteModeChoiceConfigGroup;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.LinkAttributeConstraintConfigGroup;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.LinkAttributeRuleConfigGroup;
+
+public class LinkAttributeConstraintTest {
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node node = NetworkUtils.createAndAddNode(network, Id.createNodeId("node"), new Coord(0.0, 0.0));
+
+		Link center = NetworkUtils.createAndAddLink(network, Id.createLinkId("center"), node, node, 100.0, 10.0,
+				1000.0, 1.0);
+		center.getAttributes().putAttribute("zone", "center");
+		center.getAttributes().putAttribute("bikeLane", true);
+
+		Link outside = NetworkUtils.createAndAddLink(network, Id.createLinkId("outside"), node, node, 100.0, 10.0,
+				1000.0, 1.0);
+		outside.getAttributes().putAttribute("zone", "outside");
+		outside.getAttributes().putAttribute("bikeLane", true);
+
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("plain"), node, node, 100.0, 10.0, 1000.0, 1.0);
+
+		return network;
+	}
+
+	private DiscreteModeChoiceTrip createTrip(String originLinkId, String destinationLinkId) {
+		return new DiscreteModeChoiceTrip(
+				PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId(originLinkId)),
+				PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId(destinationLinkId)), "walk",
+				Collections.emptyList(), 0, 0, 0);
+	}
+
+	private boolean validate(TripConstraint constraint, String originLinkId, String destinationLinkId, String mode) {
+		return constraint.validateBeforeEstimation(createTrip(originLinkId, destinationLinkId), mode,
+				Collections.emptyList());
+	}
+
+	private TripConstraint createConstraint(Network network, DiscreteModeChoiceConfigGroup dmcConfig) {
+		return new ConstraintModule().provideLinkAttributeConstraintFactory(network, dmcConfig, new ModeRegistry())
+				.createConstraint(null, Collections.emptyList(), Arrays.asList("car", "bike", "walk"));
+	}
+
+	private LinkAttributeRuleConfigGroup createRule(String attributeName, String attributeValue, String mode,
+			Requirement requirement) {
+		LinkAttributeRuleConfigGroup rule = new LinkAttributeRuleConfigGroup();
+		rule.setAttributeName(attributeName);
+		rule.setAttributeValue(attributeValue);
+		rule.setConstrainedModes(Collections.singleton(mode));
+		rule.setRequirement(requirement);
+		return rule;
+	}
+
+	@Test
+	public void testMultipleRules() {
+		DiscreteModeChoiceConfigGroup dmcConfig = new DiscreteModeChoiceConfigGroup();
+		LinkAttributeConstraintConfigGroup config = dmcConfig.getLinkAttributeConstraintConfigGroup();
+
+		// Top-level rule: No car trips touching the center
+		config.setAttributeName("zone");
+		config.setAttributeValue("center");
+		config.setConstrainedModes(Collections.singleton("car"));
+		config.setRequirement(Requirement.NONE);
+
+		// Bike trips need bike lanes at both ends, car trips need to touch the outside
+		config.addParameterSet(createRule("bikeLane", "true", "bike", Requirement.BOTH));
+		config.addParameterSet(createRule("zone", "outside", "car", Requirement.ANY));
+
+		TripConstraint constraint = createConstraint(createNetwork(), dmcConfig);
+
+		// Car is constrained by both the top-level rule and the second rule
+		assertTrue(validate(constraint, "outside", "plain", "car"));
+		assertTrue(validate(constraint, "outside", "outside", "car"));
+		assertFalse(validate(constraint, "outside", "center", "car"));
+		assertFalse(validate(constraint, "plain", "plain", "car"));
+
+		// Bike is only constrained by the first rule
+		assertTrue(validate(constraint, "outside", "center", "bike"));
+		assertFalse(validate(constraint, "outside", "plain", "bike"));
+		assertFalse(validate(constraint, "plain", "plain", "bike"));
+
+		// Walk is not constrained at all
+		assertTrue(validate(constraint, "plain", "center", "walk"));
+	}
+
+	@Test
+	public void testTopLevelRuleOnly() {
+		DiscreteModeChoiceConfigGroup dmcConfig = new DiscreteModeChoiceConfigGroup();
+		LinkAttributeConstraintConfigGroup config = dmcConfig.getLinkAttributeConstraintConfigGroup();
+
+		config.setAttributeName("zone");
+		config.setAttributeValue("center");
+		config.setConstrainedModes(Collections.singleton("car"));
+		config.setRequirement(Requirement.BOTH);
+
+		TripConstraint constraint = createConstraint(createNetwork(), dmcConfig);
+
+		assertTrue(validate(constraint, "center", "center", "car"));
+		assertFalse(validate(constraint, "center", "outside", "car"));
+		assertTrue(validate(constraint, "center", "outside", "bike"));
+	}
+
+	@Test
+	public void testTopLevelRuleWithoutAttribute() {
+		DiscreteModeChoiceConfigGroup dmcConfig = new DiscreteModeChoiceConfigGroup();
+		LinkAttributeConstraintConfigGroup config = dmcConfig.getLinkAttributeConstraintConfigGroup();
+
+		// Without an attribute name, no link matches, so the constrained mode is
+		// forbidden for BOTH and allowed for NONE
+		config.setConstrainedModes(Collections.singleton("car"));
+		config.setRequirement(Requirement.BOTH);
+
+		TripConstraint constraint = createConstraint(createNetwork(), dmcConfig);
+		assertFalse(validate(constraint, "center", "center", "car"));
+		assertTrue(validate(constraint, "center", "center", "walk"));
+
+		config.setRequirement(Requirement.NONE);
+
+		constraint = createConstraint(createNetwork(), dmcConfig);
+		assertTrue(validate(constraint, "center", "center", "car"));
+	}
+
+	@Test
+	public void testSingleRuleConstructor() {
+		TripConstraint constraint = new LinkAttributeConstraint(createNetwork(), Collections.singleton("car"), "zone",
+				"center", Requirement.ANY);
+
+		assertTrue(validate(constraint, "center", "plain", "car"));
+		assertFalse(validate(constraint, "outside", "plain", "car"));
+		assertTrue(validate(constraint, "outside", "plain", "bike"));
+	}
+}
@@ -0,0 +1,107 @@
+package ch.ethz.matsim.discrete_mode_choice.components.constraints;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+
+import ch.ethz.matsim.discrete_mode_choice.components.constraints.ShapeFileConstraint.Requirement;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripConstraint;
+
+public class ShapeFileConstraintTest {
+	private final GeometryFactory geometryFactory = new GeometryFactory();
+
+	private Geometry createPolygon(double... coordinates) {
+		Coordinate[] ring = new Coordinate[coordinates.length / 2 + 1];
+
+		for (int index = 0; index < coordinates.length / 2; index++) {
+			ring[index] = new Coordinate(coordinates[2 * index], coordinates[2 * index + 1]);
+		}
+
+		ring[ring.length - 1] = ring[0];
+		return geometryFactory.createPolygon(ring);
+	}
+
+	private void addLink(Network network, String linkId, double x, double y) {
+		// A link from a node to itself has the coordinate of that node
+		Node node = NetworkUtils.createAndAddNode(network, Id.createNodeId(linkId), new Coord(x, y));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(linkId), node, node, 100.0, 10.0, 1000.0, 1.0);
+	}
+
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+
+		addLink(network, "square", 5.0, 5.0);
+		addLink(network, "triangle", 22.0, 2.0);
+		addLink(network, "outside", 50.0, 5.0);
+		addLink(network, "envelope", 28.0, 8.0);
+		addLink(network, "edge", 10.0, 5.0);
+
+		return network;
+	}
+
+	private Set<Geometry> createShapes() {
+		Set<Geometry> shapes = new HashSet<>();
+
+		// A square and a triangle whose envelope is the square from (20, 0) to (30, 10)
+		shapes.add(createPolygon(0.0, 0.0, 10.0, 0.0, 10.0, 10.0, 0.0, 10.0));
+		shapes.add(createPolygon(20.0, 0.0, 30.0, 0.0, 20.0, 10.0));
+
+		return shapes;
+	}
+
+	@Test
+	public void testFindContainedLinkIds() {
+		Set<Id<Link>> containedLinkIds = ShapeFileConstraint.findContainedLinkIds(createNetwork(), createShapes());
+
+		assertTrue(containedLinkIds.contains(Id.createLinkId("square")));
+		assertTrue(containedLinkIds.contains(Id.createLinkId("triangle")));
+
+		// Outside of all envelopes
+		assertFalse(containedLinkIds.contains(Id.createLinkId("outside")));
+
+		// Inside the envelope of the triangle, but not inside the triangle itself
+		assertFalse(containedLinkIds.contains(Id.createLinkId("envelope")));
+
+		// On the edge of the square (and its envelope), which is not contained
+		assertFalse(containedLinkIds.contains(Id.createLinkId("edge")));
+
+		assertEquals(2, containedLinkIds.size());
+	}
+
+	@Test
+	public void testConstraintFromShapes() {
+		TripConstraint constraint = new ShapeFileConstraint(createNetwork(), Collections.singleton("car"),
+				Requirement.BOTH, createShapes());
+
+		DiscreteModeChoiceTrip insideTrip = new DiscreteModeChoiceTrip(
+				PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId("square")),
+				PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId("triangle")), "walk",
+				Collections.emptyList(), 0, 0, 0);
+
+		DiscreteModeChoiceTrip outsideTrip = new DiscreteModeChoiceTrip(
+				PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId("square")),
+				PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId("edge")), "walk",
+				Collections.emptyList(), 0, 0, 0);
+
+		assertTrue(constraint.validateBeforeEstimation(insideTrip, "car", Collections.emptyList()));
+		assertFalse(constraint.validateBeforeEstimation(outsideTrip, "car", Collections.emptyList()));
+		assertTrue(constraint.validateBeforeEstimation(outsideTrip, "walk", Collections.emptyList()));
+	}
+}
@@ -0,0 +1,92 @@
+package ch.ethz.matsim.discrete_mode_choice.components.constraints;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.ModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraint;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraint.PrefixValidity;
+
+public class SubtourModeConstraintTest {
+	static private List<Id<? extends BasicLocation>> createLocations(String... locations) {
+		List<Id<? extends BasicLocation>> ids = new ArrayList<>();
+
+		for (String location : locations) {
+			ids.add(Id.create(location, Link.class));
+		}
+
+		return ids;
+	}
+
+	static private boolean validateByPrefix(TourConstraint constraint, List<DiscreteModeChoiceTrip> tour,
+			List<String> modes, List<List<String>> previousModes) {
+		for (int length = 1; length <= modes.size(); length++) {
+			if (constraint.validatePrefix(tour, modes.subList(0, length),
+					previousModes) == PrefixValidity.INVALID) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Test
+	public void testSubtours() {
+		// A -> B -> A -> C -> D -> C -> A
+		TourConstraint constraint = new SubtourModeConstraint(Arrays.asList("car", "bike"),
+				createLocations("A", "B", "A", "C", "D", "C"), createLocations("B", "A", "C", "D", "C", "A"));
+		List<DiscreteModeChoiceTrip> tour = Collections.nCopies(6, null);
+
+		assertTrue(constraint.validateBeforeEstimation(tour,
+				Arrays.asList("car", "car", "bike", "bike", "bike", "bike"), Collections.emptyList()));
+		assertTrue(constraint.validateBeforeEstimation(tour,
+				Arrays.asList("walk", "pt", "bike", "bike", "bike", "bike"), Collections.emptyList()));
+		assertFalse(constraint.validateBeforeEstimation(tour,
+				Arrays.asList("car", "walk", "bike", "bike", "bike", "bike"), Collections.emptyList()));
+		assertFalse(constraint.validateBeforeEstimation(tour,
+				Arrays.asList("car", "car", "bike", "walk", "bike", "bike"), Collections.emptyList()));
+
+		assertEquals(PrefixValidity.INVALID, constraint.validatePrefix(tour, Arrays.asList("car", "walk"),
+				Collections.emptyList()));
+		assertEquals(PrefixValidity.VALID, constraint.validatePrefix(tour, Arrays.asList("car", "car", "walk"),
+				Collections.emptyList()));
+	}
+
+	@Test
+	public void testPrefixConsistency() {
+		// First tour: A -> B -> A, second tour: A -> C -> D -> C -> A -> E
+		List<Id<? extends BasicLocation>> origins = createLocations("A", "B", "A", "C", "D", "C", "A");
+		List<Id<? extends BasicLocation>> destinations = createLocations("B", "A", "C", "D", "C", "A", "E");
+
+		TourConstraint constraint = new SubtourModeConstraint(Arrays.asList("car", "bike"), origins, destinations);
+		List<DiscreteModeChoiceTrip> tour = Collections.nCopies(5, null);
+		List<List<String>> previousModes = Collections.singletonList(Arrays.asList("car", "car"));
+
+		int numberOfValidChains = 0;
+		ModeChainGenerator generator = new DefaultModeChainGenerator(Arrays.asList("car", "bike", "walk"), 5);
+
+		while (generator.hasNext()) {
+			List<String> modes = generator.next();
+			boolean isValid = constraint.validateBeforeEstimation(tour, modes, previousModes);
+
+			assertEquals(isValid, validateByPrefix(constraint, tour, modes, previousModes));
+			numberOfValidChains += isValid ? 1 : 0;
+		}
+
+		// Subtour C -> D -> C is nested into A -> ... -> A, last trip is free
+		assertEquals(3 * 3, numberOfValidChains);
+	}
+}
@@ -0,0 +1,111 @@
+package ch.ethz.matsim.discrete_mode_choice.components.estimators;
+
+import static ch.ethz.matsim.discrete_mode_choice.test_utils.TestTrips.createTrips;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.replanning.time_interpreter.EndTimeThenDurationInterpreter;
+
+public class CumulativeTourEstimatorTest {
+	static private class CountingEstimator implements TripEstimator {
+		int numberOfCalls = 0;
+
+		@Override
+		public TripCandidate estimateTrip(Person person, String mode, DiscreteModeChoiceTrip trip,
+				List<TripCandidate> previousTrips) {
+			numberOfCalls++;
+
+			// Utility depends on the departure time, which depends on the previous modes
+			double duration = mode.equals("car") ? 100.0 : (mode.equals("pt") ? 200.0 : 300.0);
+			return new DefaultTripCandidate(-trip.getDepartureTime() / 1000.0 - previousTrips.size(), mode, duration);
+		}
+	}
+
+	@Test
+	public void testPrefixMemo() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+		List<DiscreteModeChoiceTrip> trips = createTrips(4);
+
+		CountingEstimator plainDelegate = new CountingEstimator();
+		CountingEstimator memoDelegate = new CountingEstimator();
+
+		CumulativeTourEstimator plainEstimator = new CumulativeTourEstimator(plainDelegate,
+				new EndTimeThenDurationInterpreter.Factory(0.0, false));
+		CumulativeTourEstimator memoEstimator = new CumulativeTourEstimator(memoDelegate,
+				new EndTimeThenDurationInterpreter.Factory(0.0, false), true);
+
+		new DefaultModeChainGenerator(modes, trips.size()).forEachRemaining(chain -> {
+			TourCandidate plainCandidate = plainEstimator.estimateTour(null, chain, trips, Collections.emptyList());
+			double[] plainDepartureTimes = trips.stream().mapToDouble(DiscreteModeChoiceTrip::getDepartureTime)
+					.toArray();
+
+			TourCandidate memoCandidate = memoEstimator.estimateTour(null, chain, trips, Collections.emptyList());
+			double[] memoDepartureTimes = trips.stream().mapToDouble(DiscreteModeChoiceTrip::getDepartureTime)
+					.toArray();
+
+			assertEquals(plainCandidate.getUtility(), memoCandidate.getUtility());
+
+			for (int i = 0; i < trips.size(); i++) {
+				assertEquals(plainDepartureTimes[i], memoDepartureTimes[i]);
+				assertEquals(plainCandidate.getTripCandidates().get(i).getDuration(),
+						memoCandidate.getTripCandidates().get(i).getDuration());
+			}
+		});
+
+		// One call per chain and trip vs. one call per node of the prefix tree
+		assertEquals(4 * 81, plainDelegate.numberOfCalls);
+		assertEquals(3 + 9 + 27 + 81, memoDelegate.numberOfCalls);
+
+		// A new tour resets the memo
+		memoEstimator.estimateTour(null, Arrays.asList("car", "car", "car", "car"), createTrips(4),
+				Collections.emptyList());
+		assertEquals(3 + 9 + 27 + 81 + 4, memoDelegate.numberOfCalls);
+	}
+
+	@Test
+	public void testPrefixMemoLimit() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+		List<DiscreteModeChoiceTrip> trips = createTrips(4);
+
+		CountingEstimator plainDelegate = new CountingEstimator();
+		CountingEstimator memoDelegate = new CountingEstimator();
+
+		CumulativeTourEstimator plainEstimator = new CumulativeTourEstimator(plainDelegate,
+				new EndTimeThenDurationInterpreter.Factory(0.0, false));
+		CumulativeTourEstimator memoEstimator = new CumulativeTourEstimator(memoDelegate,
+				new EndTimeThenDurationInterpreter.Factory(0.0, false), true, 10);
+
+		new DefaultModeChainGenerator(modes, trips.size()).forEachRemaining(chain -> {
+			TourCandidate plainCandidate = plainEstimator.estimateTour(null, chain, trips, Collections.emptyList());
+			double[] plainDepartureTimes = trips.stream().mapToDouble(DiscreteModeChoiceTrip::getDepartureTime)
+					.toArray();
+
+			TourCandidate memoCandidate = memoEstimator.estimateTour(null, chain, trips, Collections.emptyList());
+			double[] memoDepartureTimes = trips.stream().mapToDouble(DiscreteModeChoiceTrip::getDepartureTime)
+					.toArray();
+
+			assertEquals(plainCandidate.getUtility(), memoCandidate.getUtility());
+
+			for (int i = 0; i < trips.size(); i++) {
+				assertEquals(plainDepartureTimes[i], memoDepartureTimes[i]);
+			}
+		});
+
+		// Some prefixes are reused, but not all of them
+		assertTrue(memoDelegate.numberOfCalls > 3 + 9 + 27 + 81);
+		assertTrue(memoDelegate.numberOfCalls < plainDelegate.numberOfCalls);
+	}
+}
@@ -0,0 +1,80 @@
+package ch.ethz.matsim.discrete_mode_choice.components.estimators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.population.PopulationUtils;
+
+public class RouteCacheTest {
+	static private Activity createActivity(String linkId) {
+		return PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId(linkId));
+	}
+
+	static private List<PlanElement> createRoute(double departureTime) {
+		Leg leg = PopulationUtils.createLeg("car");
+		leg.setDepartureTime(departureTime);
+		leg.setTravelTime(600.0);
+		return Collections.singletonList(leg);
+	}
+
+	@Test
+	public void testCache() {
+		RouteCache cache = new RouteCache(Arrays.asList("car"), 100, 900.0);
+
+		Activity origin = createActivity("A");
+		Activity destination = createActivity("B");
+
+		assertTrue(cache.isCacheable("car", origin, destination));
+		assertFalse(cache.isCacheable("pt", origin, destination));
+
+		assertNull(cache.getRoute("car", origin, destination, 100.0));
+
+		List<PlanElement> route = createRoute(100.0);
+		cache.putRoute("car", origin, destination, 100.0, route);
+
+		// Same bin, times are shifted and elements are copied
+		List<? extends PlanElement> cachedRoute = cache.getRoute("car", createActivity("A"), createActivity("B"),
+				400.0);
+		assertEquals(1, cachedRoute.size());
+		assertNotSame(route.get(0), cachedRoute.get(0));
+		assertEquals(400.0, ((Leg) cachedRoute.get(0)).getDepartureTime());
+		assertEquals(600.0, ((Leg) cachedRoute.get(0)).getTravelTime());
+		assertEquals(100.0, ((Leg) route.get(0)).getDepartureTime());
+
+		// Other bin, other direction
+		assertNull(cache.getRoute("car", origin, destination, 1000.0));
+		assertNull(cache.getRoute("car", destination, origin, 100.0));
+
+		assertEquals(1, cache.getNumberOfHits());
+		assertEquals(3, cache.getNumberOfMisses());
+
+		cache.clear();
+		assertNull(cache.getRoute("car", origin, destination, 100.0));
+	}
+
+	@Test
+	public void testEviction() {
+		RouteCache cache = new RouteCache(Arrays.asList("car"), 1, 900.0);
+
+		Activity origin = createActivity("A");
+		Activity destination = createActivity("B");
+
+		cache.putRoute("car", origin, destination, 0.0, createRoute(0.0));
+		cache.putRoute("car", origin, destination, 1000.0, createRoute(1000.0));
+
+		assertNull(cache.getRoute("car", origin, destination, 0.0));
+		assertEquals(1000.0, ((Leg) cache.getRoute("car", origin, destination, 1000.0).get(0)).getDepartureTime());
+	}
+}
@@ -0,0 +1,82 @@
+package ch.ethz.matsim.discrete_mode_choice.components.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+public class HeadwayWaitingTimeEstimatorTest {
+	private final TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+
+	private final TransitSchedule schedule = factory.createTransitSchedule();
+	private final TransitLine line = factory.createTransitLine(Id.create("line", TransitLine.class));
+
+	private final TransitStopFacility stopA = factory
+			.createTransitStopFacility(Id.create("A", TransitStopFacility.class), new Coord(0.0, 0.0), false);
+	private final TransitStopFacility stopB = factory
+			.createTransitStopFacility(Id.create("B", TransitStopFacility.class), new Coord(0.0, 0.0), false);
+
+	private ExperimentalTransitRoute addRoute(String id, double interval, int numberOfDepartures) {
+		TransitRoute route = factory.createTransitRoute(Id.create(id, TransitRoute.class), null,
+				Arrays.asList(factory.createTransitRouteStop(stopA, 0.0, 0.0),
+						factory.createTransitRouteStop(stopB, 60.0, 60.0)),
+				"bus");
+		line.addRoute(route);
+
+		for (int k = 0; k < numberOfDepartures; k++) {
+			route.addDeparture(factory.createDeparture(Id.create(id + k, Departure.class), 3600.0 + k * interval));
+		}
+
+		return new ExperimentalTransitRoute(stopA, line, route, stopB);
+	}
+
+	@Test
+	public void testHeadways() {
+		schedule.addStopFacility(stopA);
+		schedule.addStopFacility(stopB);
+		schedule.addTransitLine(line);
+
+		// Every 5 minutes between 1:00 and 3:00, every 30 minutes between 1:00 and 4:00
+		ExperimentalTransitRoute frequentRoute = addRoute("frequent", 300.0, 25);
+		ExperimentalTransitRoute sparseRoute = addRoute("sparse", 1800.0, 7);
+
+		TransitScheduleSnapshot snapshot = TransitScheduleSnapshot.create(schedule);
+		HeadwayWaitingTimeEstimator estimator = new HeadwayWaitingTimeEstimator(snapshot, 3600.0, 600.0);
+
+		// Frequent service uses half the headway
+		assertEquals(150.0, estimator.estimateWaitingTime(3601.0, frequentRoute), 1e-6);
+		assertEquals(150.0, estimator.estimateWaitingTime(7300.0, frequentRoute), 1e-6);
+
+		// Sparse service and times without a headway use the exact next departure
+		assertEquals(1799.0, estimator.estimateWaitingTime(3601.0, sparseRoute), 1e-6);
+		assertEquals(3599.0, estimator.estimateWaitingTime(1.0, frequentRoute), 1e-6);
+
+		// After the last departure there is no waiting time
+		assertEquals(0.0, estimator.estimateWaitingTime(10801.0, frequentRoute), 1e-6);
+	}
+
+	@Test
+	public void testInvalidBinSize() {
+		schedule.addStopFacility(stopA);
+		schedule.addStopFacility(stopB);
+		schedule.addTransitLine(line);
+		addRoute("route", 300.0, 5);
+
+		TransitScheduleSnapshot snapshot = TransitScheduleSnapshot.create(schedule);
+
+		assertThrows(IllegalArgumentException.class, () -> new HeadwayWaitingTimeEstimator(snapshot, 0.0, 600.0));
+		assertThrows(IllegalArgumentException.class, () -> new HeadwayWaitingTimeEstimator(snapshot, -1.0, 600.0));
+	}
+}
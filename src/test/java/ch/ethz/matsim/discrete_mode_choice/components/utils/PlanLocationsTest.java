@@ -0,0 +1,53 @@
+package ch.ethz.matsim.discrete_mode_choice.components.utils;
+
+import static ch.ethz.matsim.discrete_mode_choice.test_utils.TestTrips.createTrips;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+public class PlanLocationsTest {
+	@Test
+	public void testLocations() {
+		List<DiscreteModeChoiceTrip> trips = createTrips("home", "A", "B", "A", "home", "C", "home");
+		PlanLocations locations = PlanLocations.create(trips, Id.createLinkId("home"));
+
+		assertEquals(6, locations.getNumberOfTrips());
+		assertTrue(locations.hasHome());
+
+		assertEquals(locations.getHomeIndex(), locations.getOriginIndex(0));
+		assertEquals(locations.getDestinationIndex(0), locations.getOriginIndex(1));
+		assertEquals(locations.getDestinationIndex(0), locations.getDestinationIndex(2));
+
+		assertTrue(locations.isHomeDestination(3));
+		assertTrue(locations.isHomeDestination(5));
+		assertFalse(locations.isHomeDestination(4));
+
+		// From A (trip 1) the agent comes back to A with trip 2 before going home
+		assertTrue(locations.willReturnBeforeHome(1));
+
+		// From B (trip 2) the agent goes home first
+		assertFalse(locations.willReturnBeforeHome(2));
+
+		// From C (trip 5) the agent never returns
+		assertFalse(locations.willReturnBeforeHome(5));
+	}
+
+	@Test
+	public void testWithoutHome() {
+		List<DiscreteModeChoiceTrip> trips = createTrips("A", "B", "C", "B");
+		PlanLocations locations = PlanLocations.create(trips, null);
+
+		assertFalse(locations.hasHome());
+		assertEquals(-1, locations.getHomeIndex());
+
+		assertTrue(locations.willReturnBeforeHome(1));
+		assertFalse(locations.willReturnBeforeHome(0));
+	}
+}
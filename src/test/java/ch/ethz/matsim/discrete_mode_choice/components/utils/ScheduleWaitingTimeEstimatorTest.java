@@ -90,6 +90,40 @@ public class ScheduleWaitingTimeEstimatorTest {
 		assertEquals(0.0, waitingTime, 1e-6);
 	}
 
+	@Test
+	public void testRepeatedStop() throws IOException {
+		TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+		TransitSchedule schedule = factory.createTransitSchedule();
+
+		TransitStopFacility facility = factory.createTransitStopFacility(Id.create("f1", TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+		schedule.addStopFacility(facility);
+
+		TransitLine transitLine = factory.createTransitLine(Id.create("loopLine", TransitLine.class));
+		schedule.addTransitLine(transitLine);
+
+		// The route serves the same stop at the start and at the end
+		List<TransitRouteStop> stops = new LinkedList<>();
+		stops.add(factory.createTransitRouteStop(facility, 0.0, 0.0));
+		stops.add(factory.createTransitRouteStop(facility, 600.0, 600.0));
+
+		TransitRoute transitRoute = factory.createTransitRoute(Id.create("loopRoute", TransitRoute.class), null,
+				stops, "bus");
+		transitLine.addRoute(transitRoute);
+
+		transitRoute.addDeparture(factory.createDeparture(Id.create("departure1", Departure.class), 1000.0));
+		transitRoute.addDeparture(factory.createDeparture(Id.create("departure2", Departure.class), 2000.0));
+
+		ScheduleWaitingTimeEstimator estimator = new ScheduleWaitingTimeEstimator(schedule);
+		ExperimentalTransitRoute route = new ExperimentalTransitRoute(facility, transitLine, transitRoute, facility);
+
+		assertEquals(0.0, estimator.estimateWaitingTime(1000.0, route), 1e-6);
+		assertEquals(500.0, estimator.estimateWaitingTime(1100.0, route), 1e-6); // 1600 from the first departure
+		assertEquals(0.0, estimator.estimateWaitingTime(1600.0, route), 1e-6);
+		assertEquals(100.0, estimator.estimateWaitingTime(1900.0, route), 1e-6);
+		assertEquals(0.0, estimator.estimateWaitingTime(2700.0, route), 1e-6); // No departure anymore
+	}
+
 	// Stuff to set up the test starts here. Not relevant for the actual code.
 
 	private TransitSchedule createSchedule() {
@@ -0,0 +1,186 @@
+package ch.ethz.matsim.discrete_mode_choice.components.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+public class TransitScheduleSnapshotTest {
+	private final TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+
+	private TransitStopFacility createStop(TransitSchedule schedule, String id) {
+		TransitStopFacility facility = factory.createTransitStopFacility(Id.create(id, TransitStopFacility.class),
+				new Coord(0.0, 0.0), false);
+		schedule.addStopFacility(facility);
+		return facility;
+	}
+
+	private void addRoute(TransitLine line, String id, List<TransitStopFacility> facilities, double... departures) {
+		TransitRouteStop[] stops = new TransitRouteStop[facilities.size()];
+
+		for (int i = 0; i < stops.length; i++) {
+			stops[i] = factory.createTransitRouteStop(facilities.get(i), 100.0 * i, 100.0 * i);
+		}
+
+		TransitRoute route = factory.createTransitRoute(Id.create(id, TransitRoute.class), null, Arrays.asList(stops),
+				"bus");
+		line.addRoute(route);
+
+		for (int i = 0; i < departures.length; i++) {
+			route.addDeparture(factory.createDeparture(Id.create(id + i, Departure.class), departures[i]));
+		}
+	}
+
+	private TransitSchedule createSchedule() {
+		TransitSchedule schedule = factory.createTransitSchedule();
+
+		TransitStopFacility stopA = createStop(schedule, "A");
+		TransitStopFacility stopB = createStop(schedule, "B");
+		TransitStopFacility stopC = createStop(schedule, "C");
+
+		TransitLine line1 = factory.createTransitLine(Id.create("line1", TransitLine.class));
+		schedule.addTransitLine(line1);
+
+		TransitLine line2 = factory.createTransitLine(Id.create("line2", TransitLine.class));
+		schedule.addTransitLine(line2);
+
+		// Departures are not sorted on purpose
+		addRoute(line1, "forward", Arrays.asList(stopA, stopB, stopC), 3000.0, 1000.0, 2000.0);
+		addRoute(line1, "backward", Arrays.asList(stopC, stopB, stopA), 1500.0);
+		addRoute(line2, "loop", Arrays.asList(stopB, stopC, stopB), 500.0, 5000.0);
+
+		return schedule;
+	}
+
+	private void assertDepartures(TransitScheduleSnapshot snapshot) {
+		Id<TransitLine> line1 = Id.create("line1", TransitLine.class);
+		Id<TransitLine> line2 = Id.create("line2", TransitLine.class);
+
+		int forward = snapshot.getRouteIndex(line1, Id.create("forward", TransitRoute.class));
+		int backward = snapshot.getRouteIndex(line1, Id.create("backward", TransitRoute.class));
+		int loop = snapshot.getRouteIndex(line2, Id.create("loop", TransitRoute.class));
+
+		int stopA = snapshot.getStopIndex(Id.create("A", TransitStopFacility.class));
+		int stopB = snapshot.getStopIndex(Id.create("B", TransitStopFacility.class));
+
+		assertEquals(-1, snapshot.getRouteIndex(line2, Id.create("forward", TransitRoute.class)));
+		assertEquals(-1, snapshot.getStopIndex(Id.create("D", TransitStopFacility.class)));
+
+		assertEquals(1000.0, snapshot.getNextDepartureTime(forward, stopA, 0.0));
+		assertEquals(2100.0, snapshot.getNextDepartureTime(forward, stopB, 1101.0));
+		assertEquals(Double.POSITIVE_INFINITY, snapshot.getNextDepartureTime(forward, stopB, 3101.0));
+		assertEquals(1700.0, snapshot.getNextDepartureTime(backward, stopA, 1000.0));
+
+		// The loop serves B at offsets 0 and 200
+		assertEquals(700.0, snapshot.getNextDepartureTime(loop, stopB, 501.0));
+		assertEquals(5000.0, snapshot.getNextDepartureTime(loop, stopB, 701.0));
+		assertEquals(Double.POSITIVE_INFINITY, snapshot.getNextDepartureTime(loop, stopA, 0.0));
+	}
+
+	@Test
+	public void testInMemory() {
+		TransitSchedule schedule = createSchedule();
+		TransitScheduleSnapshot snapshot = TransitScheduleSnapshot.create(schedule);
+
+		assertTrue(snapshot.matches(schedule));
+		assertDepartures(snapshot);
+	}
+
+	@Test
+	public void testFile() throws IOException {
+		TransitSchedule schedule = createSchedule();
+
+		File file = File.createTempFile("snapshot", ".bin");
+		file.deleteOnExit();
+
+		TransitScheduleSnapshot.create(schedule).write(file);
+
+		TransitScheduleSnapshot snapshot = TransitScheduleSnapshot.load(file);
+		assertTrue(snapshot.matches(schedule));
+		assertDepartures(snapshot);
+
+		// A changed schedule leads to a new snapshot
+		TransitLine line2 = schedule.getTransitLines().get(Id.create("line2", TransitLine.class));
+		line2.getRoutes().get(Id.create("loop", TransitRoute.class))
+				.addDeparture(factory.createDeparture(Id.create("extra", Departure.class), 6000.0));
+		assertFalse(snapshot.matches(schedule));
+
+		snapshot = TransitScheduleSnapshot.createOrLoad(schedule, file);
+		assertTrue(snapshot.matches(schedule));
+		assertTrue(TransitScheduleSnapshot.load(file).matches(schedule));
+	}
+
+	@Test
+	public void testShiftedDeparture() throws IOException {
+		File file = File.createTempFile("snapshot", ".bin");
+		file.deleteOnExit();
+
+		TransitScheduleSnapshot.createOrLoad(createSchedule(), file);
+
+		// Same structure and number of departures, but one departure is shifted
+		TransitSchedule schedule = createSchedule();
+		TransitRoute backward = schedule.getTransitLines().get(Id.create("line1", TransitLine.class)).getRoutes()
+				.get(Id.create("backward", TransitRoute.class));
+		backward.removeDeparture(backward.getDepartures().values().iterator().next());
+		backward.addDeparture(factory.createDeparture(Id.create("shifted", Departure.class), 1800.0));
+
+		assertFalse(TransitScheduleSnapshot.load(file).matches(schedule));
+
+		TransitScheduleSnapshot snapshot = TransitScheduleSnapshot.createOrLoad(schedule, file);
+		assertTrue(TransitScheduleSnapshot.load(file).matches(schedule));
+
+		int routeIndex = snapshot.getRouteIndex(Id.create("line1", TransitLine.class),
+				Id.create("backward", TransitRoute.class));
+		int stopIndex = snapshot.getStopIndex(Id.create("A", TransitStopFacility.class));
+		assertEquals(2000.0, snapshot.getNextDepartureTime(routeIndex, stopIndex, 1000.0));
+	}
+
+	@Test
+	public void testCorruptFile() throws IOException {
+		TransitSchedule schedule = createSchedule();
+
+		File file = File.createTempFile("snapshot", ".bin");
+		file.deleteOnExit();
+
+		TransitScheduleSnapshot.create(schedule).write(file);
+
+		// A truncated file is rebuilt instead of failing
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() / 2);
+		}
+
+		TransitScheduleSnapshot snapshot = TransitScheduleSnapshot.createOrLoad(schedule, file);
+		assertTrue(snapshot.matches(schedule));
+		assertDepartures(TransitScheduleSnapshot.load(file));
+
+		// The same holds for a file with a negative number of departures
+		ByteBuffer buffer = ByteBuffer.allocate(40);
+		buffer.putInt(0x444d4353).putInt(3).putInt(28);
+		buffer.putLong(0).putInt(-8).putInt(0).putInt(0).putInt(0).putInt(0);
+		Files.write(file.toPath(), buffer.array());
+
+		snapshot = TransitScheduleSnapshot.createOrLoad(schedule, file);
+		assertTrue(snapshot.matches(schedule));
+		assertDepartures(TransitScheduleSnapshot.load(file));
+	}
+}
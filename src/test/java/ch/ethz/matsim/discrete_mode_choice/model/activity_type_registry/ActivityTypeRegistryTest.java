@@ -0,0 +1,31 @@
+package ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+public class ActivityTypeRegistryTest {
+	@Test
+	public void testActivityTypeIds() {
+		ActivityTypeRegistry registry = new ActivityTypeRegistry(Arrays.asList("home", "work"));
+
+		assertEquals(2, registry.getNumberOfActivityTypes());
+		assertEquals(0, registry.getActivityTypeId("home"));
+		assertEquals("work", registry.getActivityType(1));
+
+		// Unknown activity types are registered on the fly
+		assertEquals(2, registry.getActivityTypeId("shop"));
+		assertEquals(2, registry.getActivityTypeId("shop"));
+		assertEquals(Arrays.asList("home", "work", "shop"), registry.getActivityTypes());
+
+		BitSet mask = registry.getActivityTypeMask(Arrays.asList("home", "shop"));
+		assertTrue(mask.get(registry.getActivityTypeId("home")));
+		assertFalse(mask.get(registry.getActivityTypeId("work")));
+		assertTrue(mask.get(registry.getActivityTypeId("shop")));
+	}
+}
@@ -0,0 +1,128 @@
+package ch.ethz.matsim.discrete_mode_choice.model.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.population.Person;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+public class CachedTripEstimatorTest {
+	private int numberOfEstimates = 0;
+
+	private TripEstimator createDelegate() {
+		return (person, mode, trip, preceedingTrips) -> {
+			numberOfEstimates++;
+			return new DefaultTripCandidate(trip.getDepartureTime(), mode, 0.0);
+		};
+	}
+
+	static private DiscreteModeChoiceTrip createTrip(int index, double departureTime) {
+		DiscreteModeChoiceTrip trip = new DiscreteModeChoiceTrip(null, null, "walk", Collections.emptyList(), 0,
+				index, index);
+		trip.setDepartureTime(departureTime);
+		return trip;
+	}
+
+	@Test
+	public void testDepartureTimeTolerance() {
+		CachedTripEstimator estimator = new CachedTripEstimator(createDelegate(), Arrays.asList("car"), 300.0,
+				CachedTripEstimator.Scope.AGENT);
+
+		DiscreteModeChoiceTrip trip = createTrip(0, 100.0);
+
+		assertEquals(100.0, estimator.estimateTrip(null, "car", trip, Collections.emptyList()).getUtility());
+
+		trip.setDepartureTime(200.0);
+		assertEquals(100.0, estimator.estimateTrip(null, "car", trip, Collections.emptyList()).getUtility());
+
+		trip.setDepartureTime(400.0);
+		assertEquals(400.0, estimator.estimateTrip(null, "car", trip, Collections.emptyList()).getUtility());
+
+		// Copies are the same trip, other modes are not cached
+		DiscreteModeChoiceTrip copy = new DiscreteModeChoiceTrip(trip);
+		assertEquals(400.0, estimator.estimateTrip(null, "car", copy, Collections.emptyList()).getUtility());
+		estimator.estimateTrip(null, "pt", copy, Collections.emptyList());
+		estimator.estimateTrip(null, "pt", copy, Collections.emptyList());
+
+		assertEquals(2, estimator.getNumberOfHits());
+		assertEquals(2, estimator.getNumberOfMisses());
+		assertEquals(4, numberOfEstimates);
+	}
+
+	@Test
+	public void testBatchEstimation() {
+		CachedTripEstimator estimator = new CachedTripEstimator(createDelegate(), Arrays.asList("car", "bike"));
+
+		DiscreteModeChoiceTrip trip = createTrip(0, 100.0);
+		estimator.estimateTrip(null, "car", trip, Collections.emptyList());
+
+		List<TripCandidate> candidates = estimator.estimateTrips(null, Arrays.asList("pt", "car", "bike"), trip,
+				Collections.emptyList());
+
+		assertEquals(Arrays.asList("pt", "car", "bike"),
+				candidates.stream().map(TripCandidate::getMode).collect(Collectors.toList()));
+		assertEquals(1, estimator.getNumberOfHits());
+		assertEquals(2, estimator.getNumberOfMisses());
+		assertEquals(3, numberOfEstimates);
+
+		// Now both cached modes are found
+		estimator.estimateTrips(null, Arrays.asList("car", "bike"), trip, Collections.emptyList());
+		assertEquals(3, numberOfEstimates);
+	}
+
+	@Test
+	public void testExactDepartureTime() {
+		CachedTripEstimator estimator = new CachedTripEstimator(createDelegate(), Arrays.asList("car"));
+
+		DiscreteModeChoiceTrip trip = createTrip(0, 100.0);
+		estimator.estimateTrip(null, "car", trip, Collections.emptyList());
+		estimator.estimateTrip(null, "car", trip, Collections.emptyList());
+
+		trip.setDepartureTime(100.5);
+		estimator.estimateTrip(null, "car", trip, Collections.emptyList());
+
+		assertEquals(2, numberOfEstimates);
+	}
+
+	@Test
+	public void testScope() {
+		Person person = null;
+
+		CachedTripEstimator agentEstimator = new CachedTripEstimator(createDelegate(), Arrays.asList("car"),
+				Double.POSITIVE_INFINITY, CachedTripEstimator.Scope.AGENT);
+		CachedTripEstimator tourEstimator = new CachedTripEstimator(createDelegate(), Arrays.asList("car"),
+				Double.POSITIVE_INFINITY, CachedTripEstimator.Scope.TOUR);
+
+		List<DiscreteModeChoiceTrip> firstTour = Arrays.asList(createTrip(0, 0.0), createTrip(1, 500.0));
+		List<DiscreteModeChoiceTrip> secondTour = Arrays.asList(createTrip(2, 1000.0), createTrip(3, 1500.0));
+		List<TripCandidate> preceedingTrips = Collections.singletonList(new DefaultTripCandidate(0.0, "car", 0.0));
+
+		for (CachedTripEstimator estimator : Arrays.asList(agentEstimator, tourEstimator)) {
+			for (List<DiscreteModeChoiceTrip> tour : Arrays.asList(firstTour, secondTour)) {
+				// First, all trips are estimated without preceding trips (as in the trellis
+				// model), then the chosen chain is estimated trip by trip
+				estimator.estimateTrip(person, "car", tour.get(0), Collections.emptyList());
+				estimator.estimateTrip(person, "car", tour.get(1), Collections.emptyList());
+				estimator.estimateTrip(person, "car", tour.get(0), Collections.emptyList());
+				estimator.estimateTrip(person, "car", tour.get(1), preceedingTrips);
+			}
+
+			// Only the estimates of the second tour are kept with the TOUR scope
+			estimator.estimateTrip(person, "car", firstTour.get(1), preceedingTrips);
+			estimator.estimateTrip(person, "car", secondTour.get(1), preceedingTrips);
+		}
+
+		assertEquals(6, agentEstimator.getNumberOfHits());
+		assertEquals(5, tourEstimator.getNumberOfHits());
+		assertEquals(1, tourEstimator.getNumberOfMisses() - agentEstimator.getNumberOfMisses());
+	}
+}
@@ -0,0 +1,114 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import static ch.ethz.matsim.discrete_mode_choice.test_utils.TestTrips.createTrips;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.matsim.discrete_mode_choice.components.estimators.CumulativeTourEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.modules.config.BeamModeChainGeneratorConfigGroup;
+import ch.ethz.matsim.discrete_mode_choice.replanning.time_interpreter.EndTimeThenDurationInterpreter;
+
+public class BeamModeChainGeneratorTest {
+	private final AtomicInteger numberOfTripEstimates = new AtomicInteger(0);
+
+	private final TripEstimator estimator = (person, mode, trip, previousTrips) -> {
+		numberOfTripEstimates.incrementAndGet();
+		double utility = mode.equals("car") ? 3.0 : (mode.equals("pt") ? 2.0 : 1.0);
+		return new DefaultTripCandidate(utility, mode, 60.0);
+	};
+
+	private ModeChainGenerator createGenerator(List<DiscreteModeChoiceTrip> trips, int beamWidth,
+			ToDoubleFunction<List<String>> prefixEstimator, BeamModeChainGenerator.Statistics statistics) {
+		return new BeamModeChainGenerator(Arrays.asList("car", "pt", "walk"), trips.size(),
+				prefix -> !prefix.get(0).equals("walk"), prefixEstimator, beamWidth, statistics);
+	}
+
+	@Test
+	public void testBeamSearch() {
+		List<DiscreteModeChoiceTrip> trips = createTrips(8);
+		BeamModeChainGenerator.Statistics statistics = new BeamModeChainGenerator.Statistics();
+
+		TourEstimator tourEstimator = new CumulativeTourEstimator(estimator,
+				new EndTimeThenDurationInterpreter.Factory(0.0, false), true);
+
+		ModeChainGenerator generator = createGenerator(trips, 5,
+				prefix -> tourEstimator.estimateTour(null, prefix, trips, Collections.emptyList()).getUtility(),
+				statistics);
+		assertEquals(5, generator.getNumberOfAlternatives());
+
+		List<List<String>> chains = new ArrayList<>();
+		generator.forEachRemaining(chains::add);
+
+		assertEquals(5, chains.size());
+		assertEquals(Collections.nCopies(8, "car"), chains.get(0));
+
+		for (List<String> chain : chains) {
+			assertFalse(chain.get(0).equals("walk"));
+		}
+
+		assertEquals(1, statistics.getNumberOfTours());
+		assertEquals(1, statistics.getNumberOfTruncatedTours());
+
+		// The surviving chains are not estimated again by the memoizing tour estimator
+		int numberOfSearchEstimates = numberOfTripEstimates.get();
+
+		for (List<String> chain : chains) {
+			tourEstimator.estimateTour(null, chain, trips, Collections.emptyList());
+		}
+
+		assertEquals(numberOfSearchEstimates, numberOfTripEstimates.get());
+	}
+
+	@Test
+	public void testShortTour() {
+		BeamModeChainGenerator.Statistics statistics = new BeamModeChainGenerator.Statistics();
+
+		ModeChainGenerator generator = createGenerator(createTrips(2), 9, prefix -> {
+			throw new IllegalStateException();
+		}, statistics);
+
+		List<List<String>> chains = new ArrayList<>();
+		generator.forEachRemaining(chains::add);
+
+		// All feasible chains, no search
+		assertEquals(6, chains.size());
+		assertEquals(0, statistics.getNumberOfTours());
+	}
+
+	@Test
+	public void testWithoutEstimator() {
+		BeamModeChainGenerator.Statistics statistics = new BeamModeChainGenerator.Statistics();
+
+		ModeChainGenerator generator = createGenerator(createTrips(4), 5, null, statistics);
+		assertEquals(81, generator.getNumberOfAlternatives());
+
+		List<List<String>> chains = new ArrayList<>();
+		generator.forEachRemaining(chains::add);
+
+		// Partial chains cannot be scored, so all feasible chains are generated
+		assertEquals(54, chains.size());
+		assertEquals(0, statistics.getNumberOfTours());
+	}
+
+	@Test
+	public void testInvalidBeamWidth() {
+		assertThrows(IllegalArgumentException.class,
+				() -> createGenerator(createTrips(4), 0, prefix -> 0.0, new BeamModeChainGenerator.Statistics()));
+		assertThrows(IllegalArgumentException.class,
+				() -> new BeamModeChainGeneratorConfigGroup("modeChainGenerator", "Beam").setBeamWidth(0));
+	}
+}
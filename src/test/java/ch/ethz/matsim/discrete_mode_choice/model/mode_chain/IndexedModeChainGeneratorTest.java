@@ -0,0 +1,59 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class IndexedModeChainGeneratorTest {
+	@Test
+	public void testSameAsDefault() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+
+		ModeChainGenerator defaultGenerator = new DefaultModeChainGenerator(modes, 4);
+		ModeChainGenerator indexedGenerator = new IndexedModeChainGenerator(modes, 4);
+
+		assertEquals(defaultGenerator.getNumberOfAlternatives(), indexedGenerator.getNumberOfAlternatives());
+
+		while (defaultGenerator.hasNext()) {
+			assertEquals(defaultGenerator.next(), new ArrayList<>(indexedGenerator.next()));
+		}
+
+		assertFalse(indexedGenerator.hasNext());
+	}
+
+	@Test
+	public void testReuse() {
+		IndexedModeChainGenerator generator = new IndexedModeChainGenerator(Arrays.asList("car", "pt"), 2);
+
+		List<String> first = generator.next();
+		assertEquals(Arrays.asList("car", "car"), first);
+
+		List<String> second = generator.next();
+		assertSame(first, second);
+		assertEquals(Arrays.asList("pt", "car"), second);
+		assertEquals(1, generator.getModeIndices()[0]);
+		assertEquals(0, generator.getModeIndices()[1]);
+	}
+
+	@Test
+	public void testLongTour() {
+		// 5 ^ 28 does not fit into a long
+		List<String> modes = Arrays.asList("car", "pt", "walk", "bike", "taxi");
+		IndexedModeChainGenerator generator = new IndexedModeChainGenerator(modes, 28);
+
+		assertEquals(Long.MAX_VALUE, generator.getNumberOfAlternatives());
+		assertTrue(generator.hasNext());
+
+		assertEquals(Collections.nCopies(28, "car"), generator.next());
+		assertEquals("pt", generator.next().get(0));
+		assertTrue(generator.hasNext());
+	}
+}
@@ -0,0 +1,53 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class PrunedModeChainGeneratorTest {
+	@Test
+	public void testWithoutPruning() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+
+		Set<List<String>> defaultChains = new HashSet<>();
+		new DefaultModeChainGenerator(modes, 4).forEachRemaining(defaultChains::add);
+
+		Set<List<String>> prunedChains = new HashSet<>();
+		new PrunedModeChainGenerator(modes, 4, prefix -> true).forEachRemaining(prunedChains::add);
+
+		assertEquals(81, prunedChains.size());
+		assertEquals(defaultChains, prunedChains);
+	}
+
+	@Test
+	public void testWithPruning() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+
+		// Car may only be used on the first trip
+		ModeChainGenerator generator = new PrunedModeChainGenerator(modes, 3,
+				prefix -> prefix.size() == 1 || !prefix.get(prefix.size() - 1).equals("car"));
+
+		Set<List<String>> chains = new HashSet<>();
+		generator.forEachRemaining(chains::add);
+
+		assertEquals(3 * 2 * 2, chains.size());
+		assertEquals(27, generator.getNumberOfAlternatives());
+
+		for (List<String> chain : chains) {
+			assertFalse(chain.subList(1, chain.size()).contains("car"));
+		}
+	}
+
+	@Test
+	public void testInfeasible() {
+		ModeChainGenerator generator = new PrunedModeChainGenerator(Arrays.asList("car", "pt"), 5,
+				prefix -> prefix.size() < 3);
+		assertFalse(generator.hasNext());
+	}
+}
@@ -0,0 +1,97 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_chain;
+
+import static ch.ethz.matsim.discrete_mode_choice.test_utils.TestTrips.createTrips;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.matsim.discrete_mode_choice.components.constraints.SubtourModeConstraint;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourConstraint;
+
+public class SubtourModeChainGeneratorTest {
+	static private Set<List<String>> getConstrainedChains(List<String> modes, Collection<String> constrainedModes,
+			List<DiscreteModeChoiceTrip> trips) {
+		TourConstraint constraint = new SubtourModeConstraint.Factory(constrainedModes).createConstraint(null,
+				trips, modes);
+
+		Set<List<String>> chains = new HashSet<>();
+		ModeChainGenerator generator = new DefaultModeChainGenerator(modes, trips.size());
+
+		while (generator.hasNext()) {
+			List<String> chain = generator.next();
+
+			if (constraint.validateBeforeEstimation(trips, chain, Collections.emptyList())) {
+				chains.add(new ArrayList<>(chain));
+			}
+		}
+
+		return chains;
+	}
+
+	static private Set<List<String>> getGeneratedChains(List<String> modes, Collection<String> constrainedModes,
+			List<DiscreteModeChoiceTrip> trips) {
+		Set<List<String>> chains = new HashSet<>();
+		new SubtourModeChainGenerator.Factory(constrainedModes).createModeChainGenerator(modes, null, trips)
+				.forEachRemaining(chains::add);
+		return chains;
+	}
+
+	@Test
+	public void testAllModesConstrained() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+		List<DiscreteModeChoiceTrip> trips = createTrips("home", "A", "B", "A", "home", "C", "home");
+
+		ModeChainGenerator generator = new SubtourModeChainGenerator.Factory(modes).createModeChainGenerator(modes,
+				null, trips);
+		assertEquals(9, generator.getNumberOfAlternatives());
+
+		Set<List<String>> chains = getGeneratedChains(modes, modes, trips);
+		assertEquals(9, chains.size());
+		assertEquals(getConstrainedChains(modes, modes, trips), chains);
+	}
+
+	@Test
+	public void testSomeModesConstrained() {
+		List<String> modes = Arrays.asList("car", "bike", "pt", "walk");
+		List<String> constrainedModes = Arrays.asList("car", "bike");
+
+		for (List<DiscreteModeChoiceTrip> trips : Arrays.asList( //
+				createTrips("home", "A", "B", "A", "home", "C", "home"), //
+				createTrips("home", "A", "home", "A", "home"), //
+				createTrips("home", "A", "B", "C"))) {
+			Set<List<String>> chains = getGeneratedChains(modes, constrainedModes, trips);
+			assertEquals(getConstrainedChains(modes, constrainedModes, trips), chains);
+
+			// Without a prefix filter, all chains that fulfill the subtour rules are generated
+			assertEquals(chains.size(), new SubtourModeChainGenerator.Factory(constrainedModes)
+					.createModeChainGenerator(modes, null, trips).getNumberOfAlternatives());
+		}
+	}
+
+	@Test
+	public void testWithPruning() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+		List<DiscreteModeChoiceTrip> trips = createTrips("home", "A", "home", "B", "home");
+
+		// Car may not be used on the second subtour
+		Set<List<String>> chains = new HashSet<>();
+		new SubtourModeChainGenerator.Factory(modes).createModeChainGenerator(modes, null, trips,
+				prefix -> prefix.size() < 3 || !prefix.get(2).equals("car")).forEachRemaining(chains::add);
+
+		assertEquals(3 * 2, chains.size());
+
+		for (List<String> chain : chains) {
+			assertFalse(chain.get(3).equals("car"));
+		}
+	}
+}
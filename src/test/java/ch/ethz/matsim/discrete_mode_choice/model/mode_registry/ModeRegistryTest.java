@@ -0,0 +1,58 @@
+package ch.ethz.matsim.discrete_mode_choice.model.mode_registry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+
+public class ModeRegistryTest {
+	@Test
+	public void testModeIds() {
+		ModeRegistry registry = new ModeRegistry(Arrays.asList("car", "pt", "walk"));
+
+		assertEquals(3, registry.getNumberOfModes());
+		assertEquals(0, registry.getModeId("car"));
+		assertEquals(2, registry.getModeId("walk"));
+		assertEquals("pt", registry.getMode(1));
+
+		// Unknown modes are registered on the fly
+		assertEquals(3, registry.getModeId("bike"));
+		assertEquals(3, registry.getModeId("bike"));
+		assertEquals(Arrays.asList("car", "pt", "walk", "bike"), registry.getModes());
+	}
+
+	@Test
+	public void testMasksAndBuffers() {
+		ModeRegistry registry = new ModeRegistry(Arrays.asList("car", "pt", "walk"));
+
+		BitSet mask = registry.getModeMask(Arrays.asList("car", "walk"));
+		assertTrue(mask.get(registry.getModeId("car")));
+		assertFalse(mask.get(registry.getModeId("pt")));
+		assertTrue(mask.get(registry.getModeId("walk")));
+
+		int[] buffer = registry.getModeIds(Arrays.asList("walk", "car", "car"), null);
+		assertArrayEquals(new int[] { 2, 0, 0 }, buffer);
+
+		int[] reused = registry.getModeIds(Arrays.asList("pt", "pt"), buffer);
+		assertSame(buffer, reused);
+		assertEquals(1, reused[0]);
+		assertEquals(1, reused[1]);
+	}
+
+	@Test
+	public void testRegisteredModes() {
+		ModeRegistry registry = new ModeRegistry(Arrays.asList("car", "pt", "walk"));
+
+		// Equal strings which are not the registered instances are found as well
+		String copy = new String("pt");
+		assertEquals(1, registry.getModeId(copy));
+		assertSame(registry.getMode(1), registry.getRegisteredMode(copy));
+		assertEquals("pt", registry.getRegisteredMode(copy));
+	}
+}
@@ -0,0 +1,100 @@
+package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.IndexedModeChainGenerator;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.ModeChainGenerator;
+
+public class ParallelTourEvaluatorTest {
+	@Test
+	public void testSameOrderAsSequential() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+
+		List<List<String>> chains = new ArrayList<>();
+		ModeChainGenerator generator = new DefaultModeChainGenerator(modes, 5);
+		generator.forEachRemaining(chains::add);
+
+		List<DiscreteModeChoiceTrip> trips = new ArrayList<>();
+
+		for (int index = 0; index < 5; index++) {
+			trips.add(new DiscreteModeChoiceTrip(null, null, "walk", Collections.emptyList(), 0, index, index));
+		}
+
+		double initialDepartureTime = trips.get(1).getDepartureTime();
+
+		AtomicInteger numberOfEstimators = new AtomicInteger(0);
+		AtomicInteger numberOfSharedTrips = new AtomicInteger(0);
+
+		ParallelTourEvaluator evaluator = new ParallelTourEvaluator(new ForkJoinPool(4), 4, 10, () -> {
+			numberOfEstimators.incrementAndGet();
+
+			return (person, tourModes, tourTrips, previousTours) -> {
+				if (tourTrips.get(0) == trips.get(0)) {
+					numberOfSharedTrips.incrementAndGet();
+				}
+
+				tourTrips.get(1).setDepartureTime(tourModes.hashCode());
+				return new DefaultTourCandidate(tourModes.hashCode(), Collections.emptyList());
+			};
+		});
+
+		TourEstimator sequentialEstimator = (person, tourModes, tourTrips, previousTours) -> {
+			throw new IllegalStateException();
+		};
+
+		for (int repetition = 0; repetition < 3; repetition++) {
+			List<TourCandidate> candidates = new ArrayList<>();
+
+			// The indexed generator reuses its chain, so the evaluator needs to copy it
+			evaluator.estimateTours(null, new IndexedModeChainGenerator(modes, 5), trips, Collections.emptyList(),
+					sequentialEstimator, candidates::add);
+			assertEquals(chains.size(), candidates.size());
+
+			for (int index = 0; index < chains.size(); index++) {
+				assertEquals((double) chains.get(index).hashCode(), candidates.get(index).getUtility());
+			}
+		}
+
+		// Trips are copied for every batch and estimators are reused
+		assertEquals(0, numberOfSharedTrips.get());
+		assertEquals(initialDepartureTime, trips.get(1).getDepartureTime());
+		assertTrue(numberOfEstimators.get() <= 4);
+	}
+
+	@Test
+	public void testFewChainsAreEstimatedSequentially() {
+		List<String> modes = Arrays.asList("car", "pt", "walk");
+
+		List<DiscreteModeChoiceTrip> trips = new ArrayList<>();
+
+		for (int index = 0; index < 2; index++) {
+			trips.add(new DiscreteModeChoiceTrip(null, null, "walk", Collections.emptyList(), 0, index, index));
+		}
+
+		ParallelTourEvaluator evaluator = new ParallelTourEvaluator(new ForkJoinPool(4), 4, 10, () -> {
+			throw new IllegalStateException();
+		});
+
+		List<TourCandidate> candidates = new ArrayList<>();
+
+		evaluator.estimateTours(null, new DefaultModeChainGenerator(modes, 2), trips, Collections.emptyList(),
+				(person, tourModes, tourTrips, previousTours) -> {
+					assertTrue(tourTrips == trips);
+					return new DefaultTourCandidate(tourModes.hashCode(), Collections.emptyList());
+				}, candidates::add);
+
+		assertEquals(9, candidates.size());
+	}
+}
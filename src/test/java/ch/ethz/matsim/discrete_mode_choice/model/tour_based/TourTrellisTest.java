@@ -0,0 +1,119 @@
+package ch.ethz.matsim.discrete_mode_choice.model.tour_based;
+
+import static ch.ethz.matsim.discrete_mode_choice.test_utils.TestTrips.createTrips;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.BasicLocation;
+import org.matsim.api.core.v01.Id;
+
+import ch.ethz.matsim.discrete_mode_choice.components.constraints.VehicleTourConstraint;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.mode_chain.DefaultModeChainGenerator;
+
+public class TourTrellisTest {
+	private final List<String> modes = Arrays.asList("car", "bike", "walk");
+	private final int[] vehicleIndices = new int[] { 0, 1, -1 };
+
+	static private double getUtility(List<String> chain, List<String> modes, double[][] utilities) {
+		double utility = 0.0;
+
+		for (int i = 0; i < chain.size(); i++) {
+			utility += utilities[i][modes.indexOf(chain.get(i))];
+		}
+
+		return utility;
+	}
+
+	private List<List<String>> findFeasibleChains(List<DiscreteModeChoiceTrip> trips,
+			Id<? extends BasicLocation> homeLocationId, double[][] utilities) {
+		VehicleTourConstraint constraint = new VehicleTourConstraint(Arrays.asList("car", "bike"), homeLocationId);
+		List<List<String>> chains = new ArrayList<>();
+
+		new DefaultModeChainGenerator(modes, trips.size()).forEachRemaining(chain -> {
+			if (constraint.validateBeforeEstimation(trips, chain, Collections.emptyList())
+					&& Double.isFinite(getUtility(chain, modes, utilities))) {
+				chains.add(new ArrayList<>(chain));
+			}
+		});
+
+		return chains;
+	}
+
+	@Test
+	public void testMaximumEqualsEnumeration() {
+		Random random = new Random(0);
+
+		List<List<DiscreteModeChoiceTrip>> tours = Arrays.asList( //
+				createTrips("home", "A", "home", "B", "C", "home"), //
+				createTrips("home", "A", "B", "A", "home", "C", "home"), //
+				createTrips("X", "A", "B", "X"));
+
+		for (List<DiscreteModeChoiceTrip> trips : tours) {
+			for (Id<? extends BasicLocation> homeLocationId : Arrays.asList(Id.createLinkId("home"), null)) {
+				for (int repetition = 0; repetition < 20; repetition++) {
+					double[][] utilities = new double[trips.size()][modes.size()];
+
+					for (int i = 0; i < trips.size(); i++) {
+						for (int k = 0; k < modes.size(); k++) {
+							utilities[i][k] = random.nextDouble() < 0.1 ? Double.NEGATIVE_INFINITY
+									: random.nextGaussian();
+						}
+					}
+
+					List<List<String>> chains = findFeasibleChains(trips, homeLocationId, utilities);
+					TourTrellis trellis = new TourTrellis(trips, modes, vehicleIndices, homeLocationId, utilities);
+
+					if (chains.isEmpty()) {
+						assertFalse(trellis.findMaximum().isPresent());
+					} else {
+						List<String> best = Collections.max(chains, (a, b) -> Double
+								.compare(getUtility(a, modes, utilities), getUtility(b, modes, utilities)));
+						assertEquals(getUtility(best, modes, utilities),
+								getUtility(trellis.findMaximum().get(), modes, utilities), 1e-9);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSamplingFrequencies() {
+		List<DiscreteModeChoiceTrip> trips = createTrips("home", "A", "B", "home");
+		Id<? extends BasicLocation> homeLocationId = Id.createLinkId("home");
+
+		double[][] utilities = new double[][] { //
+				{ 1.0, 0.5, 0.0 }, //
+				{ 0.2, -0.5, 0.3 }, //
+				{ 1.5, 0.0, -1.0 } };
+
+		List<List<String>> chains = findFeasibleChains(trips, homeLocationId, utilities);
+		double denominator = chains.stream().mapToDouble(c -> Math.exp(getUtility(c, modes, utilities))).sum();
+
+		TourTrellis trellis = new TourTrellis(trips, modes, vehicleIndices, homeLocationId, utilities);
+		Random random = new Random(0);
+
+		Map<List<String>, Integer> counts = new HashMap<>();
+		int numberOfSamples = 50000;
+
+		for (int sample = 0; sample < numberOfSamples; sample++) {
+			counts.merge(trellis.sample(random, false).get(), 1, Integer::sum);
+		}
+
+		assertEquals(chains.size(), counts.size());
+
+		for (List<String> chain : chains) {
+			double probability = Math.exp(getUtility(chain, modes, utilities)) / denominator;
+			assertEquals(probability, (double) counts.getOrDefault(chain, 0) / numberOfSamples, 0.01);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package ch.ethz.matsim.discrete_mode_choice.model.trip_based;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+public class ParallelTripEvaluatorTest {
+	@Test
+	public void testSameOrderAsSequential() {
+		List<String> modes = Arrays.asList("car", "pt", "bike", "walk", "taxi");
+
+		DiscreteModeChoiceTrip trip = new DiscreteModeChoiceTrip(null, null, "walk", Collections.emptyList(), 0, 0,
+				0);
+		trip.setDepartureTime(100.0);
+
+		AtomicInteger numberOfEstimators = new AtomicInteger(0);
+		AtomicBoolean sharedTrip = new AtomicBoolean(false);
+
+		ParallelTripEvaluator evaluator = new ParallelTripEvaluator(new ForkJoinPool(3), () -> {
+			numberOfEstimators.incrementAndGet();
+
+			return (person, mode, estimatedTrip, previousTrips) -> {
+				if (estimatedTrip == trip) {
+					sharedTrip.set(true);
+				}
+
+				// Make the expensive mode finish last
+				if (mode.equals("pt")) {
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+
+				return new DefaultTripCandidate(estimatedTrip.getDepartureTime(), mode, 0.0);
+			};
+		});
+
+		for (int repetition = 0; repetition < 3; repetition++) {
+			List<TripCandidate> candidates = evaluator.estimateTrips(null, modes, trip, Collections.emptyList());
+			assertEquals(modes.size(), candidates.size());
+
+			for (int index = 0; index < modes.size(); index++) {
+				assertEquals(modes.get(index), candidates.get(index).getMode());
+				assertEquals(100.0, candidates.get(index).getUtility());
+			}
+		}
+
+		// Estimators are reused and trips are never shared between them
+		assertTrue(numberOfEstimators.get() <= modes.size());
+		assertFalse(sharedTrip.get());
+	}
+}
@@ -0,0 +1,84 @@
+package ch.ethz.matsim.discrete_mode_choice.model.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.DefaultTourCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.tour_based.TourCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+public class GumbelMaxSelectorTest {
+	static private TourCandidate createTourCandidate(double utility, String... modes) {
+		List<TripCandidate> tripCandidates = new ArrayList<>();
+
+		for (String mode : modes) {
+			tripCandidates.add(new DefaultTripCandidate(0.0, mode, 0.0));
+		}
+
+		return new DefaultTourCandidate(utility, tripCandidates);
+	}
+
+	@Test
+	public void testIndependentOfOrder() {
+		List<TourCandidate> candidates = new ArrayList<>();
+
+		for (String first : Arrays.asList("car", "pt", "walk")) {
+			for (String second : Arrays.asList("car", "pt", "walk")) {
+				candidates.add(createTourCandidate(first.length() - second.length(), first, second));
+			}
+		}
+
+		Random shuffleRandom = new Random(0);
+
+		for (long seed = 0; seed < 100; seed++) {
+			UtilityCandidate expected = null;
+
+			for (int repetition = 0; repetition < 5; repetition++) {
+				Collections.shuffle(candidates, shuffleRandom);
+
+				GumbelMaxSelector selector = new GumbelMaxSelector(seed, 700.0, -700.0, false);
+				candidates.forEach(selector::addCandidate);
+				UtilityCandidate selected = selector.select(null).get();
+
+				if (expected == null) {
+					expected = selected;
+				} else {
+					assertSame(expected, selected);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFrequencies() {
+		List<TripCandidate> candidates = Arrays.asList( //
+				new DefaultTripCandidate(0.0, "walk", 0.0), //
+				new DefaultTripCandidate(Math.log(2.0), "pt", 0.0), //
+				new DefaultTripCandidate(Math.log(5.0), "car", 0.0));
+
+		UtilitySelectorFactory factory = new GumbelMaxSelector.Factory(-700.0, 700.0, false);
+		Random random = new Random(0);
+
+		int[] counts = new int[candidates.size()];
+		int numberOfSamples = 20000;
+
+		for (int sample = 0; sample < numberOfSamples; sample++) {
+			UtilitySelector selector = factory.createUtilitySelector(random);
+			candidates.forEach(selector::addCandidate);
+			counts[candidates.indexOf(selector.select(random).get())]++;
+		}
+
+		assertEquals(1.0 / 8.0, (double) counts[0] / numberOfSamples, 0.015);
+		assertEquals(2.0 / 8.0, (double) counts[1] / numberOfSamples, 0.015);
+		assertEquals(5.0 / 8.0, (double) counts[2] / numberOfSamples, 0.015);
+	}
+}
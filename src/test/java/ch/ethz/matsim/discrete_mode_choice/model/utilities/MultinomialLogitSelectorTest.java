@@ -0,0 +1,114 @@
+package ch.ethz.matsim.discrete_mode_choice.model.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class MultinomialLogitSelectorTest {
+	static private class Candidate implements UtilityCandidate {
+		final private double utility;
+
+		Candidate(double utility) {
+			this.utility = utility;
+		}
+
+		@Override
+		public double getUtility() {
+			return utility;
+		}
+	}
+
+	@Test
+	public void testSameSelectionAsCumulativeDensity() {
+		Random utilityRandom = new Random(0);
+
+		for (int repetition = 0; repetition < 100; repetition++) {
+			List<UtilityCandidate> candidates = new ArrayList<>();
+			int numberOfCandidates = 1 + utilityRandom.nextInt(100);
+
+			for (int i = 0; i < numberOfCandidates; i++) {
+				candidates.add(new Candidate(utilityRandom.nextDouble() * 10.0 - 5.0));
+			}
+
+			MultinomialLogitSelector selector = new MultinomialLogitSelector(700.0, -700.0, false);
+			candidates.forEach(selector::addCandidate);
+
+			// Reference: linear scan over the unshifted cumulative density
+			double totalDensity = 0.0;
+
+			for (UtilityCandidate candidate : candidates) {
+				totalDensity += Math.exp(candidate.getUtility());
+			}
+
+			double pointer = new Random(repetition).nextDouble() * totalDensity;
+			int expectedIndex = 0;
+			double cumulativeDensity = Math.exp(candidates.get(0).getUtility());
+
+			while (cumulativeDensity < pointer && expectedIndex < candidates.size() - 1) {
+				expectedIndex++;
+				cumulativeDensity += Math.exp(candidates.get(expectedIndex).getUtility());
+			}
+
+			assertSame(candidates.get(expectedIndex), selector.select(new Random(repetition)).get());
+		}
+	}
+
+	@Test
+	public void testLargeUtilities() {
+		MultinomialLogitSelector selector = new MultinomialLogitSelector(Double.POSITIVE_INFINITY, -700.0, false);
+
+		UtilityCandidate large = new Candidate(2000.0);
+		UtilityCandidate small = new Candidate(1000.0);
+
+		selector.addCandidate(small);
+		selector.addCandidate(large);
+
+		Random random = new Random(0);
+
+		for (int i = 0; i < 100; i++) {
+			assertSame(large, selector.select(random).get());
+		}
+	}
+
+	@Test
+	public void testMinimumUtility() {
+		MultinomialLogitSelector selector = new MultinomialLogitSelector(700.0, -10.0, true);
+		selector.addCandidate(new Candidate(-20.0));
+		assertFalse(selector.select(new Random(0)).isPresent());
+
+		UtilityCandidate candidate = new Candidate(-5.0);
+		selector.addCandidate(candidate);
+		assertTrue(selector.select(new Random(0)).isPresent());
+		assertSame(candidate, selector.select(new Random(0)).get());
+	}
+
+	@Test
+	public void testFrequencies() {
+		MultinomialLogitSelector selector = new MultinomialLogitSelector(700.0, -700.0, false);
+
+		List<UtilityCandidate> candidates = new ArrayList<>();
+
+		for (int i = 0; i < 40; i++) {
+			candidates.add(new Candidate(i % 2 == 0 ? 0.0 : Math.log(3.0)));
+			selector.addCandidate(candidates.get(i));
+		}
+
+		Random random = new Random(0);
+		int numberOfOddSelections = 0;
+
+		for (int i = 0; i < 10000; i++) {
+			if (candidates.indexOf(selector.select(random).get()) % 2 == 1) {
+				numberOfOddSelections++;
+			}
+		}
+
+		assertEquals(0.75, numberOfOddSelections / 10000.0, 0.02);
+	}
+}
@@ -0,0 +1,83 @@
+package ch.ethz.matsim.discrete_mode_choice.model.utilities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamingMultinomialLogitSelectorTest {
+	static private class Candidate implements UtilityCandidate {
+		final private double utility;
+
+		Candidate(double utility) {
+			this.utility = utility;
+		}
+
+		@Override
+		public double getUtility() {
+			return utility;
+		}
+	}
+
+	@Test
+	public void testFrequencies() {
+		double[] utilities = new double[] { 0.0, Math.log(2.0), 0.0, Math.log(5.0) };
+		double[] probabilities = new double[] { 1.0 / 9.0, 2.0 / 9.0, 1.0 / 9.0, 5.0 / 9.0 };
+
+		Candidate[] candidates = new Candidate[utilities.length];
+
+		for (int i = 0; i < utilities.length; i++) {
+			candidates[i] = new Candidate(utilities[i]);
+		}
+
+		UtilitySelectorFactory factory = new StreamingMultinomialLogitSelector.Factory(-700.0, 700.0, false);
+		Random random = new Random(0);
+
+		int[] counts = new int[candidates.length];
+		int numberOfSamples = 20000;
+
+		for (int sample = 0; sample < numberOfSamples; sample++) {
+			UtilitySelector selector = factory.createUtilitySelector(random);
+
+			for (Candidate candidate : candidates) {
+				selector.addCandidate(candidate);
+			}
+
+			UtilityCandidate selected = selector.select(random).get();
+
+			for (int i = 0; i < candidates.length; i++) {
+				if (selected == candidates[i]) {
+					counts[i]++;
+				}
+			}
+		}
+
+		for (int i = 0; i < candidates.length; i++) {
+			assertEquals(probabilities[i], (double) counts[i] / numberOfSamples, 0.015);
+		}
+	}
+
+	@Test
+	public void testLargeUtilities() {
+		StreamingMultinomialLogitSelector selector = new StreamingMultinomialLogitSelector(new Random(0),
+				Double.POSITIVE_INFINITY, -700.0, false);
+
+		UtilityCandidate large = new Candidate(2000.0);
+		selector.addCandidate(new Candidate(1000.0));
+		selector.addCandidate(large);
+		selector.addCandidate(new Candidate(1500.0));
+
+		assertSame(large, selector.select(null).get());
+	}
+
+	@Test
+	public void testMinimumUtility() {
+		StreamingMultinomialLogitSelector selector = new StreamingMultinomialLogitSelector(new Random(0), 700.0,
+				-10.0, true);
+		selector.addCandidate(new Candidate(-20.0));
+		assertFalse(selector.select(null).isPresent());
+	}
+}
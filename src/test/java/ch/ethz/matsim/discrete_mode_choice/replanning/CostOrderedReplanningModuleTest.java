@@ -0,0 +1,133 @@
+package ch.ethz.matsim.discrete_mode_choice.replanning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.population.PopulationUtils;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.DefaultTripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+
+public class CostOrderedReplanningModuleTest {
+	private final static List<String> MODES = Arrays.asList("car", "pt", "walk", "bike");
+
+	private final PopulationFactory factory = PopulationUtils.createPopulation(ConfigUtils.createConfig())
+			.getFactory();
+
+	private List<Plan> createPlans() {
+		List<Plan> plans = new ArrayList<>();
+
+		for (int personIndex = 0; personIndex < 50; personIndex++) {
+			Person person = factory.createPerson(Id.createPersonId("person" + personIndex));
+			Plan plan = factory.createPlan();
+			person.addPlan(plan);
+
+			int numberOfTrips = 1 + (personIndex * 7) % 11;
+
+			for (int tripIndex = 0; tripIndex <= numberOfTrips; tripIndex++) {
+				if (tripIndex > 0) {
+					plan.addLeg(factory.createLeg("walk"));
+				}
+
+				Activity activity = factory.createActivityFromLinkId("activity", Id.createLinkId(tripIndex % 3));
+				activity.setEndTime(3600.0 * (tripIndex + 1));
+				plan.addActivity(activity);
+			}
+
+			plans.add(plan);
+		}
+
+		return plans;
+	}
+
+	private List<List<String>> runReplanning(int numberOfThreads, List<Person> processedPersons) {
+		GlobalConfigGroup globalConfig = new GlobalConfigGroup();
+		globalConfig.setNumberOfThreads(numberOfThreads);
+		globalConfig.setRandomSeed(1234);
+
+		DiscreteModeChoiceModel model = (person, trips, random) -> {
+			processedPersons.add(person);
+			List<TripCandidate> candidates = new ArrayList<>(trips.size());
+
+			for (int index = 0; index < trips.size(); index++) {
+				candidates.add(new DefaultTripCandidate(0.0, MODES.get(random.nextInt(MODES.size())), 0.0));
+			}
+
+			return candidates;
+		};
+
+		CostOrderedReplanningModule module = new CostOrderedReplanningModule(globalConfig, () -> model,
+				TripListConverter::new, factory);
+
+		List<Plan> plans = createPlans();
+		plans.forEach(module::handlePlan);
+		module.finishReplanning();
+
+		List<List<String>> modes = new ArrayList<>();
+
+		for (Plan plan : plans) {
+			List<String> planModes = new ArrayList<>();
+
+			for (PlanElement element : plan.getPlanElements()) {
+				if (element instanceof Leg) {
+					planModes.add(((Leg) element).getMode());
+				}
+			}
+
+			modes.add(planModes);
+		}
+
+		return modes;
+	}
+
+	@Test
+	public void testOrdering() {
+		List<Plan> plans = createPlans();
+
+		// List.sort is stable, so plans with the same cost keep their initial order
+		List<Plan> expectedPlans = new ArrayList<>(plans);
+		expectedPlans.sort(Comparator.comparing((Plan plan) -> plan.getPlanElements().size()).reversed());
+
+		assertEquals(expectedPlans, CostOrderedReplanningModule.orderPlans(plans));
+
+		// With one thread, the plans are processed exactly in this order
+		List<Person> processedPersons = new ArrayList<>();
+		runReplanning(1, processedPersons);
+
+		List<Person> expectedPersons = new ArrayList<>();
+		expectedPlans.forEach(plan -> expectedPersons.add(plan.getPerson()));
+
+		assertEquals(expectedPersons.size(), processedPersons.size());
+
+		for (int index = 0; index < expectedPersons.size(); index++) {
+			assertEquals(expectedPersons.get(index).getId(), processedPersons.get(index).getId());
+		}
+	}
+
+	@Test
+	public void testSameChoicesForAnyNumberOfThreads() {
+		List<List<String>> sequentialModes = runReplanning(1, Collections.synchronizedList(new ArrayList<>()));
+		List<List<String>> parallelModes = runReplanning(4, Collections.synchronizedList(new ArrayList<>()));
+
+		assertEquals(sequentialModes, parallelModes);
+
+		// Make sure that the test is not trivially fulfilled
+		assertEquals(true, sequentialModes.stream().flatMap(List::stream).distinct().count() > 1);
+	}
+}
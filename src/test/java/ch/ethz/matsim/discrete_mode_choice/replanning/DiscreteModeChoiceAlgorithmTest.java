@@ -0,0 +1,90 @@
+package ch.ethz.matsim.discrete_mode_choice.replanning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+
+import ch.ethz.matsim.discrete_mode_choice.components.estimators.AbstractTripRouterEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceModel;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.TripEstimator;
+import ch.ethz.matsim.discrete_mode_choice.model.trip_based.candidates.TripCandidate;
+import ch.ethz.matsim.discrete_mode_choice.replanning.time_interpreter.EndTimeOnlyInterpreter;
+
+public class DiscreteModeChoiceAlgorithmTest {
+	private final PopulationFactory factory = PopulationUtils.createPopulation(ConfigUtils.createConfig())
+			.getFactory();
+
+	private void addActivity(Plan plan, String type, String linkId, double endTime) {
+		Activity activity = factory.createActivityFromLinkId(type, Id.createLinkId(linkId));
+		activity.setEndTime(endTime);
+		plan.addActivity(activity);
+	}
+
+	private void addLeg(Plan plan, String mode, double departureTime) {
+		Leg leg = factory.createLeg(mode);
+		leg.setDepartureTime(departureTime);
+		leg.setTravelTime(600.0);
+		plan.addLeg(leg);
+	}
+
+	@Test
+	public void testPreroutedMode() {
+		Person person = factory.createPerson(Id.createPersonId("person"));
+		Plan plan = factory.createPlan();
+		person.addPlan(plan);
+
+		addActivity(plan, "home", "A", 3600.0);
+		addLeg(plan, "car", 3600.0);
+		addActivity(plan, "work", "B", 7200.0);
+		addLeg(plan, "car", 7200.0);
+		addActivity(plan, "shop", "C", 10800.0);
+		addLeg(plan, "car", 10800.0);
+		addActivity(plan, "home", "A", Double.POSITIVE_INFINITY);
+
+		List<PlanElement> initialElements = new ArrayList<>(plan.getPlanElements());
+
+		// No router is needed, since all trips keep their prerouted car legs
+		TripEstimator estimator = new AbstractTripRouterEstimator(null, null,
+				new EndTimeOnlyInterpreter.Factory(0.0, false), Collections.singleton("car")) {
+		};
+
+		DiscreteModeChoiceModel model = (modelPerson, trips, random) -> {
+			List<TripCandidate> candidates = new ArrayList<>(trips.size());
+
+			for (DiscreteModeChoiceTrip trip : trips) {
+				trip.setDepartureTime(trip.getOriginActivity().getEndTime());
+				candidates.add(estimator.estimateTrip(modelPerson, "car", trip, candidates));
+			}
+
+			return candidates;
+		};
+
+		new DiscreteModeChoiceAlgorithm(new Random(0), model, factory, new TripListConverter()).run(plan);
+
+		assertEquals(initialElements.size(), plan.getPlanElements().size());
+
+		for (int index = 0; index < initialElements.size(); index++) {
+			assertSame(initialElements.get(index), plan.getPlanElements().get(index));
+		}
+
+		assertTrue(plan.getPlanElements().get(3) instanceof Leg);
+		assertEquals("car", ((Leg) plan.getPlanElements().get(3)).getMode());
+	}
+}
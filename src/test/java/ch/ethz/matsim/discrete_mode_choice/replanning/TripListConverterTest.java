@@ -0,0 +1,132 @@
+package ch.ethz.matsim.discrete_mode_choice.replanning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Leg;
+
+import ch.ethz.matsim.discrete_mode_choice.components.tour_finder.ActivityTourFinder;
+import ch.ethz.matsim.discrete_mode_choice.components.utils.home_finder.ActivityTypeHomeFinder;
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.PlanView;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
+import ch.ethz.matsim.discrete_mode_choice.test_utils.PlanBuilder;
+
+public class TripListConverterTest {
+	private List<DiscreteModeChoiceTrip> createTrips(ActivityTypeRegistry activityTypeRegistry) {
+		return new PlanBuilder() //
+				.addActivityWithLinkId("home", "A") //
+				.addLeg("car") //
+				.addActivityWithLinkId("work", "B") //
+				.addLeg("pt") //
+				.addActivityWithLinkId("home", "A") //
+				.addLeg("walk") //
+				.addActivityWithLinkId("shop", "C") //
+				.addLeg("walk") //
+				.addActivityWithLinkId("home", "A") //
+				.buildDiscreteModeChoiceTrips(activityTypeRegistry);
+	}
+
+	@Test
+	public void testPlanView() {
+		ActivityTypeRegistry activityTypeRegistry = new ActivityTypeRegistry();
+		List<DiscreteModeChoiceTrip> trips = createTrips(activityTypeRegistry);
+		assertEquals(4, trips.size());
+
+		PlanView planView = PlanView.find(trips);
+		assertNotNull(planView);
+
+		assertEquals(4, planView.getNumberOfTrips());
+		assertEquals(5, planView.getNumberOfActivities());
+		assertEquals(3, planView.getNumberOfLocations());
+
+		for (int index = 0; index < trips.size(); index++) {
+			DiscreteModeChoiceTrip trip = trips.get(index);
+
+			assertSame(planView, trip.getPlanView());
+			assertSame(trip.getOriginActivity(), planView.getActivity(planView.getOriginActivityIndex(index)));
+			assertSame(trip.getDestinationActivity(),
+					planView.getActivity(planView.getDestinationActivityIndex(index)));
+			assertEquals(trip.getInitialMode(), planView.getInitialMode(index));
+
+			assertEquals(1, trip.getInitialElements().size());
+			assertEquals(trip.getInitialMode(), ((Leg) trip.getInitialElements().get(0)).getMode());
+		}
+
+		assertEquals(Arrays.asList("car", "pt", "walk", "walk"),
+				Arrays.asList(planView.getInitialMode(0), planView.getInitialMode(1), planView.getInitialMode(2),
+						planView.getInitialMode(3)));
+
+		assertEquals(planView.getLocationIndex(0), planView.getLocationIndex(2));
+		assertNotEquals(planView.getLocationIndex(0), planView.getLocationIndex(1));
+		assertEquals(Id.createLinkId("A"), planView.getLocationId(planView.getLocationIndex(4)));
+		assertEquals(planView.getLocationIndex(4), planView.findLocationIndex(Id.createLinkId("A")));
+		assertEquals(-1, planView.findLocationIndex(Id.createLinkId("D")));
+
+		assertSame(activityTypeRegistry, planView.getActivityTypeRegistry());
+		assertEquals(activityTypeRegistry.getActivityTypeId("home"), planView.getActivityTypeIndex(0));
+		assertEquals(activityTypeRegistry.getActivityTypeId("shop"), planView.getActivityTypeIndex(3));
+
+		// The view is only found for the complete list of trips
+		assertNull(PlanView.find(trips.subList(0, 2)));
+		assertNull(PlanView.find(trips.subList(1, 4)));
+	}
+
+	@Test
+	public void testFindersWithPlanView() {
+		ActivityTypeRegistry activityTypeRegistry = new ActivityTypeRegistry();
+		List<DiscreteModeChoiceTrip> trips = createTrips(activityTypeRegistry);
+
+		// Copy the trips without the view to compare with the trip-based lookups
+		List<DiscreteModeChoiceTrip> plainTrips = new ArrayList<>();
+
+		for (DiscreteModeChoiceTrip trip : trips) {
+			plainTrips.add(new DiscreteModeChoiceTrip(trip.getOriginActivity(), trip.getDestinationActivity(),
+					trip.getInitialMode(), trip.getInitialElements(), 0, trip.getIndex(), trip.getIndex()));
+		}
+
+		assertNull(PlanView.find(plainTrips));
+
+		ActivityTourFinder tourFinder = new ActivityTourFinder(Arrays.asList("home"), activityTypeRegistry);
+		List<List<DiscreteModeChoiceTrip>> tours = tourFinder.findTours(trips);
+		List<List<DiscreteModeChoiceTrip>> plainTours = tourFinder.findTours(plainTrips);
+
+		assertEquals(2, tours.size());
+		assertEquals(plainTours.size(), tours.size());
+
+		for (int index = 0; index < tours.size(); index++) {
+			assertEquals(plainTours.get(index).size(), tours.get(index).size());
+		}
+
+		ActivityTypeHomeFinder homeFinder = new ActivityTypeHomeFinder(Arrays.asList("shop"), activityTypeRegistry);
+		assertEquals(Id.createLinkId("C"), homeFinder.getHomeLocationId(trips));
+		assertEquals(Id.createLinkId("C"), homeFinder.getHomeLocationId(plainTrips));
+	}
+
+	@Test
+	public void testFindersWithOtherRegistry() {
+		// The registry of the converter has its own identifiers for the types
+		ActivityTypeRegistry activityTypeRegistry = new ActivityTypeRegistry(Arrays.asList("work", "shop"));
+		List<DiscreteModeChoiceTrip> trips = createTrips(activityTypeRegistry);
+
+		// Finders with another registry do not use the identifiers of the view
+		ActivityTourFinder tourFinder = new ActivityTourFinder(Arrays.asList("home"));
+		List<List<DiscreteModeChoiceTrip>> tours = tourFinder.findTours(trips);
+
+		assertEquals(2, tours.size());
+		assertEquals(2, tours.get(0).size());
+		assertEquals(2, tours.get(1).size());
+
+		ActivityTypeHomeFinder homeFinder = new ActivityTypeHomeFinder(Arrays.asList("shop"));
+		assertEquals(Id.createLinkId("C"), homeFinder.getHomeLocationId(trips));
+	}
+}
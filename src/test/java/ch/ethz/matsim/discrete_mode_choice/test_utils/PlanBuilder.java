@@ -19,6 +19,7 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.facilities.ActivityFacility;
 
 import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+import ch.ethz.matsim.discrete_mode_choice.model.activity_type_registry.ActivityTypeRegistry;
 import ch.ethz.matsim.discrete_mode_choice.replanning.TripListConverter;
 
 public class PlanBuilder {
@@ -113,7 +114,11 @@ public class PlanBuilder {
 		return copy;
 	}
 
+	public List<DiscreteModeChoiceTrip> buildDiscreteModeChoiceTrips(ActivityTypeRegistry activityTypeRegistry) {
+		return new TripListConverter(activityTypeRegistry).convert(plan);
+	}
+
 	public List<DiscreteModeChoiceTrip> buildDiscreteModeChoiceTrips() {
-		return new TripListConverter().convert(plan);
+		return buildDiscreteModeChoiceTrips(new ActivityTypeRegistry());
 	}
 }
@@ -0,0 +1,55 @@
+package ch.ethz.matsim.discrete_mode_choice.test_utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.core.population.PopulationUtils;
+
+import ch.ethz.matsim.discrete_mode_choice.model.DiscreteModeChoiceTrip;
+
+public class TestTrips {
+	/**
+	 * Creates a chain of walk trips that connects the given link ids.
+	 */
+	static public List<DiscreteModeChoiceTrip> createTrips(String... locations) {
+		List<DiscreteModeChoiceTrip> trips = new ArrayList<>();
+		Activity originActivity = PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId(locations[0]));
+
+		for (int index = 1; index < locations.length; index++) {
+			Activity destinationActivity = PopulationUtils.createActivityFromLinkId("generic",
+					Id.createLinkId(locations[index]));
+			trips.add(new DiscreteModeChoiceTrip(originActivity, destinationActivity, "walk", Collections.emptyList(),
+					0, index - 1, index - 1));
+			originActivity = destinationActivity;
+		}
+
+		return trips;
+	}
+
+	/**
+	 * Creates a chain of walk trips between the link ids 0, 1, 2, ... that all
+	 * depart at 100s. The destination activities have a maximum duration of 600s.
+	 */
+	static public List<DiscreteModeChoiceTrip> createTrips(int numberOfTrips) {
+		List<DiscreteModeChoiceTrip> trips = new ArrayList<>();
+		Activity originActivity = PopulationUtils.createActivityFromLinkId("generic", Id.createLinkId("0"));
+
+		for (int index = 0; index < numberOfTrips; index++) {
+			Activity destinationActivity = PopulationUtils.createActivityFromLinkId("generic",
+					Id.createLinkId(String.valueOf(index + 1)));
+			destinationActivity.setMaximumDuration(600.0);
+
+			DiscreteModeChoiceTrip trip = new DiscreteModeChoiceTrip(originActivity, destinationActivity, "walk",
+					Collections.emptyList(), 0, index, index);
+			trip.setDepartureTime(100.0);
+			trips.add(trip);
+
+			originActivity = destinationActivity;
+		}
+
+		return trips;
+	}
+}